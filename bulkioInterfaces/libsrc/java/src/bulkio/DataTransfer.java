@@ -47,6 +47,8 @@ public class DataTransfer< DT extends Object > {
     public final boolean inputQueueFlushed;
     /** @generated */
     public final boolean sriChanged;
+    /** Receive time for latency tracking, or 0 if not tracked */
+    long receiveTime;
         
     /**
      * @generated
@@ -28,6 +28,7 @@ import org.omg.CORBA.TCKind;
 import org.ossie.properties.AnyUtils;
 import CF.DataType;
 import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import BULKIO.PrecisionUTCTime;
@@ -41,12 +42,14 @@ import bulkio.linkStatistics;
 import bulkio.DataTransfer;
 import bulkio.DoubleSize;
 
+import org.ossie.component.DataListener;
+import org.ossie.component.DataNotifier;
 import org.ossie.component.PortBase;
 
 /**
  * 
  */
-public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.component.PortBase {
+public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.component.PortBase, DataNotifier {
 
     /**
      * A class to hold packet data.
@@ -104,6 +107,11 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
      */
     protected Semaphore dataSem;
 
+    /**
+     * Listeners notified when a packet is queued
+     */
+    protected List<DataListener> dataListeners = new CopyOnWriteArrayList<DataListener>();
+
     /**
      * 
      */
@@ -200,6 +208,24 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
         return this.name;
     }
      
+    /**
+     * Registers a listener to be notified each time a packet is queued,
+     * such as a component's processing thread waiting for data.
+     */
+    public void addDataListener(DataListener listener) {
+        this.dataListeners.add(listener);
+    }
+
+    public void removeDataListener(DataListener listener) {
+        this.dataListeners.remove(listener);
+    }
+
+    protected void notifyDataListeners() {
+        for (DataListener listener : this.dataListeners) {
+            listener.dataArrived();
+        }
+    }
+
     /**
      * 
      */
@@ -207,6 +233,14 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
         this.stats.setEnabled(enable);
     }
 
+    /**
+     * Enables per-stream tracking of timestamp age and queueing delay,
+     * reported in the statistics keywords. Disabled by default.
+     */
+    public void enableLatencyStats(boolean enable) {
+        this.stats.getLatencyStatistics().setEnabled(enable);
+    }
+
     /**
      * 
      */
@@ -357,6 +391,8 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
             }
         }
 
+        final long receiveTime = this.stats.getLatencyStatistics().received(streamID, time);
+
         boolean portBlocking = false;
         StreamSRI tmpH = null;
         boolean sriChanged = false;
@@ -395,8 +431,10 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
 
             synchronized (this.dataBufferLock) {
                 this.stats.update(data.length, this.workQueue.size()/(float)this.maxQueueDepth, eos, streamID, false);
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         } else {
             synchronized (this.dataBufferLock) {
@@ -424,6 +462,9 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
                     if (flagEOS) {
                         eos = true;
                     }
+                    for (Packet droppedPacket : this.workQueue) {
+                        this.stats.dropped(droppedPacket.streamID, 1);
+                    }
                     this.workQueue.clear();
                     p = new Packet( data, time, eos, streamID, tmpH, sriChanged, true);
                     this.stats.update(data.length, 0, eos, streamID, true);
@@ -434,8 +475,10 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
 		if ( logger != null ) {
 		    logger.trace( "bulkio::InPort pushPacket NEW Packet (QUEUE=" + workQueue.size() + ")");
 		}
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         }
 
@@ -480,6 +523,7 @@ public class InDoublePort extends BULKIO.jni.dataDoublePOA implements org.ossie.
         }
 
         if (p != null) {
+            this.stats.getLatencyStatistics().dequeued(p.streamID, p.receiveTime);
             if (p.getEndOfStream()) {
                 synchronized (this.sriUpdateLock) {
                     if (this.currentHs.containsKey(p.getStreamID())) {
@@ -28,6 +28,7 @@ import org.omg.CORBA.TCKind;
 import org.ossie.properties.AnyUtils;
 import CF.DataType;
 import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import BULKIO.PrecisionUTCTime;
@@ -36,6 +37,8 @@ import BULKIO.PortStatistics;
 import BULKIO.PortUsageType;
 import org.apache.log4j.Logger;
 
+import org.ossie.component.DataListener;
+import org.ossie.component.DataNotifier;
 import org.ossie.component.PortBase;
 
 import bulkio.sriState;
@@ -48,7 +51,7 @@ import bulkio.Int8Size;
 /**
  * 
  */
-public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
+public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase, DataNotifier {
 
     /**
      * A class to hold packet data.
@@ -106,6 +109,11 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
      */
     protected Semaphore dataSem;
 
+    /**
+     * Listeners notified when a packet is queued
+     */
+    protected List<DataListener> dataListeners = new CopyOnWriteArrayList<DataListener>();
+
     /**
      * 
      */
@@ -205,6 +213,24 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
         return this.name;
     }
 
+    /**
+     * Registers a listener to be notified each time a packet is queued,
+     * such as a component's processing thread waiting for data.
+     */
+    public void addDataListener(DataListener listener) {
+        this.dataListeners.add(listener);
+    }
+
+    public void removeDataListener(DataListener listener) {
+        this.dataListeners.remove(listener);
+    }
+
+    protected void notifyDataListeners() {
+        for (DataListener listener : this.dataListeners) {
+            listener.dataArrived();
+        }
+    }
+
     /**
      * 
      */
@@ -212,6 +238,14 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
         this.stats.setEnabled(enable);
     }
 
+    /**
+     * Enables per-stream tracking of timestamp age and queueing delay,
+     * reported in the statistics keywords. Disabled by default.
+     */
+    public void enableLatencyStats(boolean enable) {
+        this.stats.getLatencyStatistics().setEnabled(enable);
+    }
+
     /**
      * 
      */
@@ -360,6 +394,8 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
             }
         }
 
+        final long receiveTime = this.stats.getLatencyStatistics().received(streamID, time);
+
         boolean portBlocking = false;
         StreamSRI tmpH = null;
         boolean sriChanged = false;
@@ -398,8 +434,10 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
 
             synchronized (this.dataBufferLock) {
                 this.stats.update(data.length(), this.workQueue.size()/(float)this.maxQueueDepth, eos, streamID, false);
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         } else {
             synchronized (this.dataBufferLock) {
@@ -427,6 +465,9 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
                     if (flagEOS) {
                         eos = true;
                     }
+                    for (Packet droppedPacket : this.workQueue) {
+                        this.stats.dropped(droppedPacket.streamID, 1);
+                    }
                     this.workQueue.clear();
                     p = new Packet( data, time, eos, streamID, tmpH, sriChanged, true);
                     this.stats.update(data.length(), 0, eos, streamID, true);
@@ -437,8 +478,10 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
 		if ( logger != null ) {
 		    logger.trace( "bulkio::InPort pushPacket NEW Packet (QUEUE=" + workQueue.size() + ")");
 		}
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         }
 	if ( logger != null ) {
@@ -483,6 +526,7 @@ public class InFilePort extends BULKIO.jni.dataFilePOA implements PortBase {
         }
 
         if (p != null) {
+            this.stats.getLatencyStatistics().dequeued(p.streamID, p.receiveTime);
             if (p.getEndOfStream()) {
                 synchronized (this.sriUpdateLock) {
                     if (this.currentHs.containsKey(p.getStreamID())) {
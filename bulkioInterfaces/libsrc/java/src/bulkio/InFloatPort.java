@@ -28,6 +28,7 @@ import org.omg.CORBA.TCKind;
 import org.ossie.properties.AnyUtils;
 import CF.DataType;
 import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import BULKIO.PrecisionUTCTime;
@@ -41,12 +42,14 @@ import bulkio.linkStatistics;
 import bulkio.DataTransfer;
 import bulkio.DoubleSize;
 
+import org.ossie.component.DataListener;
+import org.ossie.component.DataNotifier;
 import org.ossie.component.PortBase;
 
 /**
  * 
  */
-public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.component.PortBase {
+public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.component.PortBase, DataNotifier {
 
     /**
      * A class to hold packet data.
@@ -104,6 +107,11 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
      */
     protected Semaphore dataSem;
 
+    /**
+     * Listeners notified when a packet is queued
+     */
+    protected List<DataListener> dataListeners = new CopyOnWriteArrayList<DataListener>();
+
     /**
      * 
      */
@@ -203,6 +211,24 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
      
 
 
+    /**
+     * Registers a listener to be notified each time a packet is queued,
+     * such as a component's processing thread waiting for data.
+     */
+    public void addDataListener(DataListener listener) {
+        this.dataListeners.add(listener);
+    }
+
+    public void removeDataListener(DataListener listener) {
+        this.dataListeners.remove(listener);
+    }
+
+    protected void notifyDataListeners() {
+        for (DataListener listener : this.dataListeners) {
+            listener.dataArrived();
+        }
+    }
+
     /**
      * 
      */
@@ -210,6 +236,14 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
         this.stats.setEnabled(enable);
     }
 
+    /**
+     * Enables per-stream tracking of timestamp age and queueing delay,
+     * reported in the statistics keywords. Disabled by default.
+     */
+    public void enableLatencyStats(boolean enable) {
+        this.stats.getLatencyStatistics().setEnabled(enable);
+    }
+
     /**
      * 
      */
@@ -358,6 +392,8 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
             }
         }
 
+        final long receiveTime = this.stats.getLatencyStatistics().received(streamID, time);
+
         boolean portBlocking = false;
         StreamSRI tmpH = null;
         boolean sriChanged = false;
@@ -396,8 +432,10 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
 
             synchronized (this.dataBufferLock) {
                 this.stats.update(data.length, this.workQueue.size()/(float)this.maxQueueDepth, eos, streamID, false);
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         } else {
             synchronized (this.dataBufferLock) {
@@ -425,6 +463,9 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
                     if (flagEOS) {
                         eos = true;
                     }
+                    for (Packet droppedPacket : this.workQueue) {
+                        this.stats.dropped(droppedPacket.streamID, 1);
+                    }
                     this.workQueue.clear();
                     p = new Packet( data, time, eos, streamID, tmpH, sriChanged, true);
                     this.stats.update(data.length, 0, eos, streamID, true);
@@ -435,8 +476,10 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
 		if ( logger != null ) {
 		    logger.trace( "bulkio::InPort pushPacket NEW Packet (QUEUE=" + workQueue.size() + ")");
 		}
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         }
 
@@ -482,6 +525,7 @@ public class InFloatPort extends BULKIO.jni.dataFloatPOA implements org.ossie.co
         }
 
         if (p != null) {
+            this.stats.getLatencyStatistics().dequeued(p.streamID, p.receiveTime);
             if (p.getEndOfStream()) {
                 synchronized (this.sriUpdateLock) {
 		    if ( logger != null ) {
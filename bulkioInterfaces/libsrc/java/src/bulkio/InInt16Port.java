@@ -28,6 +28,7 @@ import org.omg.CORBA.TCKind;
 import org.ossie.properties.AnyUtils;
 import CF.DataType;
 import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import BULKIO.PrecisionUTCTime;
@@ -41,12 +42,14 @@ import bulkio.linkStatistics;
 import bulkio.DataTransfer;
 import bulkio.Int16Size;
 
+import org.ossie.component.DataListener;
+import org.ossie.component.DataNotifier;
 import org.ossie.component.PortBase;
 
 /**
  * 
  */
-public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.component.PortBase {
+public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.component.PortBase, DataNotifier {
 
     /**
      * A class to hold packet data.
@@ -104,6 +107,11 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
      */
     protected Semaphore dataSem;
 
+    /**
+     * Listeners notified when a packet is queued
+     */
+    protected List<DataListener> dataListeners = new CopyOnWriteArrayList<DataListener>();
+
     /**
      * 
      */
@@ -199,6 +207,24 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
      
 
 
+    /**
+     * Registers a listener to be notified each time a packet is queued,
+     * such as a component's processing thread waiting for data.
+     */
+    public void addDataListener(DataListener listener) {
+        this.dataListeners.add(listener);
+    }
+
+    public void removeDataListener(DataListener listener) {
+        this.dataListeners.remove(listener);
+    }
+
+    protected void notifyDataListeners() {
+        for (DataListener listener : this.dataListeners) {
+            listener.dataArrived();
+        }
+    }
+
     /**
      * 
      */
@@ -206,6 +232,14 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
         this.stats.setEnabled(enable);
     }
 
+    /**
+     * Enables per-stream tracking of timestamp age and queueing delay,
+     * reported in the statistics keywords. Disabled by default.
+     */
+    public void enableLatencyStats(boolean enable) {
+        this.stats.getLatencyStatistics().setEnabled(enable);
+    }
+
     /**
      * 
      */
@@ -349,6 +383,8 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
             }
         }
 
+        final long receiveTime = this.stats.getLatencyStatistics().received(streamID, time);
+
         boolean portBlocking = false;
         StreamSRI tmpH = null;
         boolean sriChanged = false;
@@ -387,8 +423,10 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
 
             synchronized (this.dataBufferLock) {
                 this.stats.update(data.length, this.workQueue.size()/(float)this.maxQueueDepth, eos, streamID, false);
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         } else {
             synchronized (this.dataBufferLock) {
@@ -416,6 +454,9 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
                     if (flagEOS) {
                         eos = true;
                     }
+                    for (Packet droppedPacket : this.workQueue) {
+                        this.stats.dropped(droppedPacket.streamID, 1);
+                    }
                     this.workQueue.clear();
                     p = new Packet( data, time, eos, streamID, tmpH, sriChanged, true);
                     this.stats.update(data.length, 0, eos, streamID, true);
@@ -426,8 +467,10 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
 		if ( logger != null ) {
 		    logger.trace( "bulkio::InPort pushPacket NEW Packet (QUEUE=" + workQueue.size() + ")");
 		}
+                p.receiveTime = receiveTime;
                 this.workQueue.add(p);
                 this.dataSem.release();
+                this.notifyDataListeners();
             }
         }
 
@@ -473,6 +516,7 @@ public class InInt16Port extends BULKIO.jni.dataShortPOA implements org.ossie.co
         }
 
         if (p != null) {
+            this.stats.getLatencyStatistics().dequeued(p.streamID, p.receiveTime);
             if (p.getEndOfStream()) {
                 synchronized (this.sriUpdateLock) {
                     if (this.currentHs.containsKey(p.getStreamID())) {
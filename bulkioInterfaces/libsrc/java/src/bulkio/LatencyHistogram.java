@@ -0,0 +1,128 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK bulkioInterfaces.
+ *
+ * REDHAWK bulkioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK bulkioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package bulkio;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations in nanoseconds, in the style of
+ * HdrHistogram.
+ *
+ * Values are bucketed by power of two, and each power of two is split into
+ * 64 linear sub-buckets, so any recorded value is reproduced to within
+ * about 1.5%. Values above roughly 18 minutes are clamped. Recording is
+ * lock-free and does not allocate.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration. Negative values are recorded as zero.
+     */
+    public void record(long nanoseconds) {
+        if (nanoseconds < 0) {
+            nanoseconds = 0;
+        } else if (nanoseconds > MAX_VALUE) {
+            nanoseconds = MAX_VALUE;
+        }
+        this.counts.incrementAndGet(indexOf(nanoseconds));
+        this.total.incrementAndGet();
+        long current = this.max.get();
+        while (nanoseconds > current && !this.max.compareAndSet(current, nanoseconds)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long getCount() {
+        return this.total.get();
+    }
+
+    /**
+     * Returns the largest recorded value, in nanoseconds.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the value, in nanoseconds, at or below which the given
+     * fraction (0.0 to 1.0) of recorded values fall. The result is the upper
+     * bound of the bucket that contains the percentile, capped at the
+     * largest recorded value.
+     */
+    public long getValueAtPercentile(double fraction) {
+        final long count = this.total.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; ++index) {
+            seen += this.counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(index), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int index = 0; index < BUCKET_COUNT; ++index) {
+            this.counts.set(index, 0);
+        }
+        this.total.set(0);
+        this.max.set(0);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // Shift so that the value falls in the upper half of the sub-buckets
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_HALF - 1;
+        final long subBucket = index - (shift * SUB_BUCKET_HALF);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK bulkioInterfaces.
+ *
+ * REDHAWK bulkioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK bulkioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package bulkio;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.omg.CORBA.TCKind;
+import org.ossie.properties.AnyUtils;
+import CF.DataType;
+import BULKIO.PrecisionUTCTime;
+import BULKIO.TCS_VALID;
+
+/**
+ * Per-stream end-to-end latency tracking for input ports.
+ *
+ * Two latencies are recorded for each stream:
+ * <ul>
+ * <li>age - the difference between the wall clock when a packet is received
+ *     and its timestamp, for packets with a valid timestamp</li>
+ * <li>queueDelay - the time between receipt and the packet being taken from
+ *     the port's queue</li>
+ * </ul>
+ *
+ * Tracking is disabled by default; while disabled, received() returns 0
+ * without reading the clock and dequeued() does nothing. Wall clock time
+ * has millisecond resolution, so small ages are only approximate.
+ *
+ * Results are reported by addKeywords() as stream::&lt;streamID&gt;::age::p50,
+ * ::p99, ::p999 and ::max (and likewise for queueDelay), in seconds.
+ */
+public class LatencyStatistics {
+
+    private static class StreamLatency {
+        final LatencyHistogram age = new LatencyHistogram();
+        final LatencyHistogram queueDelay = new LatencyHistogram();
+        volatile boolean active = true;
+    }
+
+    private volatile boolean enabled = false;
+    private final ConcurrentHashMap<String,StreamLatency> streams = new ConcurrentHashMap<String,StreamLatency>();
+
+    public void setEnabled(boolean enable) {
+        this.enabled = enable;
+        if (!enable) {
+            this.streams.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Records the receipt of a packet, returning the receive time to pass to
+     * dequeued(), or 0 if tracking is disabled.
+     */
+    public long received(String streamID, PrecisionUTCTime time) {
+        if (!this.enabled) {
+            return 0;
+        }
+        final StreamLatency latency = getLatency(streamID);
+        if (!latency.active) {
+            // Stream ID has been reused
+            latency.active = true;
+        }
+        if (time != null && time.tcstatus == TCS_VALID.value) {
+            final double now = System.currentTimeMillis() * 1.0e-3;
+            final double age = (now - time.twsec) - time.tfsec;
+            latency.age.record((long) (age * 1.0e9));
+        }
+        // Never return 0 for a tracked packet
+        return System.nanoTime() | 1;
+    }
+
+    /**
+     * Records the removal of a packet from the queue, given the value that
+     * received() returned for it.
+     */
+    public void dequeued(String streamID, long receiveTime) {
+        if (receiveTime == 0) {
+            return;
+        }
+        // Streams that have already been reported after end-of-stream are not
+        // re-created here
+        final StreamLatency latency = this.streams.get(streamID);
+        if (latency != null) {
+            latency.queueDelay.record(System.nanoTime() - receiveTime);
+        }
+    }
+
+    /**
+     * Marks a stream as ended; it will be reported one more time and then
+     * forgotten.
+     */
+    public void endOfStream(String streamID) {
+        final StreamLatency latency = this.streams.get(streamID);
+        if (latency != null) {
+            latency.active = false;
+        }
+    }
+
+    /**
+     * Appends the latency keywords for all streams.
+     */
+    public void addKeywords(List<DataType> keywords) {
+        for (Map.Entry<String,StreamLatency> entry : this.streams.entrySet()) {
+            final String prefix = "stream::" + entry.getKey() + "::";
+            final StreamLatency latency = entry.getValue();
+            addHistogram(keywords, prefix + "age::", latency.age);
+            addHistogram(keywords, prefix + "queueDelay::", latency.queueDelay);
+            if (!latency.active) {
+                this.streams.remove(entry.getKey(), latency);
+            }
+        }
+    }
+
+    private StreamLatency getLatency(String streamID) {
+        StreamLatency latency = this.streams.get(streamID);
+        if (latency == null) {
+            latency = new StreamLatency();
+            final StreamLatency existing = this.streams.putIfAbsent(streamID, latency);
+            if (existing != null) {
+                latency = existing;
+            }
+        }
+        return latency;
+    }
+
+    private static void addHistogram(List<DataType> keywords, String prefix, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        addKeyword(keywords, prefix + "p50", histogram.getValueAtPercentile(0.50));
+        addKeyword(keywords, prefix + "p99", histogram.getValueAtPercentile(0.99));
+        addKeyword(keywords, prefix + "p999", histogram.getValueAtPercentile(0.999));
+        addKeyword(keywords, prefix + "max", histogram.getMax());
+    }
+
+    private static void addKeyword(List<DataType> keywords, String id, long nanoseconds) {
+        keywords.add(new DataType(id, AnyUtils.toAny(new Double(nanoseconds * 1.0e-9), TCKind.tk_double)));
+    }
+}
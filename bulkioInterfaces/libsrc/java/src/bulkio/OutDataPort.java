@@ -372,8 +372,9 @@ public abstract class OutDataPort<E extends BULKIO.updateSRIOperations,A> extend
                         sriStruct.connections.add(connectionID);
                     }
 
+                    final long pushStart = System.nanoTime();
                     this.sendPacket(port, data, time, endOfStream, streamID);
-                    this.stats.get(connectionID).update(length, (float)0.0, endOfStream, streamID, false);
+                    this.stats.get(connectionID).update(length, (float)0.0, endOfStream, streamID, false, System.nanoTime() - pushStart);
                 } catch (Exception e) {
                     if (logger != null) {
                         logger.error("Call to pushPacket failed on port " + name + " connection " + connectionID);
@@ -17,12 +17,15 @@
  * You should have received a copy of the GNU Lesser General Public License
  * along with this program.  If not, see http://www.gnu.org/licenses/.
  */
-
 package bulkio;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.omg.CORBA.TCKind;
 import org.ossie.properties.AnyUtils;
 import CF.DataType;
@@ -30,144 +33,442 @@ import BULKIO.PortStatistics;
 import bulkio.SizeOf;
 
 /**
- * @generated
+ * Port statistics for BULKIO ports.
+ *
+ * Recording (update, dropped) is lock-free and does not allocate once a
+ * stream has been seen: each call writes one sample into a fixed-size ring
+ * of preallocated slots, guarded by a per-slot sequence stamp, and
+ * per-stream totals go into atomic counters. retrieve() builds a new
+ * PortStatistics from a consistent snapshot of the window, so callers may
+ * hold on to the result.
+ *
+ * In addition to the standard PortStatistics fields, the following keywords
+ * are reported:
+ * <ul>
+ * <li>timeSinceLastFlush - seconds since the queue was last flushed</li>
+ * <li>ewma::elementsPerSecond, ewma::bitsPerSecond, ewma::callsPerSecond -
+ *     exponentially weighted rates, smoothed across calls to retrieve()</li>
+ * <li>queueDepth::p50, queueDepth::p90, queueDepth::p99 - queue fill
+ *     fraction percentiles over the window</li>
+ * <li>latency::p50, latency::p90, latency::p99 - latency percentiles in
+ *     seconds, when the caller supplies latency</li>
+ * <li>stream::&lt;streamID&gt;::elements, ::bytes, ::calls, ::drops,
+ *     ::flushes - per-stream totals</li>
+ * <li>stream::&lt;streamID&gt;::age::*, ::queueDelay::* - per-stream latency
+ *     percentiles, when enabled (see LatencyStatistics)</li>
+ * </ul>
  */
 public class linkStatistics  {
 
-    class statPoint {
-	public int elements;
-        public float queueSize;
-        public double secs;
-        public double usecs;
-    };
+    /**
+     * Default number of calls kept in the statistics window.
+     */
+    public static final int DEFAULT_HISTORY_WINDOW = 10;
+
+    /**
+     * Default time constant, in seconds, for the EWMA rates.
+     */
+    public static final double DEFAULT_RATE_TIME_CONSTANT = 1.0;
+
+    /**
+     * Running totals for a single stream.
+     */
+    public static class StreamCounters {
+        public final String streamID;
+        public final AtomicLong elements = new AtomicLong();
+        public final AtomicLong bytes = new AtomicLong();
+        public final AtomicLong calls = new AtomicLong();
+        public final AtomicLong drops = new AtomicLong();
+        public final AtomicLong flushes = new AtomicLong();
+        volatile boolean active = true;
+
+        StreamCounters(String streamID) {
+            this.streamID = streamID;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    /**
+     * Fixed-size ring of samples, stored in preallocated primitive arrays so
+     * that recording never allocates.
+     *
+     * Each slot has a stamp that works as a sequence lock: a writer claims
+     * the slot by setting its stamp to the odd value 2*seq+1, writes the
+     * fields, and then publishes them with the even value 2*seq+2. A reader
+     * accepts a slot only if it sees the expected even stamp both before
+     * and after reading the fields. Stamps only increase, so a writer that
+     * finds a newer or in-progress stamp in its slot (the ring wrapped while
+     * it was being recorded) drops its sample instead of waiting.
+     */
+    private static class Window {
+        final int size;
+        final AtomicLong next = new AtomicLong();
+        final AtomicLongArray stamps;
+        final AtomicLongArray times;
+        final AtomicLongArray latencies;
+        final AtomicIntegerArray elements;
+        final AtomicIntegerArray queueSizes;
+
+        Window(int size) {
+            this.size = size;
+            this.stamps = new AtomicLongArray(size);
+            this.times = new AtomicLongArray(size);
+            this.latencies = new AtomicLongArray(size);
+            this.elements = new AtomicIntegerArray(size);
+            this.queueSizes = new AtomicIntegerArray(size);
+        }
+
+        void record(long now, int elements, float queueSize, long latency) {
+            final long seq = next.getAndIncrement();
+            final int slot = (int) (seq % size);
+            final long writing = 2 * seq + 1;
+            final long current = stamps.get(slot);
+            if (((current & 1) != 0) || (current >= writing) || !stamps.compareAndSet(slot, current, writing)) {
+                return;
+            }
+            this.times.set(slot, now);
+            this.elements.set(slot, elements);
+            this.queueSizes.set(slot, Float.floatToRawIntBits(queueSize));
+            this.latencies.set(slot, latency);
+            stamps.set(slot, writing + 1);
+        }
+    }
 
     /** @generated */
     protected int sizeof;
     /** @generated */
-    protected boolean enabled;
-    /** @generated */
-    protected double bitSize;
+    protected volatile boolean enabled;
     /** @generated */
-    protected BULKIO.PortStatistics runningStats;
-    /** @generated */
-    protected statPoint[] receivedStatistics;
-    /** @generated */
-    protected List< String > activeStreamIDs;
-    /** @generated */
-    protected int historyWindow;
-    /** @generated */
-    protected int receivedStatistics_idx;
-    /** @generated */
-    protected double flushTime;
+    protected volatile double bitSize;
     /** @generated */
     protected String portName;
-        
+
+    private volatile Window window;
+    private final AtomicLong flushTime = new AtomicLong();
+    private final AtomicLong totalElements = new AtomicLong();
+    private final AtomicLong totalBits = new AtomicLong();
+    private final AtomicLong totalCalls = new AtomicLong();
+    private final ConcurrentHashMap<String,StreamCounters> streams = new ConcurrentHashMap<String,StreamCounters>();
+    private final LatencyStatistics latency = new LatencyStatistics();
+
+    // EWMA state, only touched by retrieve()
+    private volatile double rateTimeConstant;
+    private long lastRetrieveTime;
+    private long lastElements;
+    private long lastBits;
+    private long lastCalls;
+    private double ewmaElements = -1.0;
+    private double ewmaBits = -1.0;
+    private double ewmaCalls = -1.0;
+
     /**
      * @generated
      */
     public linkStatistics(String portName, SizeOf<?> dataum ) {
-	this.sizeof = dataum.sizeof();
-	this.enabled = true;
-	this.bitSize = this.sizeof * 8.0;
-	this.historyWindow = 10;
-	this.flushTime = 0.0;
-	this.receivedStatistics_idx = 0;
-	this.receivedStatistics = new statPoint[historyWindow];
-	this.activeStreamIDs = new ArrayList<String>();
-	this.portName = portName;
-	this.runningStats = new PortStatistics();
-	this.runningStats.portName = this.portName;
-	this.runningStats.elementsPerSecond = -1.0f;
-	this.runningStats.bitsPerSecond = -1.0f;
-	this.runningStats.callsPerSecond = -1.0f;
-	this.runningStats.averageQueueDepth = -1.0f;
-	this.runningStats.streamIDs = new String[0];
-	this.runningStats.timeSinceLastCall = -1.0f;
-	this.runningStats.keywords = new DataType[0];
-	for (int i = 0; i < historyWindow; ++i) {
-	    this.receivedStatistics[i] = new statPoint();
-	}
+        this(portName, dataum, DEFAULT_HISTORY_WINDOW);
     }
 
+    public linkStatistics(String portName, SizeOf<?> dataum, int historyWindow) {
+        this.sizeof = dataum.sizeof();
+        this.enabled = true;
+        this.bitSize = this.sizeof * 8.0;
+        this.portName = portName;
+        this.rateTimeConstant = DEFAULT_RATE_TIME_CONSTANT;
+        setHistoryWindow(historyWindow);
+    }
+
+    /**
+     * Returns the IDs of streams that have not yet ended.
+     */
     public List< String > getActiveStreamIDs() {
-        return this.activeStreamIDs;
+        final List<String> active = new ArrayList<String>();
+        for (StreamCounters counters : this.streams.values()) {
+            if (counters.active) {
+                active.add(counters.streamID);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Returns the running totals for a stream, or null if the stream has not
+     * been seen since its totals were last reported after end-of-stream.
+     */
+    public StreamCounters getStreamCounters(String streamID) {
+        return this.streams.get(streamID);
+    }
+
+    /**
+     * Returns the per-stream latency tracker, which is disabled by default.
+     */
+    public LatencyStatistics getLatencyStatistics() {
+        return this.latency;
     }
 
     /**
      * @generated
      */
     public void setBitSize(double bitSize) {
-	this.bitSize = bitSize;
+        this.bitSize = bitSize;
     }
 
     /**
      * @generated
      */
     public void setEnabled(boolean enableStats) {
-	this.enabled = enableStats;
+        this.enabled = enableStats;
+    }
+
+    /**
+     * Sets the number of calls used to compute the windowed statistics.
+     * Samples already in the window are discarded.
+     */
+    public void setHistoryWindow(int historyWindow) {
+        if (historyWindow < 2) {
+            throw new IllegalArgumentException("history window must be at least 2");
+        }
+        this.window = new Window(historyWindow);
+    }
+
+    public int getHistoryWindow() {
+        return this.window.size;
+    }
+
+    /**
+     * Sets the time constant, in seconds, used to smooth the EWMA rates.
+     */
+    public void setRateTimeConstant(double seconds) {
+        if (seconds <= 0.0) {
+            throw new IllegalArgumentException("rate time constant must be positive");
+        }
+        this.rateTimeConstant = seconds;
     }
 
     /**
      * @generated
      */
     public void update(int elementsReceived, float queueSize, boolean EOS, String streamID, boolean flush) {
-	if (!this.enabled) {
-	    return;
-	}
-	double currTime = System.nanoTime() * 1.0e-9;
-	this.receivedStatistics[this.receivedStatistics_idx].elements = elementsReceived;
-	this.receivedStatistics[this.receivedStatistics_idx].queueSize = queueSize;
-	this.receivedStatistics[this.receivedStatistics_idx++].secs = currTime;
-	this.receivedStatistics_idx = this.receivedStatistics_idx % this.historyWindow;
-	if (!EOS) {
-	    if (!this.activeStreamIDs.contains(streamID)) {
-		this.activeStreamIDs.add(streamID);
-	    }
-	} else {
-	    this.activeStreamIDs.remove(streamID);
-	}
-
-	if (flush) {
-	    this.flushTime = currTime;
-	}
+        update(elementsReceived, queueSize, EOS, streamID, flush, -1);
+    }
+
+    /**
+     * Records a call, including the latency of the operation in nanoseconds
+     * (or a negative value if it is not known).
+     */
+    public void update(int elementsReceived, float queueSize, boolean EOS, String streamID, boolean flush, long latencyNanos) {
+        if (!this.enabled) {
+            return;
+        }
+        final long now = System.nanoTime();
+        this.window.record(now, elementsReceived, queueSize, latencyNanos);
+        final double bits = elementsReceived * this.bitSize;
+        this.totalElements.addAndGet(elementsReceived);
+        this.totalBits.addAndGet((long) bits);
+        this.totalCalls.incrementAndGet();
+
+        final StreamCounters counters = getCounters(streamID);
+        counters.elements.addAndGet(elementsReceived);
+        counters.bytes.addAndGet((long) (bits / 8.0));
+        counters.calls.incrementAndGet();
+        counters.active = !EOS;
+        if (EOS) {
+            this.latency.endOfStream(streamID);
+        }
+
+        if (flush) {
+            counters.flushes.incrementAndGet();
+            this.flushTime.set(now);
+        }
+    }
+
+    /**
+     * Records packets that were discarded without being delivered (e.g., when
+     * an input queue is flushed).
+     */
+    public void dropped(String streamID, int packets) {
+        if (!this.enabled) {
+            return;
+        }
+        getCounters(streamID).drops.addAndGet(packets);
+    }
+
+    private StreamCounters getCounters(String streamID) {
+        StreamCounters counters = this.streams.get(streamID);
+        if (counters == null) {
+            // Only allocates the first time a stream is seen
+            counters = new StreamCounters(streamID);
+            final StreamCounters existing = this.streams.putIfAbsent(streamID, counters);
+            if (existing != null) {
+                counters = existing;
+            }
+        }
+        return counters;
     }
 
     /**
      * @generated
      */
-    public PortStatistics retrieve() {
-	if (!this.enabled) {
-	    return null;
-	}
-	double secs = System.nanoTime() * 1.0e-9;
-	int idx = (this.receivedStatistics_idx == 0) ? (this.historyWindow - 1) : (this.receivedStatistics_idx - 1);
-	double front_sec = this.receivedStatistics[idx].secs;
-	double totalTime = secs - this.receivedStatistics[this.receivedStatistics_idx].secs;
-	double totalData = 0;
-	float queueSize = 0;
-	int startIdx = (this.receivedStatistics_idx + 1) % this.historyWindow;
-	for (int i = startIdx; i != this.receivedStatistics_idx; ) {
-	    totalData += this.receivedStatistics[i].elements;
-	    queueSize += this.receivedStatistics[i].queueSize;
-	    i = (i + 1) % this.historyWindow;
-	}
-	int receivedSize = receivedStatistics.length;
-	synchronized (this.runningStats) {
-	    this.runningStats.timeSinceLastCall = (float)(secs - front_sec);
-	    this.runningStats.bitsPerSecond = (float)((totalData * this.bitSize) / totalTime);
-	    this.runningStats.elementsPerSecond = (float)(totalData / totalTime);
-	    this.runningStats.averageQueueDepth = (float)(queueSize / receivedSize);
-	    this.runningStats.callsPerSecond = (float)((receivedSize - 1) / totalTime);
-	    this.runningStats.streamIDs = this.activeStreamIDs.toArray(new String[0]);
-	    if (flushTime != 0.0) {
-		double flushTotalTime = secs - this.flushTime;
-		this.runningStats.keywords = new DataType[1];
-		this.runningStats.keywords[0] = new DataType();
-		this.runningStats.keywords[0].id = "timeSinceLastFlush";
-		this.runningStats.keywords[0].value = AnyUtils.toAny(new Double(flushTotalTime), TCKind.tk_double);
-	    }
-	}
-	return this.runningStats;
+    public synchronized PortStatistics retrieve() {
+        if (!this.enabled) {
+            return null;
+        }
+        final long now = System.nanoTime();
+
+        // Snapshot the window, oldest sample first
+        final Window window = this.window;
+        final long last = window.next.get();
+        final int count = (int) Math.min(last, window.size);
+        final long[] times = new long[count];
+        final int[] elements = new int[count];
+        final float[] queueSizes = new float[count];
+        final long[] latencies = new long[count];
+        int samples = 0;
+        int latencySamples = 0;
+        for (long seq = last - count; seq < last; ++seq) {
+            final int slot = (int) (seq % window.size);
+            final long stamp = 2 * seq + 2;
+            if (window.stamps.get(slot) != stamp) {
+                // Not yet written, being written, or already overwritten
+                continue;
+            }
+            final long time = window.times.get(slot);
+            final int elementCount = window.elements.get(slot);
+            final float queueSize = Float.intBitsToFloat(window.queueSizes.get(slot));
+            final long latency = window.latencies.get(slot);
+            if (window.stamps.get(slot) != stamp) {
+                // Overwritten while it was being read
+                continue;
+            }
+            times[samples] = time;
+            elements[samples] = elementCount;
+            queueSizes[samples] = queueSize;
+            samples++;
+            if (latency >= 0) {
+                latencies[latencySamples++] = latency;
+            }
+        }
+
+        final PortStatistics stats = new PortStatistics();
+        stats.portName = this.portName;
+        final List<DataType> keywords = new ArrayList<DataType>();
+        if (samples == 0) {
+            stats.elementsPerSecond = -1.0f;
+            stats.bitsPerSecond = -1.0f;
+            stats.callsPerSecond = -1.0f;
+            stats.averageQueueDepth = -1.0f;
+            stats.timeSinceLastCall = -1.0f;
+        } else {
+            // As before, the oldest sample marks the start of the window and
+            // its data is not counted
+            final double totalTime = (now - times[0]) * 1.0e-9;
+            double totalData = 0;
+            float queueSize = 0;
+            for (int ii = 1; ii < samples; ++ii) {
+                totalData += elements[ii];
+                queueSize += queueSizes[ii];
+            }
+            stats.timeSinceLastCall = (float) ((now - times[samples - 1]) * 1.0e-9);
+            stats.bitsPerSecond = (float) ((totalData * this.bitSize) / totalTime);
+            stats.elementsPerSecond = (float) (totalData / totalTime);
+            stats.averageQueueDepth = (float) (queueSize / samples);
+            stats.callsPerSecond = (float) ((samples - 1) / totalTime);
+
+            Arrays.sort(queueSizes, 0, samples);
+            addKeyword(keywords, "queueDepth::p50", percentile(queueSizes, samples, 0.50));
+            addKeyword(keywords, "queueDepth::p90", percentile(queueSizes, samples, 0.90));
+            addKeyword(keywords, "queueDepth::p99", percentile(queueSizes, samples, 0.99));
+        }
+        if (latencySamples > 0) {
+            Arrays.sort(latencies, 0, latencySamples);
+            addKeyword(keywords, "latency::p50", percentile(latencies, latencySamples, 0.50) * 1.0e-9);
+            addKeyword(keywords, "latency::p90", percentile(latencies, latencySamples, 0.90) * 1.0e-9);
+            addKeyword(keywords, "latency::p99", percentile(latencies, latencySamples, 0.99) * 1.0e-9);
+        }
+
+        final long lastFlush = this.flushTime.get();
+        if (lastFlush != 0) {
+            addKeyword(keywords, "timeSinceLastFlush", (now - lastFlush) * 1.0e-9);
+        }
+
+        final List<String> streamIDs = new ArrayList<String>();
+        for (StreamCounters counters : this.streams.values()) {
+            final String prefix = "stream::" + counters.streamID + "::";
+            addKeyword(keywords, prefix + "elements", counters.elements.get());
+            addKeyword(keywords, prefix + "bytes", counters.bytes.get());
+            addKeyword(keywords, prefix + "calls", counters.calls.get());
+            addKeyword(keywords, prefix + "drops", counters.drops.get());
+            addKeyword(keywords, prefix + "flushes", counters.flushes.get());
+            if (counters.active) {
+                streamIDs.add(counters.streamID);
+            } else {
+                // Ended streams are reported one last time, then forgotten
+                this.streams.remove(counters.streamID, counters);
+            }
+        }
+        stats.streamIDs = streamIDs.toArray(new String[streamIDs.size()]);
+        this.latency.addKeywords(keywords);
+
+        updateRates(now);
+        if (this.ewmaElements >= 0.0) {
+            addKeyword(keywords, "ewma::elementsPerSecond", this.ewmaElements);
+            addKeyword(keywords, "ewma::bitsPerSecond", this.ewmaBits);
+            addKeyword(keywords, "ewma::callsPerSecond", this.ewmaCalls);
+        }
+
+        stats.keywords = keywords.toArray(new DataType[keywords.size()]);
+        return stats;
+    }
+
+    private void updateRates(long now) {
+        final long elements = this.totalElements.get();
+        final long bits = this.totalBits.get();
+        final long calls = this.totalCalls.get();
+        if (this.lastRetrieveTime != 0) {
+            final double elapsed = (now - this.lastRetrieveTime) * 1.0e-9;
+            if (elapsed > 0.0) {
+                final double elementRate = (elements - this.lastElements) / elapsed;
+                final double bitRate = (bits - this.lastBits) / elapsed;
+                final double callRate = (calls - this.lastCalls) / elapsed;
+                if (this.ewmaElements < 0.0) {
+                    this.ewmaElements = elementRate;
+                    this.ewmaBits = bitRate;
+                    this.ewmaCalls = callRate;
+                } else {
+                    final double alpha = 1.0 - Math.exp(-elapsed / this.rateTimeConstant);
+                    this.ewmaElements += alpha * (elementRate - this.ewmaElements);
+                    this.ewmaBits += alpha * (bitRate - this.ewmaBits);
+                    this.ewmaCalls += alpha * (callRate - this.ewmaCalls);
+                }
+            }
+        }
+        this.lastRetrieveTime = now;
+        this.lastElements = elements;
+        this.lastBits = bits;
+        this.lastCalls = calls;
     }
-}
 
+    private static double percentile(float[] sorted, int count, double fraction) {
+        return sorted[rank(count, fraction)];
+    }
+
+    private static double percentile(long[] sorted, int count, double fraction) {
+        return sorted[rank(count, fraction)];
+    }
+
+    private static int rank(int count, double fraction) {
+        // Nearest-rank percentile
+        final int rank = (int) Math.ceil(fraction * count) - 1;
+        return Math.max(0, Math.min(count - 1, rank));
+    }
+
+    private static void addKeyword(List<DataType> keywords, String id, double value) {
+        keywords.add(new DataType(id, AnyUtils.toAny(new Double(value), TCKind.tk_double)));
+    }
+
+    private static void addKeyword(List<DataType> keywords, String id, long value) {
+        keywords.add(new DataType(id, AnyUtils.toAny(new Long(value), TCKind.tk_ulonglong)));
+    }
+}
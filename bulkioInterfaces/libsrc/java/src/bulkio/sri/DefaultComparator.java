@@ -20,7 +20,10 @@
 
 package bulkio.sri;
 
-import org.ossie.properties.AnyUtils;
+import java.util.Arrays;
+
+import org.omg.CORBA.TypeCode;
+import org.ossie.properties.AnyComparator;
 import BULKIO.StreamSRI;
 
 public class DefaultComparator implements bulkio.sri.Comparator {
@@ -55,21 +58,38 @@ public class DefaultComparator implements bulkio.sri.Comparator {
 	    return false;
         if (SRI_1.keywords.length != SRI_2.keywords.length)
             return false;
-        String action = "eq";
+        AnyComparator[] comparators = this.keywordComparators;
+        if (comparators.length < SRI_1.keywords.length) {
+            comparators = Arrays.copyOf(comparators, SRI_1.keywords.length);
+            this.keywordComparators = comparators;
+        }
         for (int i=0; i < SRI_1.keywords.length; i++) {
             if (!SRI_1.keywords[i].id.equals(SRI_2.keywords[i].id)) {
                 return false;
             }
-            if (!SRI_1.keywords[i].value.type().equivalent(SRI_2.keywords[i].value.type())) {
+            final TypeCode type = SRI_1.keywords[i].value.type();
+            if (!type.equivalent(SRI_2.keywords[i].value.type())) {
                 return false;
             }
-            if (!AnyUtils.compareAnys(SRI_1.keywords[i].value, SRI_2.keywords[i].value, action)) {
+            AnyComparator comparator = comparators[i];
+            if (comparator == null || !type.equivalent(comparator.getType())) {
+                comparator = AnyComparator.get(type, AnyComparator.Operator.EQ);
+                comparators[i] = comparator;
+            }
+            if (!comparator.test(SRI_1.keywords[i].value, SRI_2.keywords[i].value)) {
                 return false;
             }
         }
         return true;
     } 
 
+    // Equality comparisons for the keywords, by position. A stream's
+    // keywords usually keep their types from one SRI to the next, so each
+    // comparison is only looked up again when its keyword's type changes.
+    // Comparators are immutable, so a race between callers at worst looks
+    // one up twice.
+    private volatile AnyComparator[] keywordComparators = new AnyComparator[0];
+
 }
 
 
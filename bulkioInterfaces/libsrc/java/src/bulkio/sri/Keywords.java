@@ -0,0 +1,364 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK bulkioInterfaces.
+ *
+ * REDHAWK bulkioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK bulkioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package bulkio.sri;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.omg.CORBA.Any;
+import org.omg.CORBA.BAD_OPERATION;
+import org.omg.CORBA.ORB;
+import org.omg.CORBA.TCKind;
+import org.omg.CORBA.TypeCode;
+import org.omg.CORBA.TypeCodePackage.BadKind;
+
+import BULKIO.StreamSRI;
+import CF.DataType;
+
+/**
+ * Indexed, typed access to the keywords of a StreamSRI.
+ *
+ * The first lookup on an SRI builds a map from keyword id to its decoded
+ * value; the map is cached per StreamSRI instance, separately for each
+ * thread, and reused until the SRI's keyword array is replaced. Numeric and
+ * string values are decoded once, so getDouble(), getLong() and getString()
+ * do not box or re-extract on hits.
+ *
+ * Keywords should be modified with the static set and remove methods so the
+ * cache stays consistent with the SRI. Modifications replace the SRI's
+ * keyword array with an updated copy rather than writing into it, so other
+ * SRIs that share the same array are unaffected. Assigning to an element of
+ * StreamSRI.keywords directly is not detected.
+ *
+ * Like StreamSRI itself, a Keywords instance is not synchronized; callers
+ * that share an SRI between threads must provide their own locking.
+ */
+public class Keywords {
+
+    /**
+     * Decoded keyword value and its position in the SRI keyword array.
+     */
+    private static class Entry {
+        int index;
+        Any value;
+        boolean numeric;
+        double doubleValue;
+        long longValue;
+        String stringValue;
+    }
+
+    // The cache is keyed on SRI identity (StreamSRI does not override
+    // equals/hashCode), and Keywords never refers back to its SRI, so entries
+    // are dropped when the SRI becomes unreachable. Each thread has its own
+    // cache, so port threads never contend on a lookup; a thread that sees
+    // an SRI for the first time decodes its own copy.
+    private static final ThreadLocal<Map<StreamSRI,Keywords>> cache_ =
+        new ThreadLocal<Map<StreamSRI,Keywords>>() {
+            @Override
+            protected Map<StreamSRI,Keywords> initialValue() {
+                return new WeakHashMap<StreamSRI,Keywords>();
+            }
+        };
+
+    private static final DataType[] EMPTY = new DataType[0];
+
+    private DataType[] keywords_;
+    private final Map<String,Entry> entries_;
+
+    private Keywords(DataType[] keywords) {
+        keywords_ = keywords;
+        entries_ = new HashMap<String,Entry>(Math.max(16, keywords.length * 2));
+        for (int index = 0; index < keywords.length; ++index) {
+            // Like the C++ and Python implementations, the first keyword with
+            // a given id wins.
+            if (!entries_.containsKey(keywords[index].id)) {
+                entries_.put(keywords[index].id, decode(index, keywords[index].value));
+            }
+        }
+    }
+
+    /**
+     * Returns the keyword accessor for an SRI, building it on first use.
+     */
+    public static Keywords of(StreamSRI sri) {
+        final DataType[] keywords = keywordsOf(sri);
+        final Map<StreamSRI,Keywords> cache = cache_.get();
+        Keywords result = cache.get(sri);
+        if (result == null || result.keywords_ != keywords) {
+            result = new Keywords(keywords);
+            cache.put(sri, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of distinct keyword ids.
+     */
+    public int size() {
+        return entries_.size();
+    }
+
+    /**
+     * Returns true if the SRI has a keyword with the given id.
+     */
+    public boolean contains(String id) {
+        return entries_.containsKey(id);
+    }
+
+    /**
+     * Returns true if the keyword exists and has a numeric or boolean value.
+     */
+    public boolean isNumeric(String id) {
+        final Entry entry = entries_.get(id);
+        return (entry != null) && entry.numeric;
+    }
+
+    /**
+     * Returns the raw value of a keyword, or null if it does not exist.
+     */
+    public Any getValue(String id) {
+        final Entry entry = entries_.get(id);
+        if (entry == null) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Returns the value of a numeric keyword as a double, or defaultValue if
+     * the keyword does not exist or is not numeric.
+     */
+    public double getDouble(String id, double defaultValue) {
+        final Entry entry = entries_.get(id);
+        if (entry == null || !entry.numeric) {
+            return defaultValue;
+        }
+        return entry.doubleValue;
+    }
+
+    /**
+     * Returns the value of a numeric keyword as a long, or defaultValue if
+     * the keyword does not exist or is not numeric. Floating point values are
+     * truncated; unsigned long long values are returned as their two's
+     * complement bit pattern.
+     */
+    public long getLong(String id, long defaultValue) {
+        final Entry entry = entries_.get(id);
+        if (entry == null || !entry.numeric) {
+            return defaultValue;
+        }
+        return entry.longValue;
+    }
+
+    /**
+     * Returns the value of a string keyword, or defaultValue if the keyword
+     * does not exist or is not a string.
+     */
+    public String getString(String id, String defaultValue) {
+        final Entry entry = entries_.get(id);
+        if (entry == null || entry.stringValue == null) {
+            return defaultValue;
+        }
+        return entry.stringValue;
+    }
+
+    /**
+     * Sets the value of a keyword, adding it if it does not exist.
+     */
+    public static void set(StreamSRI sri, String id, Any value) {
+        final Keywords keywords = Keywords.of(sri);
+        final Entry entry = keywords.entries_.get(id);
+        final DataType[] updated;
+        final int index;
+        if (entry != null) {
+            index = entry.index;
+            updated = keywords.keywords_.clone();
+        } else {
+            index = keywords.keywords_.length;
+            updated = Arrays.copyOf(keywords.keywords_, index + 1);
+        }
+        updated[index] = new DataType(id, value);
+        sri.keywords = updated;
+        keywords.keywords_ = updated;
+        keywords.entries_.put(id, decode(index, value));
+    }
+
+    /**
+     * Sets several keywords at once. The keyword array is copied only once,
+     * regardless of how many keywords are updated or added.
+     */
+    public static void setAll(StreamSRI sri, Map<String,Any> values) {
+        final Keywords keywords = Keywords.of(sri);
+        int added = 0;
+        for (Map.Entry<String,Any> value : values.entrySet()) {
+            if (!keywords.entries_.containsKey(value.getKey())) {
+                added++;
+            }
+        }
+        int index = keywords.keywords_.length;
+        final DataType[] updated = Arrays.copyOf(keywords.keywords_, index + added);
+        for (Map.Entry<String,Any> value : values.entrySet()) {
+            final Entry entry = keywords.entries_.get(value.getKey());
+            if (entry != null) {
+                updated[entry.index] = new DataType(value.getKey(), value.getValue());
+                keywords.entries_.put(value.getKey(), decode(entry.index, value.getValue()));
+            } else {
+                updated[index] = new DataType(value.getKey(), value.getValue());
+                keywords.entries_.put(value.getKey(), decode(index, value.getValue()));
+                index++;
+            }
+        }
+        sri.keywords = updated;
+        keywords.keywords_ = updated;
+    }
+
+    /**
+     * Sets a keyword to a double value.
+     */
+    public static void setDouble(StreamSRI sri, String id, double value) {
+        final Any any = ORB.init().create_any();
+        any.insert_double(value);
+        set(sri, id, any);
+    }
+
+    /**
+     * Sets a keyword to a long long value.
+     */
+    public static void setLong(StreamSRI sri, String id, long value) {
+        final Any any = ORB.init().create_any();
+        any.insert_longlong(value);
+        set(sri, id, any);
+    }
+
+    /**
+     * Sets a keyword to a string value.
+     */
+    public static void setString(StreamSRI sri, String id, String value) {
+        final Any any = ORB.init().create_any();
+        any.insert_string(value);
+        set(sri, id, any);
+    }
+
+    /**
+     * Removes a keyword from an SRI.
+     *
+     * @return  true if the keyword existed
+     */
+    public static boolean remove(StreamSRI sri, String id) {
+        final Keywords keywords = Keywords.of(sri);
+        final Entry entry = keywords.entries_.get(id);
+        if (entry == null) {
+            return false;
+        }
+        final DataType[] current = keywords.keywords_;
+        final DataType[] updated = new DataType[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, entry.index);
+        System.arraycopy(current, entry.index + 1, updated, entry.index, updated.length - entry.index);
+        sri.keywords = updated;
+        // Indices after the removed keyword have shifted, and a duplicate id
+        // may now be visible; rebuild from the new array.
+        cache_.get().put(sri, new Keywords(updated));
+        return true;
+    }
+
+    private static DataType[] keywordsOf(StreamSRI sri) {
+        // A null keyword array is treated as empty, without modifying the SRI
+        return (sri.keywords != null) ? sri.keywords : EMPTY;
+    }
+
+    private static Entry decode(int index, Any value) {
+        final Entry entry = new Entry();
+        entry.index = index;
+        entry.value = value;
+        if (value == null) {
+            return entry;
+        }
+        try {
+            TypeCode type = value.type();
+            while (type.kind().value() == TCKind._tk_alias) {
+                type = type.content_type();
+            }
+            switch (type.kind().value()) {
+            case TCKind._tk_boolean:
+                setNumeric(entry, value.extract_boolean() ? 1 : 0);
+                break;
+            case TCKind._tk_octet:
+                setNumeric(entry, value.extract_octet() & 0xFFL);
+                break;
+            case TCKind._tk_short:
+                setNumeric(entry, value.extract_short());
+                break;
+            case TCKind._tk_ushort:
+                setNumeric(entry, value.extract_ushort() & 0xFFFFL);
+                break;
+            case TCKind._tk_long:
+                setNumeric(entry, value.extract_long());
+                break;
+            case TCKind._tk_ulong:
+                setNumeric(entry, value.extract_ulong() & 0xFFFFFFFFL);
+                break;
+            case TCKind._tk_longlong:
+                setNumeric(entry, value.extract_longlong());
+                break;
+            case TCKind._tk_ulonglong:
+                {
+                    final long bits = value.extract_ulonglong();
+                    entry.numeric = true;
+                    entry.longValue = bits;
+                    entry.doubleValue = (bits >= 0) ? bits : ((bits >>> 1) * 2.0 + (bits & 1));
+                }
+                break;
+            case TCKind._tk_float:
+                setNumeric(entry, (double) value.extract_float());
+                break;
+            case TCKind._tk_double:
+                setNumeric(entry, value.extract_double());
+                break;
+            case TCKind._tk_string:
+                entry.stringValue = value.extract_string();
+                break;
+            case TCKind._tk_wstring:
+                entry.stringValue = value.extract_wstring();
+                break;
+            default:
+                break;
+            }
+        } catch (final BAD_OPERATION ex) {
+            // Leave the entry untyped; the raw value is still available
+        } catch (final BadKind ex) {
+            // Leave the entry untyped; the raw value is still available
+        }
+        return entry;
+    }
+
+    private static void setNumeric(Entry entry, long value) {
+        entry.numeric = true;
+        entry.longValue = value;
+        entry.doubleValue = value;
+    }
+
+    private static void setNumeric(Entry entry, double value) {
+        entry.numeric = true;
+        entry.longValue = (long) value;
+        entry.doubleValue = value;
+    }
+}
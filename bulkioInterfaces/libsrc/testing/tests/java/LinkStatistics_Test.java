@@ -0,0 +1,197 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK bulkioInterfaces.
+ *
+ * REDHAWK bulkioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK bulkioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.ossie.properties.AnyUtils;
+import CF.DataType;
+import BULKIO.PortStatistics;
+
+import bulkio.LatencyHistogram;
+import bulkio.LatencyStatistics;
+import bulkio.linkStatistics;
+
+@RunWith(JUnit4.class)
+public class LinkStatistics_Test {
+
+    private static class FloatSize extends bulkio.SizeOf<Float> {
+        public <T> int sizeof() {
+            return 4;
+        }
+    }
+
+    private static Object getKeyword(PortStatistics stats, String id) {
+        for (DataType dt : stats.keywords) {
+            if (dt.id.equals(id)) {
+                return AnyUtils.convertAny(dt.value);
+            }
+        }
+        return null;
+    }
+
+    private static long getCount(PortStatistics stats, String id) {
+        return ((Number) getKeyword(stats, id)).longValue();
+    }
+
+    @Test
+    public void testStreamCounters() {
+        linkStatistics stats = new linkStatistics("test", new FloatSize());
+        stats.update(100, 0.0f, false, "stream_a", false);
+        stats.update(200, 0.0f, false, "stream_a", false);
+        stats.update(50, 0.5f, false, "stream_b", true);
+        stats.dropped("stream_b", 3);
+
+        linkStatistics.StreamCounters counters = stats.getStreamCounters("stream_a");
+        assertEquals(300, counters.elements.get());
+        assertEquals(1200, counters.bytes.get());
+        assertEquals(2, counters.calls.get());
+
+        PortStatistics result = stats.retrieve();
+        List<String> streamIDs = Arrays.asList(result.streamIDs);
+        assertEquals(2, streamIDs.size());
+        assertTrue(streamIDs.contains("stream_a"));
+        assertTrue(streamIDs.contains("stream_b"));
+        assertEquals(300, getCount(result, "stream::stream_a::elements"));
+        assertEquals(3, getCount(result, "stream::stream_b::drops"));
+        assertEquals(1, getCount(result, "stream::stream_b::flushes"));
+        assertNotNull(getKeyword(result, "timeSinceLastFlush"));
+    }
+
+    @Test
+    public void testEndOfStream() {
+        linkStatistics stats = new linkStatistics("test", new FloatSize());
+        stats.update(100, 0.0f, false, "stream_a", false);
+        stats.update(100, 0.0f, true, "stream_a", false);
+        assertTrue(stats.getActiveStreamIDs().isEmpty());
+
+        // Ended streams are reported once, then removed
+        PortStatistics result = stats.retrieve();
+        assertEquals(0, result.streamIDs.length);
+        assertEquals(200, getCount(result, "stream::stream_a::elements"));
+        assertNull(stats.getStreamCounters("stream_a"));
+        assertNull(getKeyword(stats.retrieve(), "stream::stream_a::elements"));
+    }
+
+    @Test
+    public void testWindow() {
+        linkStatistics stats = new linkStatistics("test", new FloatSize(), 100);
+        assertEquals(100, stats.getHistoryWindow());
+        for (int ii = 0; ii < 100; ++ii) {
+            stats.update(10, ii / 100.0f, false, "stream_a", false, ii * 1000L);
+        }
+        PortStatistics result = stats.retrieve();
+        assertEquals(0.495f, result.averageQueueDepth, 1.0e-3);
+        assertEquals(0.49, (Double) getKeyword(result, "queueDepth::p50"), 1.0e-6);
+        assertEquals(0.98, (Double) getKeyword(result, "queueDepth::p99"), 1.0e-6);
+        assertEquals(49.0e-6, (Double) getKeyword(result, "latency::p50"), 1.0e-12);
+        assertEquals(98.0e-6, (Double) getKeyword(result, "latency::p99"), 1.0e-12);
+
+        // Each call returns a new object
+        assertNotSame(result, stats.retrieve());
+    }
+
+    @Test
+    public void testConcurrentWindow() throws Exception {
+        final linkStatistics stats = new linkStatistics("test", new FloatSize(), 4);
+        final float[] depths = new float[] { 0.25f, 0.75f };
+        final Thread[] writers = new Thread[depths.length];
+        for (int index = 0; index < writers.length; ++index) {
+            final float depth = depths[index];
+            writers[index] = new Thread() {
+                public void run() {
+                    for (int ii = 0; ii < 100000; ++ii) {
+                        stats.update(10, depth, false, "stream_a", false);
+                    }
+                }
+            };
+            writers[index].start();
+        }
+        // Every sample read while the ring wraps must come from one call
+        for (int ii = 0; ii < 1000; ++ii) {
+            PortStatistics result = stats.retrieve();
+            if (result.averageQueueDepth >= 0.0f) {
+                double p99 = (Double) getKeyword(result, "queueDepth::p99");
+                assertTrue(p99 == 0.25 || p99 == 0.75);
+                double p50 = (Double) getKeyword(result, "queueDepth::p50");
+                assertTrue(p50 == 0.25 || p50 == 0.75);
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(200000, stats.getStreamCounters("stream_a").calls.get());
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(0.5));
+        for (long ii = 1; ii <= 1000; ++ii) {
+            histogram.record(ii * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        // Log-linear buckets are accurate to within ~1.6%
+        assertEquals(500000.0, histogram.getValueAtPercentile(0.50), 500000.0 * 0.016);
+        assertEquals(990000.0, histogram.getValueAtPercentile(0.99), 990000.0 * 0.016);
+        assertEquals(1000000, histogram.getValueAtPercentile(1.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testStreamLatency() {
+        linkStatistics stats = new linkStatistics("test", new FloatSize());
+        LatencyStatistics latency = stats.getLatencyStatistics();
+        assertFalse(latency.isEnabled());
+        assertEquals(0, latency.received("stream_a", bulkio.time.utils.now()));
+
+        latency.setEnabled(true);
+        long received = latency.received("stream_a", bulkio.time.utils.now());
+        assertTrue(received != 0);
+        latency.dequeued("stream_a", received);
+        stats.update(100, 0.0f, true, "stream_a", false);
+
+        // Ended streams are reported once, then removed
+        PortStatistics result = stats.retrieve();
+        assertNotNull(getKeyword(result, "stream::stream_a::age::p50"));
+        assertNotNull(getKeyword(result, "stream::stream_a::queueDelay::p999"));
+        assertNull(getKeyword(stats.retrieve(), "stream::stream_a::queueDelay::p999"));
+    }
+
+    @Test
+    public void testEmpty() {
+        linkStatistics stats = new linkStatistics("test", new FloatSize());
+        PortStatistics result = stats.retrieve();
+        assertEquals("test", result.portName);
+        assertEquals(-1.0f, result.elementsPerSecond, 0.0);
+        assertEquals(0, result.streamIDs.length);
+
+        stats.setEnabled(false);
+        assertNull(stats.retrieve());
+    }
+}
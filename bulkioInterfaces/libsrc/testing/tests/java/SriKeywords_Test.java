@@ -0,0 +1,185 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK bulkioInterfaces.
+ *
+ * REDHAWK bulkioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK bulkioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.omg.CORBA.Any;
+import org.omg.CORBA.ORB;
+import org.omg.CORBA.TCKind;
+import org.ossie.properties.AnyUtils;
+import CF.DataType;
+import BULKIO.StreamSRI;
+
+import bulkio.sri.Keywords;
+
+@RunWith(JUnit4.class)
+public class SriKeywords_Test {
+
+    private static StreamSRI createSRI() {
+        StreamSRI sri = bulkio.sri.utils.create("test-keywords", 1.0, (short)1, false);
+        sri.keywords = new DataType[] {
+            new DataType("CHAN_RF", AnyUtils.toAny(new Double(101.1e6), TCKind.tk_double)),
+            new DataType("FRONTEND::BANDWIDTH", AnyUtils.toAny(new Float(2.0e6f), TCKind.tk_float)),
+            new DataType("COL_RF", AnyUtils.toAny(new Integer(-5), TCKind.tk_long)),
+            new DataType("NAME", AnyUtils.toAny("antenna", TCKind.tk_string))
+        };
+        return sri;
+    }
+
+    @Test
+    public void testTypedAccess() {
+        StreamSRI sri = createSRI();
+        Keywords keywords = Keywords.of(sri);
+        assertEquals(4, keywords.size());
+        assertEquals(101.1e6, keywords.getDouble("CHAN_RF", 0.0), 0.0);
+        assertEquals(2.0e6, keywords.getDouble("FRONTEND::BANDWIDTH", 0.0), 0.0);
+        assertEquals(-5, keywords.getLong("COL_RF", 0));
+        assertEquals("antenna", keywords.getString("NAME", null));
+
+        // Missing or mistyped keywords return the default
+        assertFalse(keywords.contains("MISSING"));
+        assertEquals(1.0, keywords.getDouble("MISSING", 1.0), 0.0);
+        assertEquals(2.0, keywords.getDouble("NAME", 2.0), 0.0);
+        assertEquals("none", keywords.getString("CHAN_RF", "none"));
+        assertNull(keywords.getValue("MISSING"));
+    }
+
+    @Test
+    public void testCaching() {
+        StreamSRI sri = createSRI();
+        Keywords keywords = Keywords.of(sri);
+        assertSame(keywords, Keywords.of(sri));
+
+        // Replacing the keyword array invalidates the cached accessor
+        sri.keywords = new DataType[0];
+        Keywords updated = Keywords.of(sri);
+        assertNotSame(keywords, updated);
+        assertEquals(0, updated.size());
+    }
+
+    @Test
+    public void testModify() {
+        StreamSRI sri = createSRI();
+        DataType[] original = sri.keywords;
+
+        // Existing keywords are updated in a copy of the array
+        Keywords.setDouble(sri, "CHAN_RF", 99.5e6);
+        assertNotSame(original, sri.keywords);
+        assertEquals(101.1e6, original[0].value.extract_double(), 0.0);
+        assertEquals(99.5e6, Keywords.of(sri).getDouble("CHAN_RF", 0.0), 0.0);
+        assertEquals(99.5e6, sri.keywords[0].value.extract_double(), 0.0);
+
+        // New keywords are appended
+        Keywords.setLong(sri, "COUNT", 42);
+        assertEquals(5, sri.keywords.length);
+        assertEquals("COUNT", sri.keywords[4].id);
+        assertEquals(42, Keywords.of(sri).getLong("COUNT", 0));
+
+        // Removal shifts later keywords down
+        assertTrue(Keywords.remove(sri, "COL_RF"));
+        assertFalse(Keywords.remove(sri, "COL_RF"));
+        assertEquals(4, sri.keywords.length);
+        assertEquals("NAME", sri.keywords[2].id);
+        assertEquals("antenna", Keywords.of(sri).getString("NAME", null));
+        assertEquals(42, Keywords.of(sri).getLong("COUNT", 0));
+    }
+
+    @Test
+    public void testSharedKeywords() {
+        StreamSRI first = createSRI();
+        StreamSRI second = createSRI();
+        second.keywords = first.keywords;
+        assertEquals(101.1e6, Keywords.of(second).getDouble("CHAN_RF", 0.0), 0.0);
+
+        // Modifying one SRI must not affect another that shares its array
+        Keywords.setDouble(first, "CHAN_RF", 99.5e6);
+        assertEquals(99.5e6, Keywords.of(first).getDouble("CHAN_RF", 0.0), 0.0);
+        assertEquals(101.1e6, Keywords.of(second).getDouble("CHAN_RF", 0.0), 0.0);
+        assertEquals(101.1e6, second.keywords[0].value.extract_double(), 0.0);
+    }
+
+    @Test
+    public void testNullKeywords() {
+        StreamSRI sri = createSRI();
+        sri.keywords = null;
+
+        // Reading does not modify the SRI
+        assertEquals(0, Keywords.of(sri).size());
+        assertNull(sri.keywords);
+
+        Keywords.setLong(sri, "COUNT", 1);
+        assertEquals(1, sri.keywords.length);
+        assertEquals(1, Keywords.of(sri).getLong("COUNT", 0));
+    }
+
+    @Test
+    public void testSetAll() {
+        StreamSRI sri = createSRI();
+        Map<String,Any> values = new HashMap<String,Any>();
+        values.put("NAME", AnyUtils.toAny("dish", TCKind.tk_string));
+        values.put("ONE", AnyUtils.toAny(new Short((short)1), TCKind.tk_short));
+        values.put("TWO", AnyUtils.toAny(new Short((short)2), TCKind.tk_short));
+        Keywords.setAll(sri, values);
+
+        assertEquals(6, sri.keywords.length);
+        Keywords keywords = Keywords.of(sri);
+        assertEquals("dish", keywords.getString("NAME", null));
+        assertEquals(1, keywords.getLong("ONE", 0));
+        assertEquals(2, keywords.getLong("TWO", 0));
+        assertEquals(101.1e6, keywords.getDouble("CHAN_RF", 0.0), 0.0);
+    }
+
+    @Test
+    public void testUnsigned() {
+        StreamSRI sri = createSRI();
+        Any value = ORB.init().create_any();
+        value.insert_ulong(0xFFFFFFFF);
+        Keywords.set(sri, "UNSIGNED", value);
+        assertEquals(4294967295L, Keywords.of(sri).getLong("UNSIGNED", 0));
+        assertEquals(4294967295.0, Keywords.of(sri).getDouble("UNSIGNED", 0.0), 0.0);
+    }
+
+    @Test
+    public void testOtherThread() throws Exception {
+        final StreamSRI sri = createSRI();
+        assertEquals(101.1e6, Keywords.of(sri).getDouble("CHAN_RF", 0.0), 0.0);
+
+        // A change made on another thread is seen here, because it replaces
+        // the SRI's keyword array
+        final Thread thread = new Thread() {
+            public void run() {
+                Keywords.setDouble(sri, "CHAN_RF", 99.5e6);
+                Keywords.remove(sri, "NAME");
+            }
+        };
+        thread.start();
+        thread.join();
+        Keywords keywords = Keywords.of(sri);
+        assertEquals(99.5e6, keywords.getDouble("CHAN_RF", 0.0), 0.0);
+        assertFalse(keywords.contains("NAME"));
+        assertEquals(3, keywords.size());
+    }
+}
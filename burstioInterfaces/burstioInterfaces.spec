@@ -43,6 +43,8 @@ BuildRoot:      %{_tmppath}/%{name}-%{version}-%{release}-buildroot
 Requires:       redhawk >= 2.0
 BuildRequires:  redhawk-devel >= 2.0
 
+# bulkioInterfaces also provides the bulkio library (bulkio.jar and
+# bulkio.pc) that burstio.jar builds against
 Requires:       bulkioInterfaces >= 2.0
 BuildRequires:  bulkioInterfaces >= 2.0
 
@@ -0,0 +1,64 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded free list of burst objects for reuse by an output port.
+ * <p>
+ * Bursts are returned to the pool once every connection has finished
+ * sending them; if the pool is full, returned bursts are left for the
+ * garbage collector.
+ */
+final class BurstPool<B>
+{
+    private final int capacity_;
+    private final ArrayDeque<B> free_;
+
+    BurstPool (int capacity)
+    {
+        this.capacity_ = capacity;
+        this.free_ = new ArrayDeque<B>(Math.min(capacity, 1024));
+    }
+
+    int capacity ()
+    {
+        return this.capacity_;
+    }
+
+    /**
+     * @return a previously released burst, or null if the pool is empty
+     */
+    synchronized B acquire ()
+    {
+        return this.free_.pollLast();
+    }
+
+    synchronized void release (B[] bursts)
+    {
+        for (B burst : bursts) {
+            if (this.free_.size() >= this.capacity_) {
+                return;
+            }
+            this.free_.addLast(burst);
+        }
+    }
+}
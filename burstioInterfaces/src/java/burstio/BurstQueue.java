@@ -0,0 +1,274 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, array-backed queue of bursts for input ports.
+ * <p>
+ * Offers and polls are lock-free (each slot carries a sequence number, so
+ * producers and consumers only contend on the head or tail counter). Each
+ * burst is stored with a <code>long</code> stamp, used by the port for its
+ * receive time.
+ * <p>
+ * Threads that need to wait for data or for space park themselves rather
+ * than waiting on a monitor; producers and consumers are tracked separately,
+ * so removing a burst only wakes producers, and adding one only wakes
+ * consumers.
+ */
+final class BurstQueue<E>
+{
+    // Number of times a waiter re-checks its condition before parking
+    private static final int SPIN_TRIES = 100;
+
+    private final int mask_;
+    private final Object[] items_;
+    private final long[] stamps_;
+    private final AtomicLongArray sequences_;
+    private final AtomicLong head_ = new AtomicLong();
+    private final AtomicLong tail_ = new AtomicLong();
+
+    private final ConcurrentLinkedQueue<Thread> consumers_ = new ConcurrentLinkedQueue<Thread>();
+    private final ConcurrentLinkedQueue<Thread> producers_ = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * Condition for a waiting thread, re-checked after each wakeup.
+     */
+    interface Condition
+    {
+        boolean isSatisfied ();
+    }
+
+    BurstQueue (int capacity)
+    {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mask_ = size - 1;
+        this.items_ = new Object[size];
+        this.stamps_ = new long[size];
+        this.sequences_ = new AtomicLongArray(size);
+        for (int index = 0; index < size; ++index) {
+            this.sequences_.set(index, index);
+        }
+    }
+
+    int capacity ()
+    {
+        return this.items_.length;
+    }
+
+    int size ()
+    {
+        // Read head first so that the result is never negative
+        final long head = this.head_.get();
+        final long size = this.tail_.get() - head;
+        return (int) Math.max(0, Math.min(size, this.items_.length));
+    }
+
+    boolean isEmpty ()
+    {
+        return this.size() == 0;
+    }
+
+    /**
+     * Adds a burst to the tail of the queue.
+     *
+     * @return false if the queue is full
+     */
+    boolean offer (E item, long stamp)
+    {
+        long position = this.tail_.get();
+        while (true) {
+            final int index = (int) (position & this.mask_);
+            final long difference = this.sequences_.get(index) - position;
+            if (difference == 0) {
+                if (this.tail_.compareAndSet(position, position + 1)) {
+                    this.items_[index] = item;
+                    this.stamps_[index] = stamp;
+                    // Publishes the item and stamp to consumers
+                    this.sequences_.set(index, position + 1);
+                    return true;
+                }
+                position = this.tail_.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.tail_.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the burst at the head of the queue.
+     *
+     * @param stamp  if not null, receives the burst's stamp in element 0
+     * @return       the burst, or null if the queue is empty
+     */
+    E poll (long[] stamp)
+    {
+        long position = this.head_.get();
+        while (true) {
+            final int index = (int) (position & this.mask_);
+            final long difference = this.sequences_.get(index) - (position + 1);
+            if (difference == 0) {
+                if (this.head_.compareAndSet(position, position + 1)) {
+                    return this.take(index, position, stamp, 0);
+                }
+                position = this.head_.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = this.head_.get();
+            }
+        }
+    }
+
+    /**
+     * Removes up to <code>maxCount</code> bursts from the head of the queue,
+     * adding them to <code>bursts</code>.
+     *
+     * @param stamps  if not null, receives the bursts' stamps; must have room
+     *                for <code>maxCount</code> values
+     * @return        the number of bursts removed
+     */
+    int drainTo (List<E> bursts, long[] stamps, int maxCount)
+    {
+        int count = 0;
+        while (count < maxCount) {
+            final long position = this.head_.get();
+            final int index = (int) (position & this.mask_);
+            final long difference = this.sequences_.get(index) - (position + 1);
+            if (difference < 0) {
+                break;
+            } else if (difference == 0 && this.head_.compareAndSet(position, position + 1)) {
+                bursts.add(this.take(index, position, stamps, count));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E take (int index, long position, long[] stamps, int offset)
+    {
+        final E item = (E) this.items_[index];
+        if (stamps != null) {
+            stamps[offset] = this.stamps_[index];
+        }
+        this.items_[index] = null;
+        // Releases the slot to producers
+        this.sequences_.set(index, position + this.mask_ + 1);
+        return item;
+    }
+
+    /**
+     * Waits until a condition is satisfied on behalf of a consumer.
+     *
+     * @param timeout  maximum time to wait in nanoseconds, or a negative
+     *                 value to wait indefinitely
+     * @return         true if the condition was satisfied
+     */
+    boolean awaitConsumer (Condition condition, long timeout)
+    {
+        return this.await(this.consumers_, condition, timeout);
+    }
+
+    /**
+     * Waits until a condition is satisfied on behalf of a producer.
+     *
+     * @see awaitConsumer
+     */
+    boolean awaitProducer (Condition condition, long timeout)
+    {
+        return this.await(this.producers_, condition, timeout);
+    }
+
+    /**
+     * Wakes all waiting consumers.
+     */
+    void signalConsumers ()
+    {
+        signal(this.consumers_);
+    }
+
+    /**
+     * Wakes all waiting producers.
+     */
+    void signalProducers ()
+    {
+        signal(this.producers_);
+    }
+
+    private boolean await (ConcurrentLinkedQueue<Thread> waiters, Condition condition, long timeout)
+    {
+        for (int tries = 0; tries < SPIN_TRIES; ++tries) {
+            if (condition.isSatisfied()) {
+                return true;
+            }
+        }
+        if (timeout == 0) {
+            return condition.isSatisfied();
+        }
+
+        final Thread self = Thread.currentThread();
+        final long deadline = System.nanoTime() + timeout;
+        waiters.add(self);
+        try {
+            while (true) {
+                // Check after registering, so that a signal sent between the
+                // check and parking leaves the permit set
+                if (condition.isSatisfied()) {
+                    return true;
+                }
+                if (self.isInterrupted()) {
+                    return false;
+                }
+                if (timeout < 0) {
+                    LockSupport.park(this);
+                } else {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return condition.isSatisfied();
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        } finally {
+            waiters.remove(self);
+        }
+    }
+
+    private static void signal (ConcurrentLinkedQueue<Thread> waiters)
+    {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+}
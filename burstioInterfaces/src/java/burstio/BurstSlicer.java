@@ -0,0 +1,406 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import BULKIO.PrecisionUTCTime;
+import BULKIO.StreamSRI;
+
+import burstio.traits.BurstTraits;
+
+/**
+ * Slices continuous bulkio streams into bursts.
+ * <p>
+ * In fixed-size mode, each stream is cut into consecutive bursts of the same
+ * number of samples; a burst may span several packets. In energy-gated mode,
+ * a burst starts at the first sample whose power (the squared magnitude, for
+ * complex data) reaches the threshold, and ends once more than
+ * <code>hangover</code> consecutive samples fall below it; the trailing quiet
+ * samples are not included. Gated bursts longer than the maximum length are
+ * split.
+ * <p>
+ * The burst SRI is derived from the stream's SRI (stream ID, sample spacing,
+ * complex mode and keywords) and shared by all bursts until the stream SRI
+ * changes. Each burst's timestamp is the packet's, offset to the burst's
+ * first sample. A packet that is exactly one burst long is sent as-is,
+ * without copying. A burst that lies within one packet is copied once,
+ * straight into an array of its final size. A burst that spans packets is
+ * accumulated in an array of the maximum burst length; if it ends up
+ * shorter (a gated burst, or a partial burst), it is copied again into an
+ * array of its final size. Partial bursts are sent at end-of-stream.
+ * <p>
+ * Packets for each stream must be pushed in order; typical use is to pass
+ * each packet from a bulkio input port's <code>getPacket</code> to
+ * <code>pushPacket</code>, with a burstio output port as the sink.
+ */
+public class BurstSlicer<A>
+{
+    private static class Stream<A>
+    {
+        BURSTIO.BurstSRI sri;
+        StreamSRI streamSRI;
+        int sampleSize;
+        // Burst currently being filled, and its timestamp
+        A buffer = null;
+        int filled = 0;
+        PrecisionUTCTime time = null;
+        // Gated mode: whether a burst is in progress, and the number of
+        // consecutive samples below the threshold at its end
+        boolean active = false;
+        int quiet = 0;
+    }
+
+    private final BurstSink<A> output_;
+    private final int burstLength_;
+    private final boolean gated_;
+    private final double threshold_;
+    private final int hangover_;
+    private final boolean unsigned_;
+    private final Map<String,Stream<A>> streams_ = new HashMap<String,Stream<A>>();
+    private final bulkio.sri.Comparator compareSRI_ = new bulkio.sri.DefaultComparator();
+    private double[] power_ = new double[0];
+
+    /**
+     * Creates a slicer that produces bursts of a fixed size.
+     *
+     * @param output       destination for bursts
+     * @param burstLength  number of samples per burst
+     */
+    public BurstSlicer (BurstSink<A> output, int burstLength)
+    {
+        this(output, burstLength, false, 0.0, 0, false);
+    }
+
+    /**
+     * Creates a slicer that produces energy-gated bursts from signed or
+     * floating-point samples.
+     *
+     * @param output          destination for bursts
+     * @param maxBurstLength  maximum number of samples per burst
+     * @param threshold       minimum sample power to start or continue a
+     *                        burst
+     * @param hangover        number of samples below the threshold allowed
+     *                        within a burst
+     */
+    public BurstSlicer (BurstSink<A> output, int maxBurstLength, double threshold, int hangover)
+    {
+        this(output, maxBurstLength, true, threshold, hangover, false);
+    }
+
+    /**
+     * Creates a slicer that produces energy-gated bursts, using the burst
+     * type's traits to tell whether samples are unsigned.
+     *
+     * @param output          destination for bursts
+     * @param traits          traits of the burst type
+     * @param maxBurstLength  maximum number of samples per burst
+     * @param threshold       minimum sample power to start or continue a
+     *                        burst
+     * @param hangover        number of samples below the threshold allowed
+     *                        within a burst
+     */
+    public BurstSlicer (BurstSink<A> output, BurstTraits<?,A> traits, int maxBurstLength, double threshold, int hangover)
+    {
+        this(output, maxBurstLength, true, threshold, hangover, traits.isUnsigned());
+    }
+
+    private BurstSlicer (BurstSink<A> output, int burstLength, boolean gated, double threshold, int hangover, boolean unsigned)
+    {
+        if (burstLength < 1) {
+            throw new IllegalArgumentException("burst length must be positive");
+        }
+        if (hangover < 0) {
+            throw new IllegalArgumentException("hangover must not be negative");
+        }
+        this.output_ = output;
+        this.burstLength_ = burstLength;
+        this.gated_ = gated;
+        this.threshold_ = threshold;
+        this.hangover_ = hangover;
+        this.unsigned_ = unsigned;
+    }
+
+    public void pushPacket (bulkio.DataTransfer<A> packet)
+    {
+        this.pushPacket(packet.dataBuffer, packet.T, packet.EOS, packet.streamID, packet.SRI);
+    }
+
+    public synchronized void pushPacket (A data, PrecisionUTCTime time, boolean eos, String streamID, StreamSRI sri)
+    {
+        if (time == null) {
+            time = bulkio.time.utils.notSet();
+        }
+        final Stream<A> stream = this.getStream(streamID, sri);
+        final int length = (data == null) ? 0 : Array.getLength(data);
+        if (length > 0) {
+            if (this.gated_) {
+                this.sliceGated(stream, data, length, time);
+            } else {
+                this.sliceFixed(stream, data, length, time);
+            }
+        }
+        if (eos) {
+            if (stream.buffer != null) {
+                this.emit(stream, stream.active ? stream.quiet : 0, true);
+            } else {
+                final A empty = (data != null) ? this.allocate(data, 0) : null;
+                this.output_.pushBurst(empty, stream.sri, time, true);
+            }
+            this.streams_.remove(streamID);
+        }
+    }
+
+    private Stream<A> getStream (final String streamID, StreamSRI sri)
+    {
+        Stream<A> stream = this.streams_.get(streamID);
+        if (stream != null) {
+            if (sri == null || sri == stream.streamSRI || this.compareSRI_.compare(sri, stream.streamSRI)) {
+                return stream;
+            }
+            // SRI changed; the partial burst belongs to the old SRI
+            if (stream.buffer != null) {
+                this.emit(stream, stream.active ? stream.quiet : 0, false);
+            }
+            stream.active = false;
+            stream.quiet = 0;
+        } else {
+            stream = new Stream<A>();
+            this.streams_.put(streamID, stream);
+        }
+        if (sri == null) {
+            sri = bulkio.sri.utils.create();
+            sri.streamID = streamID;
+        }
+        stream.streamSRI = sri;
+        stream.sampleSize = (sri.mode != 0) ? 2 : 1;
+        stream.sri = Utils.createSRI(streamID, sri.xdelta);
+        stream.sri.mode = sri.mode;
+        stream.sri.keywords = (sri.keywords != null) ? sri.keywords : new CF.DataType[0];
+        if (!this.gated_) {
+            stream.sri.burstLength = this.burstLength_;
+        }
+        return stream;
+    }
+
+    private void sliceFixed (Stream<A> stream, A data, int length, PrecisionUTCTime time)
+    {
+        final int burst_elements = this.burstLength_ * stream.sampleSize;
+        int offset = 0;
+
+        // Complete the burst left over from previous packets
+        if (stream.buffer != null) {
+            offset = Math.min(length, burst_elements - stream.filled);
+            this.append(stream, data, 0, offset, time);
+            if (stream.filled == burst_elements) {
+                this.emit(stream, 0, false);
+            }
+        }
+
+        while ((length - offset) >= burst_elements) {
+            final A burst;
+            if (offset == 0 && length == burst_elements) {
+                burst = data;
+            } else {
+                burst = this.allocate(data, burst_elements);
+                System.arraycopy(data, offset, burst, 0, burst_elements);
+            }
+            final PrecisionUTCTime burst_time = this.offsetTime(time, offset, stream);
+            this.output_.pushBurst(burst, stream.sri, burst_time, false);
+            offset += burst_elements;
+        }
+
+        if (offset < length) {
+            this.append(stream, data, offset, length - offset, time);
+        }
+    }
+
+    private void sliceGated (Stream<A> stream, A data, int length, PrecisionUTCTime time)
+    {
+        final int sample_size = stream.sampleSize;
+        final int samples = length / sample_size;
+        if (this.power_.length < samples) {
+            this.power_ = new double[samples];
+        }
+        computePower(data, samples * sample_size, sample_size, this.unsigned_, this.power_);
+
+        // First sample of the current burst that has not yet been appended,
+        // or -1 if not in a burst
+        int start = stream.active ? 0 : -1;
+        for (int index = 0; index < samples; ++index) {
+            final boolean above = this.power_[index] >= this.threshold_;
+            if (start < 0) {
+                if (above) {
+                    start = index;
+                    stream.quiet = 0;
+                }
+                continue;
+            }
+            if (above) {
+                stream.quiet = 0;
+            } else {
+                stream.quiet++;
+            }
+            if (stream.quiet > this.hangover_) {
+                // Burst is over; the current sample is excluded, and the
+                // quiet samples before it are trimmed
+                this.finish(stream, data, start * sample_size, (index - start) * sample_size, stream.quiet - 1, time);
+                start = -1;
+                stream.quiet = 0;
+            } else if ((stream.filled / sample_size) + (index + 1 - start) >= this.burstLength_) {
+                // Maximum length; if the signal is still present, continue
+                // in a new burst, otherwise end here without the quiet tail
+                this.finish(stream, data, start * sample_size, (index + 1 - start) * sample_size, stream.quiet, time);
+                if (stream.quiet > 0) {
+                    start = -1;
+                    stream.quiet = 0;
+                } else {
+                    start = index + 1;
+                }
+            }
+        }
+        if (start >= 0 && start < samples) {
+            this.append(stream, data, start * sample_size, (samples - start) * sample_size, time);
+        }
+        stream.active = (start >= 0);
+    }
+
+    private void append (Stream<A> stream, A data, int offset, int count, PrecisionUTCTime time)
+    {
+        if (count <= 0) {
+            return;
+        }
+        if (stream.buffer == null) {
+            stream.buffer = this.allocate(data, this.burstLength_ * stream.sampleSize);
+            stream.filled = 0;
+            stream.time = this.offsetTime(time, offset, stream);
+        }
+        System.arraycopy(data, offset, stream.buffer, stream.filled, count);
+        stream.filled += count;
+    }
+
+    // Ends the current burst with the given elements of a packet, less the
+    // given number of trailing samples. If the burst started in this packet,
+    // it is copied straight into an array of its final size.
+    private void finish (Stream<A> stream, A data, int offset, int count, int trim, PrecisionUTCTime time)
+    {
+        if (stream.buffer != null) {
+            this.append(stream, data, offset, count, time);
+            this.emit(stream, trim, false);
+            return;
+        }
+        final int length = count - (trim * stream.sampleSize);
+        if (length <= 0) {
+            return;
+        }
+        final A burst = this.allocate(data, length);
+        System.arraycopy(data, offset, burst, 0, length);
+        this.output_.pushBurst(burst, stream.sri, this.offsetTime(time, offset, stream), false);
+    }
+
+    // Sends the burst being filled, less the given number of trailing samples
+    private void emit (Stream<A> stream, int trim, boolean eos)
+    {
+        if (stream.buffer == null) {
+            return;
+        }
+        final int length = Math.max(0, stream.filled - (trim * stream.sampleSize));
+        A burst = stream.buffer;
+        if (length != Array.getLength(burst)) {
+            burst = this.allocate(burst, length);
+            System.arraycopy(stream.buffer, 0, burst, 0, length);
+        }
+        this.output_.pushBurst(burst, stream.sri, stream.time, eos);
+        stream.buffer = null;
+        stream.filled = 0;
+        stream.time = null;
+    }
+
+    private PrecisionUTCTime offsetTime (PrecisionUTCTime time, int offset, Stream<A> stream)
+    {
+        if (offset == 0) {
+            return time;
+        }
+        return bulkio.time.utils.addSampleOffset(time, offset / stream.sampleSize, stream.sri.xdelta);
+    }
+
+    @SuppressWarnings("unchecked")
+    private A allocate (Object template, int length)
+    {
+        return (A) Array.newInstance(template.getClass().getComponentType(), length);
+    }
+
+    // Sums the squares of each sample's elements; the array type is checked
+    // once, and unsigned values are masked to their full range
+    private static void computePower (Object data, int length, int sampleSize, boolean unsigned, double[] power)
+    {
+        Arrays.fill(power, 0, length / sampleSize, 0.0);
+        // Samples are one (real) or two (complex) elements
+        final int shift = (sampleSize == 2) ? 1 : 0;
+        if (data instanceof float[]) {
+            final float[] values = (float[]) data;
+            for (int offset = 0; offset < length; ++offset) {
+                final double value = values[offset];
+                power[offset >> shift] += value * value;
+            }
+        } else if (data instanceof double[]) {
+            final double[] values = (double[]) data;
+            for (int offset = 0; offset < length; ++offset) {
+                final double value = values[offset];
+                power[offset >> shift] += value * value;
+            }
+        } else if (data instanceof byte[]) {
+            final byte[] values = (byte[]) data;
+            final int mask = unsigned ? 0xFF : -1;
+            for (int offset = 0; offset < length; ++offset) {
+                final double value = values[offset] & mask;
+                power[offset >> shift] += value * value;
+            }
+        } else if (data instanceof short[]) {
+            final short[] values = (short[]) data;
+            final int mask = unsigned ? 0xFFFF : -1;
+            for (int offset = 0; offset < length; ++offset) {
+                final double value = values[offset] & mask;
+                power[offset >> shift] += value * value;
+            }
+        } else if (data instanceof int[]) {
+            final int[] values = (int[]) data;
+            final long mask = unsigned ? 0xFFFFFFFFL : -1L;
+            for (int offset = 0; offset < length; ++offset) {
+                final double value = values[offset] & mask;
+                power[offset >> shift] += value * value;
+            }
+        } else if (data instanceof long[]) {
+            final long[] values = (long[]) data;
+            for (int offset = 0; offset < length; ++offset) {
+                double value = values[offset];
+                if (unsigned && values[offset] < 0) {
+                    value += 0x1p64;
+                }
+                power[offset >> shift] += value * value;
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported sample type " + data.getClass().getComponentType());
+        }
+    }
+}
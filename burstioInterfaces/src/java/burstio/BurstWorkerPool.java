@@ -0,0 +1,152 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+import burstio.traits.BurstTraits;
+
+/**
+ * Pool of threads that consume bursts from an input port in parallel.
+ * <p>
+ * Each stream is handled by at most one worker at a time, so bursts within a
+ * stream are processed in order. A worker keeps a stream for as long as it
+ * has queued bursts; once the stream's queue is empty the stream is
+ * released, and whichever worker is idle when its next burst arrives picks
+ * it up.
+ * <p>
+ * While the pool is running, other consumers should not call
+ * <code>getBurst</code> or <code>getBursts</code> on the same port.
+ */
+public class BurstWorkerPool<E>
+{
+    /**
+     * Callback invoked by the workers for each burst.
+     */
+    public interface Processor<E>
+    {
+        public void process (E burst);
+    }
+
+    // How long an idle worker waits before re-checking whether it should
+    // stop, in milliseconds
+    private static final float POLL_TIMEOUT = 125.0f;
+
+    private final InPortImpl<E> port_;
+    private final BurstTraits<E,?> traits_;
+    private final Processor<E> processor_;
+    private final Thread[] workers_;
+    private volatile boolean running_ = false;
+    private final Logger logger_;
+
+    BurstWorkerPool (InPortImpl<E> port, BurstTraits<E,?> traits, int workers, Processor<E> processor)
+    {
+        if (workers < 1) {
+            throw new IllegalArgumentException("worker count must be positive");
+        }
+        this.port_ = port;
+        this.traits_ = traits;
+        this.processor_ = processor;
+        this.workers_ = new Thread[workers];
+        this.logger_ = Logger.getLogger(this.getClass().getName());
+    }
+
+    public int getWorkerCount ()
+    {
+        return this.workers_.length;
+    }
+
+    public synchronized void start ()
+    {
+        if (this.running_) {
+            return;
+        }
+        this.running_ = true;
+        for (int index = 0; index < this.workers_.length; ++index) {
+            this.workers_[index] = new Thread(new Runnable() {
+                public void run ()
+                {
+                    BurstWorkerPool.this.work();
+                }
+            }, this.port_.getName() + "-worker-" + index);
+            this.workers_[index].setDaemon(true);
+            this.workers_[index].start();
+        }
+    }
+
+    /**
+     * Stops all workers, waiting for any bursts currently being processed.
+     */
+    public synchronized void stop ()
+    {
+        if (!this.running_) {
+            return;
+        }
+        this.running_ = false;
+        for (Thread worker : this.workers_) {
+            try {
+                worker.join();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public boolean isRunning ()
+    {
+        return this.running_;
+    }
+
+    private void work ()
+    {
+        // The worker thread itself identifies the owner of its streams
+        final Object self = Thread.currentThread();
+        try {
+            while (this.running_) {
+                final E burst = this.port_.getOwnedBurst(self, POLL_TIMEOUT);
+                if (burst == null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    } else if (!this.port_.isStarted()) {
+                        // The port returns immediately when stopped
+                        LockSupport.parkNanos((long) (POLL_TIMEOUT * 1e6));
+                    }
+                    continue;
+                }
+                final String stream_id = this.traits_.sri(burst).streamID;
+                try {
+                    this.processor_.process(burst);
+                } catch (final RuntimeException ex) {
+                    this.logger_.error("Error processing burst for stream '" + stream_id + "'", ex);
+                } finally {
+                    this.port_.releaseStream(self, stream_id);
+                }
+            }
+        } finally {
+            // Streams with bursts still queued stay owned by this worker
+            // until released; hand them back so that a restarted pool (or
+            // any other consumer) can pick them up
+            this.port_.releaseOwner(self);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Deadline-ordered scheduler for output queue flushes.
+ * <p>
+ * Each output queue owns a single Timer, which is in the scheduler at most
+ * once; scheduling it again only moves it if the new deadline is earlier.
+ * When a timer expires its task is run on the scheduler thread, outside of
+ * the scheduler's lock, and returns the next deadline (if any) so that a
+ * queue that was refilled after its timer was set is re-armed rather than
+ * scheduled a second time.
+ * <p>
+ * The scheduler thread is started on demand and exits after it has been
+ * idle for a while.
+ */
+final class FlushScheduler
+{
+    /**
+     * Work to do when a timer expires.
+     */
+    interface Task
+    {
+        /**
+         * @return the next deadline, as a System.nanoTime() value, or
+         *         NO_DEADLINE if the timer should not be re-armed
+         */
+        long expire ();
+    }
+
+    /**
+     * Returned by Task.expire() when there is no next deadline. Any other
+     * value, including a negative one, is a valid System.nanoTime() value.
+     */
+    static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    static final class Timer
+    {
+        Timer (Task task)
+        {
+            this.task_ = task;
+        }
+
+        private final Task task_;
+        private long deadline_;
+        private boolean scheduled_ = false;
+    }
+
+    private static final Comparator<Timer> DEADLINE_ORDER = new Comparator<Timer>() {
+        public int compare (Timer first, Timer second)
+        {
+            // Compare the difference to allow for nanoTime() wrapping
+            final long difference = first.deadline_ - second.deadline_;
+            return (difference < 0) ? -1 : ((difference == 0) ? 0 : 1);
+        }
+    };
+
+    // How long the thread waits with no timers before exiting, in ms
+    private static final long IDLE_TIMEOUT = 1000;
+
+    private final String name_;
+    private final Logger logger_;
+    private final PriorityQueue<Timer> timers_ = new PriorityQueue<Timer>(16, DEADLINE_ORDER);
+    private Thread thread_ = null;
+
+    private static FlushScheduler shared_ = null;
+
+    /**
+     * Gets the scheduler shared by all output ports, for use when shared
+     * threads are enabled.
+     */
+    static synchronized FlushScheduler shared ()
+    {
+        if (shared_ == null) {
+            shared_ = new FlushScheduler("burstio");
+        }
+        return shared_;
+    }
+
+    FlushScheduler (final String name)
+    {
+        this.name_ = name;
+        this.logger_ = Logger.getLogger(this.getClass().getName());
+    }
+
+    /**
+     * Arms a timer to expire at the given System.nanoTime() value. If the
+     * timer is already armed for an earlier time, it is left as is.
+     */
+    synchronized void schedule (Timer timer, long deadline)
+    {
+        if (timer.scheduled_) {
+            if (deadline - timer.deadline_ >= 0) {
+                return;
+            }
+            this.timers_.remove(timer);
+        }
+        timer.deadline_ = deadline;
+        timer.scheduled_ = true;
+        this.timers_.add(timer);
+
+        if (this.thread_ == null) {
+            this.thread_ = new Thread(new Runnable() {
+                public void run ()
+                {
+                    FlushScheduler.this.run();
+                }
+            }, this.name_ + "-flush");
+            this.thread_.setDaemon(true);
+            this.thread_.start();
+        } else if (this.timers_.peek() == timer) {
+            // The earliest deadline changed
+            this.notify();
+        }
+    }
+
+    private void run ()
+    {
+        while (true) {
+            final Timer timer = this.next();
+            if (timer == null) {
+                return;
+            }
+            long deadline = NO_DEADLINE;
+            try {
+                deadline = timer.task_.expire();
+            } catch (final RuntimeException ex) {
+                this.logger_.error("Error flushing queue (" + this.name_ + ")", ex);
+            }
+            if (deadline != NO_DEADLINE) {
+                this.schedule(timer, deadline);
+            }
+        }
+    }
+
+    // Waits for the earliest timer to expire and removes it, or returns null
+    // (after clearing thread_) if no timers were scheduled for a while
+    private synchronized Timer next ()
+    {
+        while (true) {
+            final Timer timer = this.timers_.peek();
+            if (timer == null) {
+                try {
+                    this.wait(IDLE_TIMEOUT);
+                } catch (final InterruptedException ex) {
+                    this.thread_ = null;
+                    return null;
+                }
+                if (this.timers_.isEmpty()) {
+                    this.thread_ = null;
+                    return null;
+                }
+                continue;
+            }
+            final long remaining = timer.deadline_ - System.nanoTime();
+            if (remaining <= 0) {
+                this.timers_.poll();
+                timer.scheduled_ = false;
+                return timer;
+            }
+            try {
+                this.wait(remaining / 1000000, (int) (remaining % 1000000));
+            } catch (final InterruptedException ex) {
+                this.thread_ = null;
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,699 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.ossie.component.DataListener;
+
+import bulkio.LatencyStatistics;
+import burstio.stats.ReceiverStatistics;
+import burstio.traits.BurstTraits;
+
+
+public class InPortImpl<E> implements InPort<E>
+{
+    public static final int DEFAULT_QUEUE_THRESHOLD = 100;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private BurstTraits<E,?> traits_;
+
+    private final String name_;
+    private volatile int queueThreshold_ = DEFAULT_QUEUE_THRESHOLD;
+    private volatile boolean started_ = false;
+
+    private ReceiverStatistics statistics_;
+    private final AtomicBoolean blockOccurred_ = new AtomicBoolean(false);
+    private Set<String> streamIDs_ = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+    // Canonical SRI for each stream when interning is enabled, so that
+    // queued bursts share one instance instead of each holding its own copy
+    private volatile boolean internSRI_ = false;
+    private final ConcurrentHashMap<String,BURSTIO.BurstSRI> sris_ = new ConcurrentHashMap<String,BURSTIO.BurstSRI>();
+
+    // Notified after each pushBursts call that queues data
+    private final List<DataListener> dataListeners_ = new CopyOnWriteArrayList<DataListener>();
+
+    // Bursts are stored with their receive time for latency statistics (0 if
+    // latency tracking is disabled)
+    private final BurstQueue<E> queue_;
+
+    // Held while a pushBursts call adds its bursts to queue_
+    private final Object pushLock_ = new Object();
+
+    /**
+     * Burst that has been moved out of the queue into a per-stream queue.
+     */
+    private static class Pending<E> {
+        final E burst;
+        final long received;
+        final long sequence;
+
+        Pending (E burst, long received, long sequence)
+        {
+            this.burst = burst;
+            this.received = received;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Pending<?>> SEQUENCE_ORDER = new Comparator<Pending<?>>() {
+        public int compare (Pending<?> first, Pending<?> second)
+        {
+            return (first.sequence < second.sequence) ? -1 : ((first.sequence == second.sequence) ? 0 : 1);
+        }
+    };
+
+    // Per-stream queues, only used once a consumer asks for bursts by stream.
+    // Bursts move from queue_ into these queues in arrival order, so every
+    // pending burst is older than those still in queue_. All fields below are
+    // guarded by pendingLock_.
+    private final Object pendingLock_ = new Object();
+    private final Map<String,ArrayDeque<Pending<E>>> pending_ = new LinkedHashMap<String,ArrayDeque<Pending<E>>>();
+    private final Map<String,Object> owners_ = new HashMap<String,Object>();
+    private long pendingSequence_ = 0;
+    private volatile int pendingCount_ = 0;
+    private volatile int pendingGeneration_ = 0;
+
+    private final BurstQueue.Condition belowThreshold_ = new BurstQueue.Condition() {
+        public boolean isSatisfied ()
+        {
+            return !started_ || (getQueueDepth() < queueThreshold_);
+        }
+    };
+
+    private final BurstQueue.Condition notFull_ = new BurstQueue.Condition() {
+        public boolean isSatisfied ()
+        {
+            return !started_ || (queue_.size() < queue_.capacity());
+        }
+    };
+
+    private final BurstQueue.Condition notEmpty_ = new BurstQueue.Condition() {
+        public boolean isSatisfied ()
+        {
+            return !started_ || (getQueueDepth() > 0);
+        }
+    };
+
+    protected InPortImpl (final String name, BurstTraits<E,?> traits)
+    {
+        this(name, traits, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a port whose queue can hold at least <code>capacity</code>
+     * bursts. The queue never grows beyond its capacity, regardless of the
+     * queue threshold; senders block until there is room.
+     */
+    protected InPortImpl (final String name, BurstTraits<E,?> traits, int capacity)
+    {
+        this.name_ = name;
+        this.traits_ = traits;
+        this.statistics_ = new ReceiverStatistics(this.name_, this.traits_.byteSize() * 8);
+        this.queue_ = new BurstQueue<E>(capacity);
+    }
+
+    public String getName ()
+    {
+        return this.name_;
+    }
+
+
+    public void start ()
+    {
+        this.started_ = true;
+    }
+
+    public void stop ()
+    {
+        if (this.started_) {
+            this.started_ = false;
+            this.queue_.signalConsumers();
+            this.queue_.signalProducers();
+        }
+    }
+
+    boolean isStarted ()
+    {
+        return this.started_;
+    }
+
+    public int getQueueThreshold ()
+    {
+        return queueThreshold_;
+    }
+
+    public void setQueueThreshold (int count)
+    {
+        final int previous = queueThreshold_;
+        queueThreshold_ = count;
+        if (count > previous) {
+            queue_.signalProducers();
+        }
+    }
+
+    public BULKIO.PortUsageType state()
+    {
+        final int size = this.getQueueDepth();
+        if (size == 0) {
+            return BULKIO.PortUsageType.IDLE;
+        } else if (size < this.queueThreshold_) {
+            return BULKIO.PortUsageType.ACTIVE;
+        } else {
+            return BULKIO.PortUsageType.BUSY;
+        }
+    }
+
+    public BULKIO.PortStatistics statistics()
+    {
+        BULKIO.PortStatistics stats;
+        synchronized (this.statistics_) {
+            stats = this.statistics_.retrieve();
+        }
+        stats.streamIDs = this.streamIDs_.toArray(new String[0]);
+        return stats;
+    }
+
+    public void enableLatencyStats (boolean enable)
+    {
+        this.statistics_.getLatencyStatistics().setEnabled(enable);
+    }
+
+    public void enableSriInterning (boolean enable)
+    {
+        this.internSRI_ = enable;
+        if (!enable) {
+            this.sris_.clear();
+        }
+    }
+
+    public void addDataListener (DataListener listener)
+    {
+        this.dataListeners_.add(listener);
+    }
+
+    public void removeDataListener (DataListener listener)
+    {
+        this.dataListeners_.remove(listener);
+    }
+
+    public int getStatisticsWindowSize ()
+    {
+        synchronized (this.statistics_) {
+            return this.statistics_.getWindowSize();
+        }
+    }
+
+    public void setStatisticsWindowSize (int calls)
+    {
+        synchronized (this.statistics_) {
+            this.statistics_.setWindowSize(calls);
+        }
+    }
+
+    public void pushBursts(E[] bursts)
+    {
+        long start = System.nanoTime();
+
+        // Calculate queue depth based on state at invocation; this makes it
+        // easy to tell if a consumer is keeping up (average = 0, or at least
+        // doesn't grow) or blocking (average >= 100).
+        float queue_depth = this.getQueueDepth() / (float)queueThreshold_;
+
+        // Wait until the queue is below the blocking threshold, reporting
+        // that this call blocked (only once, to avoid multiple notifications)
+        if (!belowThreshold_.isSatisfied()) {
+            blockOccurred_.set(true);
+            if (!queue_.awaitProducer(belowThreshold_, -1)) {
+                return;
+            }
+        }
+
+        // Discard bursts if processing is not started
+        if (!started_) {
+            return;
+        }
+
+        // Count total elements; stream IDs are added before the bursts are
+        // queued so that a consumer's end-of-stream cannot be overtaken
+        int total_elements = 0;
+        final boolean intern = this.internSRI_;
+        for (E burst : bursts) {
+            total_elements += this.traits_.burstLength(burst);
+            final String stream_id = this.traits_.sri(burst).streamID;
+            this.streamIDs_.add(stream_id);
+            if (intern) {
+                this.internSRI(burst, stream_id);
+            }
+        }
+
+        // Add bursts to queue and notify waiters; if a single call carries
+        // more bursts than will fit, wait for consumers to make room. Pushes
+        // are serialized so that each call's bursts stay contiguous in the
+        // queue, as they were when the queue was a locked list.
+        final LatencyStatistics latency = this.statistics_.getLatencyStatistics();
+        synchronized (this.pushLock_) {
+            for (E burst : bursts) {
+                final long received = latency.received(this.traits_.sri(burst).streamID, this.traits_.time(burst));
+                while (!queue_.offer(burst, received)) {
+                    queue_.signalConsumers();
+                    if (!queue_.awaitProducer(notFull_, -1) || !started_) {
+                        return;
+                    }
+                }
+            }
+        }
+        queue_.signalConsumers();
+        for (DataListener listener : this.dataListeners_) {
+            listener.dataArrived();
+        }
+
+        // Record total time spent in pushBursts for latency measurement
+        double elapsed = (System.nanoTime() - start) * 1e-9;
+        synchronized (this.statistics_) {
+            this.statistics_.record(bursts.length, total_elements, queue_depth, elapsed);
+        }
+    }
+
+    private void internSRI (E burst, final String streamID)
+    {
+        final BURSTIO.BurstSRI sri = this.traits_.sri(burst);
+        final BURSTIO.BurstSRI current = this.sris_.get(streamID);
+        if (current != sri && Utils.compareSRI(current, sri)) {
+            this.traits_.setSri(burst, current);
+        } else {
+            this.sris_.put(streamID, sri);
+        }
+        if (this.traits_.eos(burst)) {
+            this.sris_.remove(streamID);
+        }
+    }
+
+    public boolean blockOccurred ()
+    {
+        return this.blockOccurred_.getAndSet(false);
+    }
+
+    public int getQueueDepth ()
+    {
+        return this.queue_.size() + this.pendingCount_;
+    }
+
+    public void flush ()
+    {
+        final List<E> dropped = new ArrayList<E>(this.queue_.size());
+        synchronized (this.pendingLock_) {
+            this.queue_.drainTo(dropped, null, Integer.MAX_VALUE);
+            for (ArrayDeque<Pending<E>> bursts : this.pending_.values()) {
+                for (Pending<E> pending : bursts) {
+                    dropped.add(pending.burst);
+                }
+            }
+            this.pending_.clear();
+            this.owners_.clear();
+            this.pendingCount_ = 0;
+        }
+        synchronized (this.statistics_) {
+            this.statistics_.flushOccurred(dropped.size());
+        }
+        this.queue_.signalProducers();
+    }
+
+    public E getBurst (float timeout)
+    {
+        if (!this.waitBurst(timeout)) {
+            return null;
+        }
+
+        if (this.pendingCount_ > 0) {
+            // Bursts that were set aside for per-stream consumers are older
+            // than anything still in the queue
+            synchronized (this.pendingLock_) {
+                final Pending<E> pending = this.takePending(null, null);
+                if (pending != null) {
+                    this.dequeued(pending.burst, pending.received);
+                    return pending.burst;
+                }
+            }
+        }
+
+        final long[] received = new long[1];
+        E burst = queue_.poll(received);
+        if (burst == null) {
+            // Another consumer took the burst
+            return null;
+        }
+        this.wakeProducers();
+        this.dequeued(burst, received[0]);
+        return burst;
+    }
+
+    /**
+     * Gets the next queued burst for a given stream.
+     * <p>
+     * Bursts from other streams that arrived earlier are set aside, in order,
+     * for later calls to <code>getBurst</code> or <code>getBursts</code>;
+     * they still count towards the queue depth.
+     *
+     * @param streamID stream identifier
+     * @param timeout  time to wait in milliseconds (see getBursts(float))
+     * @return         the next burst for the stream, or null if none arrived
+     *                 before the timeout
+     */
+    public E getBurst (final String streamID, float timeout)
+    {
+        final Pending<E> pending = this.waitPending(new StreamSelector() {
+            public boolean accept (String id)
+            {
+                return id.equals(streamID);
+            }
+        }, null, timeout);
+        if (pending == null) {
+            return null;
+        }
+        this.dequeued(pending.burst, pending.received);
+        return pending.burst;
+    }
+
+    /**
+     * Creates a pool of worker threads that consume bursts from this port,
+     * keeping each stream on one worker at a time. The pool must be started
+     * with <code>start</code>.
+     *
+     * @param workers   number of worker threads
+     * @param processor callback for each burst
+     */
+    public BurstWorkerPool<E> createWorkerPool (int workers, BurstWorkerPool.Processor<E> processor)
+    {
+        return new BurstWorkerPool<E>(this, this.traits_, workers, processor);
+    }
+
+    /**
+     * Selects which per-stream queues a consumer may take bursts from.
+     */
+    interface StreamSelector {
+        boolean accept (String streamID);
+    }
+
+    /**
+     * Gets the oldest burst from a stream owned by <code>owner</code>, or
+     * failing that from a stream that no consumer owns, which then becomes
+     * owned by <code>owner</code> until releaseStream() is called. Used by
+     * BurstWorkerPool to keep each stream on one worker at a time.
+     */
+    E getOwnedBurst (final Object owner, float timeout)
+    {
+        final Pending<E> pending = this.waitPending(null, owner, timeout);
+        if (pending == null) {
+            return null;
+        }
+        this.dequeued(pending.burst, pending.received);
+        return pending.burst;
+    }
+
+    /**
+     * Gives up ownership of a stream if it has no more queued bursts, so that
+     * any consumer may pick it up when more arrive.
+     */
+    void releaseStream (Object owner, String streamID)
+    {
+        synchronized (this.pendingLock_) {
+            if (this.owners_.get(streamID) == owner && !this.pending_.containsKey(streamID)) {
+                this.owners_.remove(streamID);
+            }
+        }
+    }
+
+    /**
+     * Gives up ownership of every stream owned by <code>owner</code>,
+     * including streams that still have queued bursts. Called when a consumer
+     * stops, so that its streams can be picked up by other consumers.
+     */
+    void releaseOwner (Object owner)
+    {
+        boolean released = false;
+        synchronized (this.pendingLock_) {
+            final Iterator<Object> iter = this.owners_.values().iterator();
+            while (iter.hasNext()) {
+                if (iter.next() == owner) {
+                    iter.remove();
+                    released = true;
+                }
+            }
+            if (released) {
+                // Wake consumers that skipped the released streams
+                this.pendingGeneration_++;
+            }
+        }
+        if (released) {
+            this.queue_.signalConsumers();
+        }
+    }
+
+    private Pending<E> waitPending (StreamSelector selector, Object owner, float timeout)
+    {
+        final long nanoseconds = timeoutNanos(timeout);
+        final long deadline = System.nanoTime() + nanoseconds;
+        while (true) {
+            final int generation;
+            synchronized (this.pendingLock_) {
+                generation = this.pendingGeneration_;
+                this.demultiplex();
+                final Pending<E> pending = this.takePending(selector, owner);
+                if (pending != null) {
+                    return pending;
+                }
+            }
+            if (!started_ || nanoseconds == 0) {
+                return null;
+            }
+            long remaining = -1;
+            if (nanoseconds > 0) {
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+            }
+            // Wake up on new bursts, or when another consumer has moved
+            // bursts into the per-stream queues
+            final BurstQueue.Condition changed = new BurstQueue.Condition() {
+                public boolean isSatisfied ()
+                {
+                    return !started_ || !queue_.isEmpty() || (pendingGeneration_ != generation);
+                }
+            };
+            if (!this.queue_.awaitConsumer(changed, remaining) && Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+        }
+    }
+
+    // Must hold pendingLock_
+    private void demultiplex ()
+    {
+        final List<E> bursts = new ArrayList<E>(this.queue_.size());
+        final long[] received = new long[Math.max(1, this.queue_.size())];
+        final int count = this.queue_.drainTo(bursts, received, received.length);
+        if (count == 0) {
+            return;
+        }
+        for (int index = 0; index < count; ++index) {
+            final E burst = bursts.get(index);
+            final String stream_id = this.traits_.sri(burst).streamID;
+            ArrayDeque<Pending<E>> queue = this.pending_.get(stream_id);
+            if (queue == null) {
+                queue = new ArrayDeque<Pending<E>>();
+                this.pending_.put(stream_id, queue);
+            }
+            queue.add(new Pending<E>(burst, received[index], this.pendingSequence_++));
+        }
+        this.pendingCount_ += count;
+        this.pendingGeneration_++;
+        this.queue_.signalConsumers();
+        this.wakeProducers();
+    }
+
+    // Must hold pendingLock_. Returns the oldest pending burst accepted by the
+    // selector, or if owner is given, from a stream it owns or can claim.
+    private Pending<E> takePending (StreamSelector selector, Object owner)
+    {
+        Map.Entry<String,ArrayDeque<Pending<E>>> oldest = null;
+        boolean oldestOwned = false;
+        for (Map.Entry<String,ArrayDeque<Pending<E>>> entry : this.pending_.entrySet()) {
+            if (selector != null && !selector.accept(entry.getKey())) {
+                continue;
+            }
+            boolean owned = false;
+            if (owner != null) {
+                final Object current = this.owners_.get(entry.getKey());
+                if (current == owner) {
+                    owned = true;
+                } else if (current != null) {
+                    continue;
+                }
+            }
+            // Prefer streams already owned, then the oldest burst
+            if (oldest == null || (owned && !oldestOwned) ||
+                (owned == oldestOwned && entry.getValue().peek().sequence < oldest.getValue().peek().sequence)) {
+                oldest = entry;
+                oldestOwned = owned;
+            }
+        }
+        if (oldest == null) {
+            return null;
+        }
+        final String stream_id = oldest.getKey();
+        final Pending<E> pending = oldest.getValue().poll();
+        if (oldest.getValue().isEmpty()) {
+            this.pending_.remove(stream_id);
+        }
+        if (owner != null) {
+            this.owners_.put(stream_id, owner);
+        }
+        this.pendingCount_--;
+        this.wakeProducers();
+        return pending;
+    }
+
+    public E[] getBursts (float timeout)
+    {
+        return this.getBursts(Integer.MAX_VALUE, timeout);
+    }
+
+    /**
+     * Gets up to <code>maxCount</code> queued bursts.
+     *
+     * @param maxCount maximum number of bursts to return
+     * @param timeout  time to wait in milliseconds (see getBursts(float))
+     * @return         an array containing the oldest queued bursts
+     * @throws IllegalArgumentException if maxCount is not positive
+     */
+    public E[] getBursts (int maxCount, float timeout)
+    {
+        if (maxCount < 1) {
+            throw new IllegalArgumentException("maxCount must be positive");
+        }
+        this.waitBurst(timeout);
+        if (this.pendingCount_ > 0) {
+            return this.getPendingBursts(maxCount);
+        }
+        final int count = Math.min(maxCount, this.queue_.size());
+        final List<E> bursts = new ArrayList<E>(count);
+        final long[] received = new long[count];
+        this.queue_.drainTo(bursts, received, count);
+        if (!bursts.isEmpty()) {
+            this.wakeProducers();
+        }
+        for (int index = 0; index < bursts.size(); ++index) {
+            this.dequeued(bursts.get(index), received[index]);
+        }
+        return this.traits_.toArray(bursts);
+    }
+
+    private E[] getPendingBursts (int maxCount)
+    {
+        final List<Pending<E>> oldest = new ArrayList<Pending<E>>();
+        synchronized (this.pendingLock_) {
+            this.demultiplex();
+            for (ArrayDeque<Pending<E>> queue : this.pending_.values()) {
+                oldest.addAll(queue);
+            }
+            Collections.sort(oldest, SEQUENCE_ORDER);
+            if (oldest.size() > maxCount) {
+                oldest.subList(maxCount, oldest.size()).clear();
+            }
+            // Remove the selected bursts, which are at the front of their
+            // stream's queue
+            for (Pending<E> pending : oldest) {
+                final String stream_id = this.traits_.sri(pending.burst).streamID;
+                final ArrayDeque<Pending<E>> queue = this.pending_.get(stream_id);
+                queue.poll();
+                if (queue.isEmpty()) {
+                    this.pending_.remove(stream_id);
+                }
+            }
+            this.pendingCount_ -= oldest.size();
+        }
+        this.wakeProducers();
+        final List<E> bursts = new ArrayList<E>(oldest.size());
+        for (Pending<E> pending : oldest) {
+            this.dequeued(pending.burst, pending.received);
+            bursts.add(pending.burst);
+        }
+        return this.traits_.toArray(bursts);
+    }
+
+    protected boolean waitBurst (float timeout)
+    {
+        final long nanoseconds = timeoutNanos(timeout);
+        if (started_ && nanoseconds != 0) {
+            this.queue_.awaitConsumer(notEmpty_, nanoseconds);
+        }
+        return (this.getQueueDepth() > 0);
+    }
+
+    // Converts a timeout in milliseconds, as the port has always taken it,
+    // to nanoseconds: 0 does not wait, and a negative value waits
+    // indefinitely (-1). Positive timeouts wait at least one millisecond,
+    // rather than rounding down to an indefinite wait.
+    private static long timeoutNanos (float timeout)
+    {
+        if (timeout == 0.0f) {
+            return 0;
+        } else if (timeout < 0.0f) {
+            return -1;
+        }
+        return Math.max(1, Math.round(timeout)) * 1000000L;
+    }
+
+    private void wakeProducers ()
+    {
+        // Producers only need to be woken once the queue has drained below
+        // the point at which they would block
+        if (getQueueDepth() < Math.min(queueThreshold_, queue_.capacity())) {
+            queue_.signalProducers();
+        }
+    }
+
+    private void dequeued (E burst, long receiveTime)
+    {
+        final String stream_id = this.traits_.sri(burst).streamID;
+        final LatencyStatistics latency = this.statistics_.getLatencyStatistics();
+        latency.dequeued(stream_id, receiveTime);
+        if (this.traits_.eos(burst)) {
+            latency.endOfStream(stream_id);
+            this.streamIDs_.remove(stream_id);
+        }
+    }
+
+}
@@ -0,0 +1,1289 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.lang.reflect.Array;
+import org.omg.CORBA.MARSHAL;
+
+import org.apache.log4j.Logger;
+
+import org.ossie.properties.IProperty;
+import org.ossie.properties.StructDef;
+
+import burstio.stats.SenderStatistics;
+import burstio.traits.BurstTraits;
+
+import org.ossie.component.PortBase;
+import org.ossie.component.SharedThreads;
+
+abstract class OutPort<E,B,A> extends BULKIO.UsesPortStatisticsProviderPOA implements PortBase, BurstSink<A> {
+    public static final int DEFAULT_MAX_BURSTS = 100;
+    public static final int DEFAULT_LATENCY_THRESHOLD = 10000; // 10000 us = 10ms
+    public static final int DEFAULT_SEND_QUEUE_DEPTH = 16;
+    public static final int DEFAULT_MAX_TRANSFER_SIZE = (int)(0.9 * 2*1024*1024);
+
+    // Group of bursts sent in a single pushBursts call
+    static class Batch<B>
+    {
+        public Batch(final B[] bursts, int elements, long startTime, float queueDepth, Priority priority, String streamID)
+        {
+            this.bursts = bursts;
+            this.elements = elements;
+            this.startTime = startTime;
+            this.queueDepth = queueDepth;
+            this.priority = priority;
+            this.streamID = streamID;
+        }
+
+        public final B[] bursts;
+        public final int elements;
+        public final long startTime;
+        public final float queueDepth;
+        public final Priority priority;
+        // Stream (or queue, when streams are interleaved) the bursts came from
+        public final String streamID;
+
+        // If the bursts came from a pool, the pool to return them to once
+        // all of the connections are done with them
+        private BurstPool<B> pool_ = null;
+        private final AtomicInteger users_ = new AtomicInteger(0);
+
+        public void setPool (final BurstPool<B> pool, int users)
+        {
+            this.pool_ = pool;
+            this.users_.set(users);
+        }
+
+        /**
+         * Called by each connection when it no longer needs the bursts.
+         *
+         * @return the pool to return the bursts to, if this was the last
+         *         user, otherwise null
+         */
+        public BurstPool<B> release ()
+        {
+            if (this.pool_ != null && this.users_.decrementAndGet() == 0) {
+                return this.pool_;
+            }
+            return null;
+        }
+    }
+
+    // Basic port information, plus a bounded queue of batches and a thread to
+    // deliver them, so that a slow or failing peer does not hold up the other
+    // connections until its queue fills. Waiting batches are sent highest
+    // priority first, and in order within a priority.
+    class Connection implements Runnable
+    {
+        public Connection(final E port, final String connectionId, final int bitsPerElement, int queueDepth)
+        {
+            this.port = port;
+            this.connectionId = connectionId;
+            this.alive = true;
+            this.stats = new SenderStatistics(OutPort.this.name_, bitsPerElement);
+            this.capacity_ = queueDepth;
+            for (int index = 0; index < PRIORITIES.length; ++index) {
+                this.batches_.add(new ArrayDeque<Batch<B>>());
+            }
+            this.local = isLocal(port);
+        }
+
+        public final E port;
+        public final String connectionId;
+        public volatile boolean alive;
+        public final SenderStatistics stats;
+        // Collocated peers receive the burst objects themselves rather than
+        // a copy, so those bursts must never be reused
+        public final boolean local;
+
+        public void start ()
+        {
+            if (SharedThreads.isEnabled()) {
+                // Batches are delivered by tasks on the shared carrier pool,
+                // which only hold a thread while there is work queued
+                this.shared_ = true;
+                return;
+            }
+            this.thread_ = new Thread(this, OutPort.this.name_ + "-" + this.connectionId);
+            this.thread_.setDaemon(true);
+            this.thread_.start();
+        }
+
+        public void stop ()
+        {
+            synchronized (this) {
+                this.running_ = false;
+                this.notifyAll();
+            }
+            if (this.thread_ != null) {
+                this.thread_.interrupt();
+            }
+        }
+
+        public void send (final Batch<B> batch)
+        {
+            Batch<B> evicted = null;
+            boolean queued = false;
+            int backlog;
+            synchronized (this) {
+                // By default, wait for room, so that a slow peer slows down
+                // the sender as a synchronous call would. Dropping must be
+                // asked for, and then only ever sheds LOW priority batches:
+                // a new LOW batch is dropped, and a NORMAL or HIGH one takes
+                // the place of a waiting LOW batch, or else waits for room.
+                while (this.running_ && this.queued_ >= this.capacity_) {
+                    if (OutPort.this.overflowPolicy_ == OverflowPolicy.DROP_LOW_PRIORITY) {
+                        if (batch.priority == Priority.LOW) {
+                            break;
+                        }
+                        evicted = this.evictLow();
+                        if (evicted != null) {
+                            break;
+                        }
+                    }
+                    try {
+                        this.wait();
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (this.running_ && this.queued_ < this.capacity_) {
+                    this.promote(batch);
+                    this.batches_.get(batch.priority.ordinal()).addLast(batch);
+                    this.queued_++;
+                    this.pending_++;
+                    queued = true;
+                } else if (this.running_ && !this.overflowReported_) {
+                    OutPort.this.logger_.warn("Send queue for " + this.connectionId + " is full, dropping bursts");
+                    this.overflowReported_ = true;
+                }
+                this.notifyAll();
+                backlog = this.queued_;
+                if (queued && this.shared_ && !this.draining_) {
+                    this.draining_ = true;
+                    SharedThreads.getCarrierPool().execute(this.drain_);
+                }
+            }
+            synchronized (this.stats) {
+                if (evicted != null) {
+                    this.stats.dropped(evicted.bursts.length, evicted.priority);
+                }
+                if (!queued) {
+                    this.stats.dropped(batch.bursts.length, batch.priority);
+                }
+                this.stats.setBacklog(backlog);
+            }
+            if (evicted != null) {
+                OutPort.this.releaseBatch(evicted);
+            }
+            if (!queued) {
+                OutPort.this.releaseBatch(batch);
+            }
+        }
+
+        /**
+         * Waits until all queued batches have been delivered.
+         */
+        public synchronized void waitIdle () throws InterruptedException
+        {
+            while (this.running_ && this.pending_ > 0) {
+                this.wait();
+            }
+        }
+
+        public synchronized int getBacklog ()
+        {
+            return this.queued_;
+        }
+
+        public void run ()
+        {
+            while (true) {
+                final Batch<B> batch = this.take();
+                if (batch == null) {
+                    break;
+                }
+                this.sendBatch(batch);
+            }
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+
+        private void sendBatch (final Batch<B> batch)
+        {
+            // The remote call is made without holding any locks
+            OutPort.this.deliver(this, batch);
+            OutPort.this.releaseBatch(batch);
+            synchronized (this) {
+                this.pending_--;
+                if (this.queued_ == 0) {
+                    this.overflowReported_ = false;
+                }
+                this.notifyAll();
+            }
+        }
+
+        // With shared threads, delivers batches until the queue is empty and
+        // then gives the carrier thread back
+        private final Runnable drain_ = new Runnable() {
+            public void run ()
+            {
+                Batch<B> batch;
+                while ((batch = Connection.this.poll()) != null) {
+                    Connection.this.sendBatch(batch);
+                }
+            }
+        };
+
+        // Removes the highest-priority waiting batch without waiting; if there
+        // is none, or the connection is stopped, ends the current drain
+        private synchronized Batch<B> poll ()
+        {
+            if (this.running_) {
+                final Batch<B> batch = this.dequeue();
+                if (batch != null) {
+                    return batch;
+                }
+            }
+            this.draining_ = false;
+            this.notifyAll();
+            return null;
+        }
+
+        // Removes the highest-priority waiting batch, waiting if necessary;
+        // returns null once the connection is stopped
+        private synchronized Batch<B> take ()
+        {
+            while (this.running_) {
+                final Batch<B> batch = this.dequeue();
+                if (batch != null) {
+                    return batch;
+                }
+                try {
+                    this.wait();
+                } catch (final InterruptedException ex) {
+                    break;
+                }
+            }
+            return null;
+        }
+
+        // Must hold this connection's lock; wakes senders waiting for room
+        private Batch<B> dequeue ()
+        {
+            for (int index = PRIORITIES.length - 1; index >= 0; --index) {
+                final Batch<B> batch = this.batches_.get(index).pollFirst();
+                if (batch != null) {
+                    this.queued_--;
+                    this.notifyAll();
+                    return batch;
+                }
+            }
+            return null;
+        }
+
+        // Removes the most recently queued LOW priority batch, if any
+        private Batch<B> evictLow ()
+        {
+            final Batch<B> batch = this.batches_.get(Priority.LOW.ordinal()).pollLast();
+            if (batch != null) {
+                this.queued_--;
+                this.pending_--;
+            }
+            return batch;
+        }
+
+        // If the stream's priority has been raised, moves its batches that
+        // are still waiting at a lower priority up with it, in order, so that
+        // the new batch cannot overtake them. Lowering the priority needs
+        // nothing, as the earlier batches are already sent first.
+        private void promote (final Batch<B> batch)
+        {
+            final ArrayDeque<Batch<B>> target = this.batches_.get(batch.priority.ordinal());
+            for (int index = 0; index < batch.priority.ordinal(); ++index) {
+                final Iterator<Batch<B>> iter = this.batches_.get(index).iterator();
+                while (iter.hasNext()) {
+                    final Batch<B> waiting = iter.next();
+                    if (waiting.streamID.equals(batch.streamID)) {
+                        iter.remove();
+                        target.addLast(waiting);
+                    }
+                }
+            }
+        }
+
+        private final List<ArrayDeque<Batch<B>>> batches_ = new ArrayList<ArrayDeque<Batch<B>>>(PRIORITIES.length);
+        private final int capacity_;
+        private int queued_ = 0;
+        private Thread thread_ = null;
+        private boolean shared_ = false;
+        private boolean draining_ = false;
+        private boolean running_ = true;
+        private int pending_ = 0;
+        private boolean overflowReported_ = false;
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    protected final String name_;
+    protected final Map<String,Connection> connections_ = new HashMap<String,Connection>();
+    protected final List<ConnectionListener> connectionListeners_ = new ArrayList<ConnectionListener>();
+
+    protected Logger logger_;
+
+    private BurstTraits<B,A> traits_;
+
+    private class Queue implements OutputPolicy, FlushScheduler.Task {
+        protected Queue (final String streamID, final int maxBursts, final int thresholdBytes, final int thresholdLatency, final Priority priority)
+        {
+            this.streamID_ = streamID;
+            this.maxBursts_ = maxBursts;
+            this.thresholdBytes_ = thresholdBytes;
+            this.priority_ = priority;
+            this.setLatencyThreshold(thresholdLatency);
+        }
+
+        public synchronized int getMaxBursts ()
+        {
+            return this.maxBursts_;
+        }
+
+        public synchronized void setMaxBursts (int bursts)
+        {
+            this.maxBursts_ = bursts;
+            if (this.queue_.size() >= this.maxBursts_) {
+                OutPort.this.logger_.debug("New max bursts " + this.maxBursts_ + " triggering push");
+                this.scheduleFlush(System.nanoTime());
+            }
+        }
+
+        public synchronized int getLatencyThreshold ()
+        {
+            return (int)TimeUnit.MICROSECONDS.convert(this.thresholdLatency_, TimeUnit.NANOSECONDS);
+        }
+
+        public synchronized void setLatencyThreshold (int usec)
+        {
+            this.thresholdLatency_ = TimeUnit.NANOSECONDS.convert(usec, TimeUnit.MICROSECONDS);
+            if (!this.queue_.isEmpty()) {
+                this.scheduleFlush(this.startTime_ + this.thresholdLatency_);
+            }
+        }
+
+        public synchronized int getByteThreshold ()
+        {
+            return this.thresholdBytes_;
+        }
+
+        public synchronized void setByteThreshold (int bytes)
+        {
+            this.thresholdBytes_ = bytes;
+            if (this.queuedBytes_ >= this.thresholdBytes_) {
+                OutPort.this.logger_.debug("New byte threshold " + this.thresholdBytes_ + " triggering push");
+                this.scheduleFlush(System.nanoTime());
+            }
+        }
+
+        public synchronized Priority getPriority ()
+        {
+            return this.priority_;
+        }
+
+        public synchronized void setPriority (Priority priority)
+        {
+            this.priority_ = priority;
+            if (this.priority_ == Priority.HIGH && !this.queue_.isEmpty()) {
+                OutPort.this.logger_.debug("High priority triggering push");
+                this.scheduleFlush(System.nanoTime());
+            }
+        }
+
+        public synchronized void flush ()
+        {
+            flushQueue();
+        }
+
+        protected synchronized void queueBurst (B burst)
+        {
+            // If this is the first burst, make the time for latency guarantees
+            if (this.queue_.isEmpty()) {
+                this.startTime_ = System.nanoTime();
+                // Arm the timer; if it is still armed from an earlier batch,
+                // it will be re-armed for this one when it expires
+                OutPort.this.logger_.trace("Arming flush timer on first queued burst");
+                this.scheduleFlush(this.startTime_ + this.thresholdLatency_);
+            }
+
+            this.queue_.add(burst);
+            this.queuedBytes_ += OutPort.this.traits_.burstLength(burst) * OutPort.this.bytesPerElement_;
+            OutPort.this.logger_.trace("Queue size: " + this.queue_.size() + " bursts / " + this.queuedBytes_ + " bytes");
+
+            if (this.shouldFlush()) {
+                OutPort.this.logger_.debug("Queued burst exceeded threshold, flushing queue");
+                this.flushQueue();
+            }
+        }
+
+        protected boolean shouldFlush ()
+        {
+            if (this.priority_ == Priority.HIGH) {
+                return true;
+            } else if (this.queue_.size() >= this.maxBursts_) {
+                return true;
+            } else if (this.queuedBytes_ >= this.thresholdBytes_) {
+                return true;
+            } else if (this.elapsed() >= this.thresholdLatency_) {
+                return true;
+            }
+            return false;
+        }
+
+        protected void flushQueue()
+        {
+            if (!this.queue_.isEmpty()) {
+                float queue_depth = this.queue_.size() / (float)this.maxBursts_;
+                OutPort.this.sendQueuedBursts(this.queue_, this.startTime_, queue_depth, this.streamID_, this.priority_);
+                this.queue_.clear();
+                this.queuedBytes_ = 0;
+                this.startTime_ = -1;
+            }
+        }
+
+        public synchronized long expire ()
+        {
+            if (this.shouldFlush()) {
+                this.flushQueue();
+            }
+            if (this.queue_.isEmpty()) {
+                return FlushScheduler.NO_DEADLINE;
+            }
+            return this.startTime_ + this.thresholdLatency_;
+        }
+
+        private void scheduleFlush (long deadline)
+        {
+            OutPort.this.scheduler_.schedule(this.timer_, deadline);
+        }
+
+        private long elapsed ()
+        {
+            // startTime_ is only set while bursts are queued; any value,
+            // including a negative one, can be a valid System.nanoTime()
+            if (this.queue_.isEmpty()) {
+                return -1;
+            } else {
+                return System.nanoTime() - this.startTime_;
+            }
+        }
+
+        private String streamID_;
+
+        private int maxBursts_;
+        private long thresholdLatency_;
+        private int thresholdBytes_;
+        private Priority priority_;
+
+        private ArrayList<B> queue_ = new ArrayList<B>();
+        private long startTime_ = -1;
+        private int queuedBytes_ = 0;
+
+        private final FlushScheduler.Timer timer_ = new FlushScheduler.Timer(this);
+    }
+
+    private Queue defaultQueue_ = new Queue("(default)", DEFAULT_MAX_BURSTS, DEFAULT_MAX_TRANSFER_SIZE, DEFAULT_LATENCY_THRESHOLD, Priority.NORMAL);
+    private Map<String,Queue> streamQueues_ = new HashMap<String,Queue>();
+
+    private int bytesPerElement_;
+
+    private final FlushScheduler scheduler_;
+    private boolean running_ = false;
+
+    private volatile int sendQueueDepth_ = DEFAULT_SEND_QUEUE_DEPTH;
+    private volatile OverflowPolicy overflowPolicy_ = OverflowPolicy.BLOCK;
+    private volatile int maxTransferSize_ = DEFAULT_MAX_TRANSFER_SIZE;
+    private volatile BurstPool<B> burstPool_ = null;
+    private volatile int statisticsWindowSize_ = SenderStatistics.DEFAULT_WINDOW_SIZE;
+    private final Set<String> oversizeStreams_ = new HashSet<String>();
+
+    private Map<String,Set<String>> routes_ = new HashMap<String,Set<String>>();
+    private RoutingMode routingMode_ = RoutingMode.ROUTE_ALL_INTERLEAVED;
+
+    public OutPort(final String name, BurstTraits<B,A> traits)
+    {
+        this.logger_ = Logger.getLogger(this.getClass().getName());
+        this.name_ = name;
+        this.traits_ = traits;
+        this.bytesPerElement_ = this.traits_.byteSize();
+        if (SharedThreads.isEnabled()) {
+            this.scheduler_ = FlushScheduler.shared();
+        } else {
+            this.scheduler_ = new FlushScheduler(name);
+        }
+    }
+
+    public void addConnectionListener (final ConnectionListener listener)
+    {
+        synchronized (this.connectionListeners_) {
+            this.connectionListeners_.add(listener);
+        }
+    }
+
+    public void removeConnectionListener (final ConnectionListener listener)
+    {
+        synchronized (this.connectionListeners_) {
+            this.connectionListeners_.remove(listener);
+        }
+    }
+
+    public void connectPort(final org.omg.CORBA.Object connection, final String connectionId) throws CF.PortPackage.InvalidPort, CF.PortPackage.OccupiedPort {
+        // Give a specific exception message for nil
+        if (connection == null) {
+            throw new CF.PortPackage.InvalidPort((short)1, "Nil object reference");
+        }
+
+        // Attempt to narrow the reference to the correct type (which must be
+        // implemented by a subclass); note this does not require the lock
+        E port = null;
+        try {
+            port = narrow(connection);
+        } catch (final org.omg.CORBA.BAD_PARAM ex) {
+            // In this context, a CORBA.BAD_PARAM exception indicates that the
+            // object is of the wrong type
+            throw new CF.PortPackage.InvalidPort((short)1, "Object is not a " + repoId());
+        } catch (final org.omg.CORBA.SystemException ex) {
+            // If the object is not obviously the desired type, narrow will
+            // invoke _is_a, which may throw a CORBA exception if a remote
+            // object is unreachable (e.g., dead)
+            throw new CF.PortPackage.InvalidPort((short)1, "Object unreachable");
+        }
+
+        final Connection entry = new Connection(port, connectionId, this.bytesPerElement_*8, this.sendQueueDepth_);
+        entry.stats.setWindowSize(this.statisticsWindowSize_);
+        final Connection previous;
+        synchronized (this.connections_) {
+            previous = this.connections_.put(connectionId, entry);
+        }
+        if (previous != null) {
+            previous.stop();
+        }
+        entry.start();
+
+        synchronized (this.connectionListeners_) {
+            for (ConnectionListener listener : this.connectionListeners_) {
+                listener.portConnected(connectionId);
+            }
+        }
+    }
+
+    public void disconnectPort(final String connectionId) throws CF.PortPackage.InvalidPort {
+        final Connection connection;
+        synchronized (this.connections_) {
+            // Check that remove returns a value to ensure the connection ID
+            // was valid (the connection table should never contain nulls)
+            connection = this.connections_.remove(connectionId);
+            if (null == connection) {
+                throw new CF.PortPackage.InvalidPort((short)2, "No connection " + connectionId);
+            }
+        }
+        // Any bursts still waiting to be sent are discarded
+        connection.stop();
+
+        synchronized (this.connectionListeners_) {
+            for (ConnectionListener listener : this.connectionListeners_) {
+                listener.portDisconnected(connectionId);
+            }
+        }
+    }
+
+    protected abstract E narrow(org.omg.CORBA.Object connection);
+    protected abstract String repoId();
+
+    public ExtendedCF.UsesConnection[] connections() {
+        synchronized (this.connections_) {
+            final ExtendedCF.UsesConnection[] results = new ExtendedCF.UsesConnection[this.connections_.size()];
+            int index = 0;
+            for (Map.Entry<String,Connection> entry : this.connections_.entrySet()) {
+                Connection connection = entry.getValue();
+                org.omg.CORBA.Object my_obj = (org.omg.CORBA.Object)connection.port;
+                if (my_obj instanceof omnijni.ObjectImpl) {
+                    String ior = omnijni.ORB.object_to_string(my_obj);
+                    my_obj = this._orb().string_to_object(ior);
+                }
+                results[index++] = new ExtendedCF.UsesConnection(entry.getKey(), my_obj);
+            }
+            return results;
+        }
+    }
+
+    public void updateConnectionFilter(final Collection<? extends StructDef> filterTable)
+    {
+        Map<String,Set<String>> new_routes = new HashMap<String,Set<String>>();
+        for (StructDef filter : filterTable) {
+            String port_name = null;
+            String stream_id = null;
+            String connection_id = null;
+            for (IProperty property : filter.getElements()) {
+                org.omg.CORBA.Any value = property.toAny();
+                if (property.getName().equals("port_name")) {
+                    port_name = value.extract_string();
+                } else if (property.getName().equals("stream_id")) {
+                    stream_id = value.extract_string();
+                } else if (property.getName().equals("connection_id")) {
+                    connection_id = value.extract_string();
+                }
+            }
+            if ((port_name == null) || (stream_id == null) || (connection_id == null)) {
+                throw new IllegalArgumentException("Invalid struct for connection filter");
+            }
+            if (this.name_.equals(port_name.toString())) {
+                if (!new_routes.containsKey(stream_id)) {
+                    new_routes.put(stream_id, new HashSet<String>());
+                }
+                new_routes.get(stream_id).add(connection_id);
+            }
+        }
+
+        synchronized (this.connections_) {
+            this.routes_ = new_routes;
+        }
+    }
+
+    public void addConnectionFilter(final String streamID, final String connectionID)
+    {
+
+        synchronized (this.connections_) {
+            if (!this.routes_.containsKey(streamID)) {
+                this.routes_.put(streamID, new HashSet<String>());
+            }
+            this.routes_.get(streamID).add(connectionID);
+        }
+    }
+
+    public void removeConnectionFilter(final String streamID, final String connectionID)
+    {
+        synchronized (this.connections_) {
+            if (this.routes_.containsKey(streamID)) {
+                this.routes_.get(streamID).remove(connectionID);
+            }
+        }
+    }
+
+    public BULKIO.UsesPortStatistics[] statistics()
+    {
+        synchronized (this.connections_) {
+            List<BULKIO.UsesPortStatistics> results = new ArrayList<BULKIO.UsesPortStatistics>();
+            for (Map.Entry<String,Connection> entry : this.connections_.entrySet()) {
+                final String connectionId = entry.getKey();
+                final Connection connection = entry.getValue();
+                final BULKIO.PortStatistics stats;
+                synchronized (connection.stats) {
+                    stats = connection.stats.retrieve();
+                }
+
+                // Report all streams being routed to this connection
+                final List<String> streams = new ArrayList<String>();
+                for (String stream_id : this.streamQueues_.keySet()) {
+                    if (isStreamRoutedToConnection(stream_id, connectionId)) {
+                        streams.add(stream_id);
+                    }
+                }
+                stats.streamIDs = streams.toArray(new String[streams.size()]);
+
+                results.add(new BULKIO.UsesPortStatistics(connectionId, stats));
+            }
+            return results.toArray(new BULKIO.UsesPortStatistics[results.size()]);
+        }
+    }
+
+    public String getName () {
+        return this.name_;
+    }
+
+    public int getMaxBursts ()
+    {
+        return this.getDefaultPolicy().getMaxBursts();
+    }
+
+    public void setMaxBursts (int bursts)
+    {
+        this.getDefaultPolicy().setMaxBursts(bursts);
+    }
+
+    public int getLatencyThreshold ()
+    {
+        return this.getDefaultPolicy().getLatencyThreshold();
+    }
+
+    public void setLatencyThreshold (int usec)
+    {
+        this.getDefaultPolicy().setLatencyThreshold(usec);
+    }
+
+    public int getByteThreshold ()
+    {
+        return this.getDefaultPolicy().getByteThreshold();
+    }
+
+    public void setByteThreshold (int bytes)
+    {
+        this.getDefaultPolicy().setByteThreshold(bytes);
+    }
+
+    /**
+     * Gets the number of batches of queued bursts that may be waiting to be
+     * sent to each connection.
+     */
+    public int getSendQueueDepth ()
+    {
+        return this.sendQueueDepth_;
+    }
+
+    /**
+     * Sets the number of batches of queued bursts that may be waiting to be
+     * sent to each connection. What happens when a connection's queue is
+     * full depends on the overflow policy. Only affects connections made
+     * after this call.
+     */
+    public void setSendQueueDepth (int batches)
+    {
+        if (batches < 1) {
+            throw new IllegalArgumentException("send queue depth must be positive");
+        }
+        this.sendQueueDepth_ = batches;
+    }
+
+    public OverflowPolicy getOverflowPolicy ()
+    {
+        return this.overflowPolicy_;
+    }
+
+    /**
+     * Sets what happens to queued bursts when a connection's send queue is
+     * full. By default (BLOCK), the thread flushing the queue waits for
+     * room; with DROP_LOW_PRIORITY, LOW priority bursts are dropped instead,
+     * and counted in the port statistics, while NORMAL and HIGH priority
+     * bursts still wait. Takes effect immediately for all connections.
+     */
+    public void setOverflowPolicy (OverflowPolicy policy)
+    {
+        if (policy == null) {
+            throw new IllegalArgumentException("overflow policy must not be null");
+        }
+        this.overflowPolicy_ = policy;
+    }
+
+    /**
+     * Gets the maximum estimated size, in bytes, of a single pushBursts call.
+     */
+    public int getMaxTransferSize ()
+    {
+        return this.maxTransferSize_;
+    }
+
+    /**
+     * Sets the maximum estimated size, in bytes, of a single pushBursts call.
+     * This should be somewhat less than the ORB's maximum GIOP message size.
+     * Larger groups of bursts are split across several calls; a single burst
+     * larger than this is dropped.
+     */
+    public void setMaxTransferSize (int bytes)
+    {
+        this.maxTransferSize_ = bytes;
+        synchronized (this.oversizeStreams_) {
+            this.oversizeStreams_.clear();
+        }
+    }
+
+    /**
+     * Gets the number of pushBursts calls per connection over which
+     * statistics are computed.
+     */
+    public int getStatisticsWindowSize ()
+    {
+        return this.statisticsWindowSize_;
+    }
+
+    /**
+     * Sets the number of pushBursts calls per connection over which
+     * statistics are computed, including the latency, queue depth and bursts
+     * per push percentiles.
+     */
+    public void setStatisticsWindowSize (int calls)
+    {
+        if (calls < 1) {
+            throw new IllegalArgumentException("window size must be positive");
+        }
+        this.statisticsWindowSize_ = calls;
+        synchronized (this.connections_) {
+            for (Connection connection : this.connections_.values()) {
+                synchronized (connection.stats) {
+                    connection.stats.setWindowSize(calls);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the maximum number of sent bursts kept for reuse by
+     * <code>pushBurst</code>, or 0 if burst pooling is disabled.
+     */
+    public int getBurstPoolSize ()
+    {
+        final BurstPool<B> pool = this.burstPool_;
+        return (pool == null) ? 0 : pool.capacity();
+    }
+
+    /**
+     * Sets the maximum number of sent bursts kept for reuse by
+     * <code>pushBurst</code>. Burst objects are returned to the pool once
+     * every connection has sent them, and are never reused while any
+     * connection is to a collocated port. Bursts passed to
+     * <code>pushBursts</code> are never pooled. Pooling is disabled by
+     * default; a size of 0 disables it.
+     */
+    public void setBurstPoolSize (int bursts)
+    {
+        if (bursts < 0) {
+            throw new IllegalArgumentException("burst pool size must not be negative");
+        }
+        this.burstPool_ = (bursts == 0) ? null : new BurstPool<B>(bursts);
+    }
+
+    public void setRoutingMode (final RoutingMode mode)
+    {
+        this.routingMode_ = mode;
+    }
+
+    public OutputPolicy getDefaultPolicy ()
+    {
+        return this.defaultQueue_;
+    }
+
+    public OutputPolicy getStreamPolicy (final String streamID)
+    {
+        return this.getQueueForStream(streamID);
+    }
+
+    public void setLogger (Logger logger)
+    {
+        this.logger_ = logger;
+    }
+
+    public synchronized void start ()
+    {
+        if (this.running_) {
+            return;
+        }
+
+        this.running_ = true;
+    }
+
+    public void stop ()
+    {
+        synchronized (this) {
+            if (!this.running_) {
+                return;
+            }
+
+            this.running_ = false;
+        }
+        this.flush();
+    }
+
+    public BULKIO.PortUsageType state ()
+    {
+        synchronized (this.connections_) {
+            if (this.connections_.isEmpty()) {
+                return BULKIO.PortUsageType.IDLE;
+            } else {
+                return BULKIO.PortUsageType.ACTIVE;
+            }
+        }
+    }
+
+    /**
+     * Sends all queued bursts, and waits until they have been delivered to
+     * every connection.
+     */
+    public void flush ()
+    {
+        synchronized (this.streamQueues_) {
+            if (isInterleaved()) {
+                this.defaultQueue_.flush();
+            } else {
+                for (Queue queue : this.streamQueues_.values()) {
+                    queue.flush();
+                }
+            }
+        }
+
+        final List<Connection> connections;
+        synchronized (this.connections_) {
+            connections = new ArrayList<Connection>(this.connections_.values());
+        }
+        try {
+            for (Connection connection : connections) {
+                connection.waitIdle();
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void pushBurst(A data, BURSTIO.BurstSRI sri)
+    {
+        this.pushBurst(data, sri, burstio.Utils.now(), false);
+    }
+
+    public void pushBurst(A data, BURSTIO.BurstSRI sri, BULKIO.PrecisionUTCTime timestamp)
+    {
+        this.pushBurst(data, sri, timestamp, false);
+    }
+
+    public void pushBurst(A data, BURSTIO.BurstSRI sri, boolean eos)
+    {
+        this.pushBurst(data, sri, burstio.Utils.now(), eos);
+    }
+
+    public void pushBurst(A data, BURSTIO.BurstSRI sri, BULKIO.PrecisionUTCTime timestamp, boolean eos)
+    {
+        B burst = this.allocateBurst(data, sri, timestamp, eos);
+        synchronized (this.streamQueues_) {
+            Queue queue = this.getQueueForStream(sri.streamID);
+            queue.queueBurst(burst);
+            if (eos) {
+                if (!isInterleaved()) {
+                    this.logger_.debug("Flushing " + sri.streamID + " on EOS");
+                    queue.flush();
+                }
+                this.streamQueues_.remove(sri.streamID);
+            }
+        }
+    }
+
+    public void pushBursts(B[] bursts)
+    {
+        this.sendBursts(bursts, System.nanoTime(), 0.0f, null);
+    }
+
+    public void pushBursts (Collection<B> bursts)
+    {
+        this.pushBursts(this.traits_.toArray(bursts));
+    }
+
+	public String getRepid ()
+	{
+		return "IDL:CORBA/Object:1.0";
+	}
+
+	public String getDirection ()
+	{
+		return "Uses";
+	}
+
+    /**
+     * Sends bursts to every connection on the calling thread, returning once
+     * each connection has received them (or failed). Used by the explicit
+     * pushBursts calls, so that bursts are visible to the receiver as soon as
+     * the call returns.
+     */
+    protected void sendBursts(B[] bursts, long startTime, float queueDepth, final String streamID)
+    {
+        final List<Connection> targets = this.getTargets(streamID);
+        for (Batch<B> batch : this.packBursts(bursts, startTime, queueDepth, Priority.NORMAL, streamID, targets)) {
+            for (Connection connection : targets) {
+                this.deliver(connection, batch);
+            }
+        }
+    }
+
+    // Bursts queued by pushBurst are handed off to each connection's sender,
+    // so that flushing never waits on a remote call
+    private void sendQueuedBursts (List<B> bursts, long startTime, float queueDepth, final String streamID, Priority priority)
+    {
+        final List<Connection> targets = this.getTargets(streamID);
+
+        // Queued bursts were created by pushBurst, so they may be reused once
+        // they have been sent, unless a collocated peer has kept them
+        BurstPool<B> pool = this.burstPool_;
+        if (pool != null) {
+            for (Connection connection : targets) {
+                if (connection.local) {
+                    pool = null;
+                    break;
+                }
+            }
+        }
+        for (Batch<B> batch : this.packBursts(this.traits_.toArray(bursts), startTime, queueDepth, priority, streamID, targets)) {
+            if (pool != null) {
+                if (targets.isEmpty()) {
+                    pool.release(batch.bursts);
+                    continue;
+                }
+                batch.setPool(pool, targets.size());
+            }
+            for (Connection connection : targets) {
+                connection.send(batch);
+            }
+        }
+    }
+
+    private List<Connection> getTargets (final String streamID)
+    {
+        final List<Connection> targets = new ArrayList<Connection>();
+        synchronized (this.connections_) {
+            for (Map.Entry<String,Connection> entry : this.connections_.entrySet()) {
+                if (isStreamRoutedToConnection(streamID, entry.getKey())) {
+                    targets.add(entry.getValue());
+                }
+            }
+        }
+        return targets;
+    }
+
+    private B allocateBurst (A data, BURSTIO.BurstSRI sri, BULKIO.PrecisionUTCTime timestamp, boolean eos)
+    {
+        final BurstPool<B> pool = this.burstPool_;
+        if (pool != null) {
+            final B burst = pool.acquire();
+            if (burst != null) {
+                this.traits_.assign(burst, data, sri, timestamp, eos);
+                return burst;
+            }
+        }
+        return this.traits_.createBurst(data, sri, timestamp, eos);
+    }
+
+    private void releaseBatch (final Batch<B> batch)
+    {
+        final BurstPool<B> pool = batch.release();
+        if (pool != null) {
+            // Drop references to the caller's data before pooling
+            for (B burst : batch.bursts) {
+                this.traits_.assign(burst, null, null, null, false);
+            }
+            pool.release(batch.bursts);
+        }
+    }
+
+    private static boolean isLocal (final Object port)
+    {
+        if (port instanceof org.omg.CORBA.portable.ObjectImpl) {
+            try {
+                return ((org.omg.CORBA.portable.ObjectImpl) port)._is_local();
+            } catch (final org.omg.CORBA.SystemException ex) {
+                // No delegate; not connected to anything
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Greedily packs bursts, in order, into batches whose estimated
+     * marshaled size does not exceed the maximum transfer size. Bursts that
+     * are too large to send on their own are discarded, and counted as
+     * dropped for the given connections.
+     */
+    private List<Batch<B>> packBursts (B[] bursts, long startTime, float queueDepth, Priority priority, String streamID, List<Connection> targets)
+    {
+        final int max_size = this.maxTransferSize_;
+        final List<Batch<B>> batches = new ArrayList<Batch<B>>(1);
+        // Bursts from the same stream usually share an SRI
+        BURSTIO.BurstSRI last_sri = null;
+        int sri_size = 0;
+        int batch_size = 0;
+        int batch_elements = 0;
+        int oversized = 0;
+        final List<B> pending = new ArrayList<B>();
+        for (B burst : bursts) {
+            final BURSTIO.BurstSRI sri = this.traits_.sri(burst);
+            if (sri != last_sri) {
+                last_sri = sri;
+                sri_size = Utils.estimateSize(sri);
+            }
+            final int elements = this.traits_.burstLength(burst);
+            // Sequence length and padding, timestamp and EOS flag
+            final int size = sri_size + 8 + (elements * this.bytesPerElement_) + 48;
+            if (size > max_size) {
+                this.reportOversize(sri.streamID, "size " + size + " bytes exceeds maximum transfer size " + max_size);
+                oversized++;
+                continue;
+            }
+            if (!pending.isEmpty() && (batch_size + size > max_size)) {
+                batches.add(this.createBatch(pending, batch_elements, startTime, queueDepth, priority, streamID));
+                pending.clear();
+                batch_size = 0;
+                batch_elements = 0;
+            }
+            pending.add(burst);
+            batch_size += size;
+            batch_elements += elements;
+        }
+        if (batches.isEmpty() && pending.size() == bursts.length) {
+            // Common case: everything fits in one call
+            batches.add(new Batch<B>(bursts, batch_elements, startTime, queueDepth, priority, streamID));
+        } else if (!pending.isEmpty()) {
+            batches.add(this.createBatch(pending, batch_elements, startTime, queueDepth, priority, streamID));
+        }
+        if (oversized > 0) {
+            for (Connection connection : targets) {
+                synchronized (connection.stats) {
+                    connection.stats.dropped(oversized, priority);
+                }
+            }
+        }
+        return batches;
+    }
+
+    private Batch<B> createBatch (List<B> bursts, int elements, long startTime, float queueDepth, Priority priority, String streamID)
+    {
+        return new Batch<B>(bursts.toArray(this.createBursts(bursts.size())), elements, startTime, queueDepth, priority, streamID);
+    }
+
+    private void reportOversize (final String streamID, final String reason)
+    {
+        synchronized (this.oversizeStreams_) {
+            if (!this.oversizeStreams_.add(streamID)) {
+                return;
+            }
+        }
+        this.logger_.error("Dropping burst for stream '" + streamID + "': " + reason);
+    }
+
+    private void deliver (final Connection connection, final Batch<B> batch)
+    {
+        final B[] bursts = batch.bursts;
+        final String connectionId = connection.connectionId;
+
+        long delay = System.nanoTime() - batch.startTime;
+        try {
+            long start = System.nanoTime();
+            this.pushBursts(connection.port, bursts);
+            connection.alive = true;
+            this.recordSend(connection, bursts.length, batch.elements, batch.queueDepth, delay, start);
+        } catch (final MARSHAL ex) {
+            // The size estimate can fall short of the ORB's limit (e.g. for
+            // unusual keyword types), so retry in halves; the peer itself is
+            // not at fault
+            this.partitionBatch(connection, batch);
+        } catch (final Exception ex) {
+            if (connection.alive) {
+                this.logger_.error("pushBursts to " + connectionId + " failed: " + ex);
+                connection.alive = false;
+            }
+        }
+    }
+
+    private void partitionBatch (final Connection connection, final Batch<B> batch)
+    {
+        final B[] bursts = batch.bursts;
+        if (bursts.length == 1) {
+            this.reportOversize(this.traits_.sri(bursts[0]).streamID, "too large for the ORB to send");
+            synchronized (connection.stats) {
+                connection.stats.dropped(1, batch.priority);
+            }
+            return;
+        }
+        final int split = bursts.length / 2;
+        this.deliver(connection, this.createBatch(bursts, 0, split, batch));
+        this.deliver(connection, this.createBatch(bursts, split, bursts.length, batch));
+    }
+
+    private Batch<B> createBatch (B[] bursts, int start, int end, Batch<B> parent)
+    {
+        final B[] subset = this.createBursts(end - start);
+        int elements = 0;
+        for (int index = start; index < end; ++index) {
+            subset[index - start] = bursts[index];
+            elements += this.traits_.burstLength(bursts[index]);
+        }
+        return new Batch<B>(subset, elements, parent.startTime, parent.queueDepth, parent.priority, parent.streamID);
+    }
+
+    private void recordSend (final Connection connection, int bursts, int elements, float queueDepth, long delay, long sendStart)
+    {
+        final double send_time = (System.nanoTime() - sendStart) * 1e-9;
+        synchronized (connection.stats) {
+            connection.stats.record(bursts, elements, queueDepth, delay * 1e-9, send_time);
+            connection.stats.setBacklog(connection.getBacklog());
+        }
+    }
+
+    protected void sendBursts (Collection<B> bursts, long startTime, float queueDepth, final String streamID)
+    {
+        this.sendBursts(this.traits_.toArray(bursts), startTime, queueDepth, streamID);
+    }
+    
+    protected abstract void pushBursts(E port, B[] burts);
+    
+    protected abstract B[] createBursts(int size);
+
+    protected boolean isStreamRoutedToConnection (final String streamID, final String connectionID)
+    {
+        if (RoutingMode.ROUTE_CONNECTION_STREAMS != this.routingMode_) {
+            return true;
+        }
+
+        Set<String> stream_routes = this.routes_.get(streamID);
+        if (stream_routes == null) {
+            return false;
+        }
+        return stream_routes.contains(connectionID);
+    }
+
+    private Queue getQueueForStream (final String streamID)
+    {
+        Queue queue = this.streamQueues_.get(streamID);
+        if (queue == null) {
+            if (isInterleaved()) {
+                queue = this.defaultQueue_;
+            } else {
+                this.logger_.trace("Creating new queue for stream " + streamID);
+                // Propagate the default queue's policy settings
+                final int max_bursts = this.defaultQueue_.getMaxBursts();
+                final int byte_threshold = this.defaultQueue_.getByteThreshold();
+                final int latency_threshold = this.defaultQueue_.getLatencyThreshold();
+                final Priority priority = this.defaultQueue_.getPriority();
+                queue = new Queue(streamID, max_bursts, byte_threshold, latency_threshold, priority);
+            }
+            this.streamQueues_.put(streamID, queue);
+        }
+        return queue;
+    }
+
+    private boolean isInterleaved ()
+    {
+        return (RoutingMode.ROUTE_ALL_INTERLEAVED == routingMode_);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+/**
+ * What an output port does with a batch of queued bursts when a
+ * connection's send queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait until the connection has room, so that a slow receiver slows
+     * down the sender rather than losing data. This is the default.
+     */
+    BLOCK,
+    /**
+     * Shed LOW priority bursts rather than wait: a new LOW priority batch
+     * is dropped, and a NORMAL or HIGH priority batch takes the place of
+     * the most recent waiting LOW priority batch. NORMAL and HIGH priority
+     * bursts are never dropped; if there is no LOW priority batch to drop,
+     * they wait as with BLOCK. Dropped bursts are counted in the port
+     * statistics.
+     */
+    DROP_LOW_PRIORITY
+};
@@ -0,0 +1,37 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+/**
+ * Relative priority of a stream's bursts on an output port.
+ * <p>
+ * Bursts from higher-priority streams are sent ahead of lower-priority ones
+ * already waiting on a connection, and when a connection's send queue is
+ * full and the port's overflow policy is DROP_LOW_PRIORITY, waiting LOW
+ * priority bursts are dropped to make room. A stream's own bursts are always
+ * sent in order, even if its priority changes while some are waiting. Streams
+ * with HIGH priority are not queued; each burst is sent as soon as it is
+ * pushed.
+ */
+public enum Priority {
+    LOW,
+    NORMAL,
+    HIGH
+};
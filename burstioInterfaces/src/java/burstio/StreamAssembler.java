@@ -0,0 +1,184 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+
+import BULKIO.PrecisionUTCTime;
+import BULKIO.StreamSRI;
+
+import burstio.traits.BurstTraits;
+
+/**
+ * Reassembles bursts into continuous bulkio streams.
+ * <p>
+ * Each burst's data is sent on the bulkio output port as a packet of its
+ * own, without copying. The stream SRI is derived from the burst SRI
+ * (stream ID, sample spacing, complex mode and keywords), and is pushed
+ * again whenever the burst SRI changes. If a burst's timestamp is later than
+ * the end of the previous burst by at least one sample, the gap is filled
+ * with zeros so that sample times stay consistent downstream; gaps longer
+ * than the maximum gap, or than MAX_FILL_SAMPLES samples, are not filled.
+ * The zeros are sent in packets of at most FILL_CHUNK_SAMPLES samples.
+ * End-of-stream is passed on.
+ * <p>
+ * Bursts for each stream must be pushed in order.
+ */
+public class StreamAssembler<B,A>
+{
+    public static final double DEFAULT_MAX_GAP = 1.0;
+
+    /**
+     * Most samples of zeros sent to fill a single gap.
+     */
+    public static final long MAX_FILL_SAMPLES = 1L << 26;
+
+    /**
+     * Most samples of zeros sent in one packet when filling a gap.
+     */
+    public static final int FILL_CHUNK_SAMPLES = 1 << 16;
+
+    private static class Stream
+    {
+        BURSTIO.BurstSRI burstSRI;
+        StreamSRI sri;
+        int sampleSize;
+        // Time of the sample following the last burst, if known
+        PrecisionUTCTime next = null;
+    }
+
+    private final bulkio.OutDataPort<?,A> output_;
+    private final BurstTraits<B,A> traits_;
+    private double maxGap_ = DEFAULT_MAX_GAP;
+    private final Map<String,Stream> streams_ = new HashMap<String,Stream>();
+
+    public StreamAssembler (bulkio.OutDataPort<?,A> output, BurstTraits<B,A> traits)
+    {
+        this.output_ = output;
+        this.traits_ = traits;
+    }
+
+    /**
+     * Gets the longest gap between bursts, in seconds, that is filled.
+     */
+    public synchronized double getMaxGap ()
+    {
+        return this.maxGap_;
+    }
+
+    /**
+     * Sets the longest gap between bursts, in seconds, that is filled; 0
+     * disables gap filling.
+     */
+    public synchronized void setMaxGap (double seconds)
+    {
+        this.maxGap_ = seconds;
+    }
+
+    public void pushBursts (B[] bursts)
+    {
+        for (B burst : bursts) {
+            this.pushBurst(burst);
+        }
+    }
+
+    public synchronized void pushBurst (B burst)
+    {
+        final BURSTIO.BurstSRI burst_sri = this.traits_.sri(burst);
+        final String stream_id = burst_sri.streamID;
+        final Stream stream = this.getStream(stream_id, burst_sri);
+        final A data = this.traits_.data(burst);
+        final PrecisionUTCTime time = this.traits_.time(burst);
+        final boolean eos = this.traits_.eos(burst);
+
+        final boolean valid_time = (time != null) && (time.tcstatus == BULKIO.TCS_VALID.value);
+        if (valid_time && stream.next != null) {
+            this.fillGap(stream, data, time);
+        }
+
+        this.output_.pushPacket(data, time, eos, stream_id);
+
+        if (eos) {
+            this.streams_.remove(stream_id);
+        } else if (valid_time) {
+            final int samples = this.traits_.burstLength(burst) / stream.sampleSize;
+            stream.next = bulkio.time.utils.addSampleOffset(time, samples, stream.sri.xdelta);
+        } else {
+            stream.next = null;
+        }
+    }
+
+    private Stream getStream (final String streamID, final BURSTIO.BurstSRI burstSRI)
+    {
+        Stream stream = this.streams_.get(streamID);
+        if (stream != null) {
+            if (burstSRI == stream.burstSRI || Utils.compareSRI(burstSRI, stream.burstSRI)) {
+                stream.burstSRI = burstSRI;
+                return stream;
+            }
+            if (burstSRI.xdelta != stream.sri.xdelta || burstSRI.mode != stream.sri.mode) {
+                // Sample times are no longer comparable
+                stream.next = null;
+            }
+        } else {
+            stream = new Stream();
+            this.streams_.put(streamID, stream);
+        }
+        stream.burstSRI = burstSRI;
+        stream.sri = bulkio.sri.utils.create();
+        stream.sri.streamID = streamID;
+        stream.sri.xdelta = burstSRI.xdelta;
+        stream.sri.mode = burstSRI.mode;
+        stream.sri.keywords = (burstSRI.keywords != null) ? burstSRI.keywords : new CF.DataType[0];
+        stream.sampleSize = (burstSRI.mode != 0) ? 2 : 1;
+        this.output_.pushSRI(stream.sri);
+        return stream;
+    }
+
+    private void fillGap (Stream stream, A data, PrecisionUTCTime time)
+    {
+        final double gap = bulkio.time.utils.difference(time, stream.next);
+        if (gap > this.maxGap_) {
+            return;
+        }
+        final long samples = Math.round(gap / stream.sri.xdelta);
+        if (samples < 1 || samples > MAX_FILL_SAMPLES) {
+            return;
+        }
+        // The zeros are shared by every full-size packet of the fill; new
+        // arrays are zero-filled
+        final int chunk = (int) Math.min(samples, FILL_CHUNK_SAMPLES);
+        final A zeros = this.allocate(data, chunk * stream.sampleSize);
+        for (long offset = 0; offset < samples; offset += chunk) {
+            final int count = (int) Math.min(samples - offset, chunk);
+            final A fill = (count == chunk) ? zeros : this.allocate(data, count * stream.sampleSize);
+            final PrecisionUTCTime fill_time = bulkio.time.utils.addSampleOffset(stream.next, (int) offset, stream.sri.xdelta);
+            this.output_.pushPacket(fill, fill_time, false, stream.sri.streamID);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private A allocate (Object template, int length)
+    {
+        return (A) Array.newInstance(template.getClass().getComponentType(), length);
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import org.ossie.properties.AnyComparator;
+import org.ossie.properties.AnyUtils;
+
+public final class Utils
+{
+    private Utils ()
+    {
+    }
+
+    public static BULKIO.PrecisionUTCTime now ()
+    {
+        long current = System.nanoTime();
+        double wsec = (double)(current / 1000000000);
+        double fsec = (current - wsec) * 1e-9;
+        return new BULKIO.PrecisionUTCTime(BULKIO.TCM_CPU.value, BULKIO.TCS_VALID.value, 0.0, wsec, fsec);
+    }
+
+    public static BURSTIO.BurstSRI createSRI (final String streamID)
+    {
+        return Utils.createSRI(streamID, 1.0);
+    }
+
+    public static BURSTIO.BurstSRI createSRI (final String streamID, double xdelta)
+    {
+        BURSTIO.BurstSRI sri = new BURSTIO.BurstSRI();
+        sri.hversion = 1;
+        sri.streamID = streamID;
+        sri.id = "";
+        sri.xdelta = xdelta;
+        sri.mode = (short)0;
+        sri.flags = (short)0;
+        sri.tau = 0.0;
+        sri.theta = 0.0f;
+        sri.gain = 0.0f;
+        sri.uwlength = (short)0;
+        sri.bursttype = (short)0;
+        sri.burstLength = 0;
+        sri.CHAN_RF = 0.0;
+        sri.baudestimate = 0.0f;
+        sri.carrieroffset = 0.0;
+        sri.SNR = 0.0;
+        sri.modulation = "";
+        sri.baudrate = 0.0;
+        sri.fec = "";
+        sri.fecrate = "";
+        sri.randomizer = "";
+        sri.overhead = "";
+        sri.expectedStartOfBurstTime = new BULKIO.PrecisionUTCTime();
+        sri.keywords = new CF.DataType[0];
+        return sri;
+    }
+
+    public static double elapsed (final BULKIO.PrecisionUTCTime begin)
+    {
+        return Utils.elapsed(begin, Utils.now());
+    }
+
+    public static double elapsed (final BULKIO.PrecisionUTCTime begin, final BULKIO.PrecisionUTCTime end)
+    {
+        return (end.twsec - begin.twsec) + (end.tfsec - begin.tfsec);
+    }
+
+    /**
+     * Estimates the size in bytes of a BurstSRI when marshaled with CDR,
+     * including alignment padding. Keyword values are sized from their
+     * TypeCodes, so the estimate errs on the high side.
+     */
+    public static int estimateSize (final BURSTIO.BurstSRI sri)
+    {
+        // Numeric fields, the expected start time and worst-case padding
+        int size = 160;
+        size += estimateSize(sri.streamID);
+        size += estimateSize(sri.id);
+        size += estimateSize(sri.modulation);
+        size += estimateSize(sri.fec);
+        size += estimateSize(sri.fecrate);
+        size += estimateSize(sri.randomizer);
+        size += estimateSize(sri.overhead);
+        size += 4;
+        if (sri.keywords != null) {
+            for (CF.DataType keyword : sri.keywords) {
+                size += estimateSize(keyword.id);
+                size += estimateSize(keyword.value);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the size in bytes of an Any when marshaled with CDR, as its
+     * TypeCode followed by its value.
+     */
+    public static int estimateSize (final org.omg.CORBA.Any value)
+    {
+        if (value == null) {
+            return 4;
+        }
+        final org.omg.CORBA.TypeCode type = value.type();
+        try {
+            return estimateSize(type) + estimateValueSize(type, value.create_input_stream(), true);
+        } catch (final org.omg.CORBA.UserException ex) {
+            // Malformed TypeCode
+        } catch (final org.omg.CORBA.SystemException ex) {
+            // Value could not be read back, e.g. an object reference
+        }
+        return UNKNOWN_SIZE;
+    }
+
+    // Fallback for values whose size cannot be worked out; if it is too low,
+    // the sender splits the call when the ORB rejects it
+    private static final int UNKNOWN_SIZE = 64;
+
+    private static int estimateSize (final String value)
+    {
+        // Length, characters, terminator and padding to the next 4-byte
+        // boundary
+        final int length = (value == null) ? 0 : value.length();
+        return 4 + ((length + 4) & ~3);
+    }
+
+    private static int estimateSize (final org.omg.CORBA.TypeCode type) throws org.omg.CORBA.UserException
+    {
+        // Kind, plus parameters for complex types; those are marshaled as an
+        // encapsulation (length and byte order) starting with the repository
+        // ID and name
+        int size = 4;
+        switch (type.kind().value()) {
+        case org.omg.CORBA.TCKind._tk_string:
+        case org.omg.CORBA.TCKind._tk_wstring:
+            size += 4;
+            break;
+        case org.omg.CORBA.TCKind._tk_fixed:
+            size += 4;
+            break;
+        case org.omg.CORBA.TCKind._tk_objref:
+            size += 8 + estimateSize(type.id()) + estimateSize(type.name());
+            break;
+        case org.omg.CORBA.TCKind._tk_alias:
+        case org.omg.CORBA.TCKind._tk_value_box:
+            size += 8 + estimateSize(type.id()) + estimateSize(type.name());
+            size += estimateSize(type.content_type());
+            break;
+        case org.omg.CORBA.TCKind._tk_sequence:
+        case org.omg.CORBA.TCKind._tk_array:
+            size += 8 + estimateSize(type.content_type()) + 4;
+            break;
+        case org.omg.CORBA.TCKind._tk_struct:
+        case org.omg.CORBA.TCKind._tk_except:
+            size += 8 + estimateSize(type.id()) + estimateSize(type.name()) + 4;
+            for (int index = 0; index < type.member_count(); ++index) {
+                size += estimateSize(type.member_name(index));
+                size += estimateSize(type.member_type(index));
+            }
+            break;
+        case org.omg.CORBA.TCKind._tk_enum:
+            size += 8 + estimateSize(type.id()) + estimateSize(type.name()) + 4;
+            for (int index = 0; index < type.member_count(); ++index) {
+                size += estimateSize(type.member_name(index));
+            }
+            break;
+        default:
+            if (primitiveSize(type.kind().value()) < 0 && type.kind().value() != org.omg.CORBA.TCKind._tk_any
+                && type.kind().value() != org.omg.CORBA.TCKind._tk_TypeCode) {
+                size += UNKNOWN_SIZE;
+            }
+            break;
+        }
+        return size;
+    }
+
+    // Returns the marshaled size of a fixed-size basic type, which is also
+    // its alignment, or -1 if the type is not one
+    private static int primitiveSize (int kind)
+    {
+        switch (kind) {
+        case org.omg.CORBA.TCKind._tk_null:
+        case org.omg.CORBA.TCKind._tk_void:
+            return 0;
+        case org.omg.CORBA.TCKind._tk_boolean:
+        case org.omg.CORBA.TCKind._tk_char:
+        case org.omg.CORBA.TCKind._tk_octet:
+            return 1;
+        case org.omg.CORBA.TCKind._tk_short:
+        case org.omg.CORBA.TCKind._tk_ushort:
+            return 2;
+        case org.omg.CORBA.TCKind._tk_long:
+        case org.omg.CORBA.TCKind._tk_ulong:
+        case org.omg.CORBA.TCKind._tk_float:
+        case org.omg.CORBA.TCKind._tk_enum:
+        case org.omg.CORBA.TCKind._tk_wchar:
+            // Wide characters take at most 4 bytes
+            return 4;
+        case org.omg.CORBA.TCKind._tk_longlong:
+        case org.omg.CORBA.TCKind._tk_ulonglong:
+        case org.omg.CORBA.TCKind._tk_double:
+            return 8;
+        case org.omg.CORBA.TCKind._tk_longdouble:
+            return 16;
+        default:
+            return -1;
+        }
+    }
+
+    private static int padding (int alignment)
+    {
+        return Math.max(Math.min(alignment, 8) - 1, 0);
+    }
+
+    // Reads one value of the given type from the stream, returning its
+    // marshaled size plus worst-case alignment padding. If last is true,
+    // nothing after the value is read, so basic types are sized from their
+    // count alone instead of being read.
+    private static int estimateValueSize (org.omg.CORBA.TypeCode type, final org.omg.CORBA.portable.InputStream in, boolean last)
+        throws org.omg.CORBA.UserException
+    {
+        final int kind = type.kind().value();
+        final int primitive = primitiveSize(kind);
+        if (primitive >= 0) {
+            if (!last) {
+                skipPrimitives(kind, 1, in);
+            }
+            return primitive + padding(primitive);
+        }
+        switch (kind) {
+        case org.omg.CORBA.TCKind._tk_string:
+            return 3 + estimateSize(in.read_string());
+        case org.omg.CORBA.TCKind._tk_wstring:
+            // Length plus at most 4 bytes per character
+            return 7 + 4 * in.read_wstring().length();
+        case org.omg.CORBA.TCKind._tk_alias:
+        case org.omg.CORBA.TCKind._tk_value_box:
+            return estimateValueSize(type.content_type(), in, last);
+        case org.omg.CORBA.TCKind._tk_any:
+            return 3 + estimateSize(in.read_any());
+        case org.omg.CORBA.TCKind._tk_TypeCode:
+            return 3 + estimateSize(in.read_TypeCode());
+        case org.omg.CORBA.TCKind._tk_sequence:
+            return 7 + estimateElementsSize(type.content_type(), in.read_ulong(), in, last);
+        case org.omg.CORBA.TCKind._tk_array:
+            return estimateElementsSize(type.content_type(), type.length(), in, last);
+        case org.omg.CORBA.TCKind._tk_except:
+        case org.omg.CORBA.TCKind._tk_struct:
+            {
+                int size = 0;
+                if (kind == org.omg.CORBA.TCKind._tk_except) {
+                    size += 3 + estimateSize(in.read_string());
+                }
+                final int members = type.member_count();
+                for (int index = 0; index < members; ++index) {
+                    size += estimateValueSize(type.member_type(index), in, last && (index == members - 1));
+                }
+                return size;
+            }
+        default:
+            throw new org.omg.CORBA.BAD_TYPECODE();
+        }
+    }
+
+    private static int estimateElementsSize (org.omg.CORBA.TypeCode type, int count, final org.omg.CORBA.portable.InputStream in, boolean last)
+        throws org.omg.CORBA.UserException
+    {
+        // Elements of basic types are packed, so only the first can need
+        // padding, and the size follows from the count
+        final org.omg.CORBA.TypeCode element = resolveAlias(type);
+        final int kind = element.kind().value();
+        final int primitive = primitiveSize(kind);
+        if (primitive >= 0) {
+            if (!last) {
+                skipPrimitives(kind, count, in);
+            }
+            return (count * primitive) + padding(primitive);
+        }
+        int size = 0;
+        for (int index = 0; index < count; ++index) {
+            size += estimateValueSize(element, in, last && (index == count - 1));
+        }
+        return size;
+    }
+
+    private static org.omg.CORBA.TypeCode resolveAlias (org.omg.CORBA.TypeCode type) throws org.omg.CORBA.UserException
+    {
+        while (type.kind().value() == org.omg.CORBA.TCKind._tk_alias) {
+            type = type.content_type();
+        }
+        return type;
+    }
+
+    // Most elements skipped per read, so that skipping a long sequence that
+    // is followed by other values only needs a small scratch array
+    private static final int SKIP_CHUNK = 256;
+
+    private static void skipPrimitives (int kind, int count, final org.omg.CORBA.portable.InputStream in)
+    {
+        if (kind == org.omg.CORBA.TCKind._tk_longdouble) {
+            // Not supported by the Java mapping
+            throw new org.omg.CORBA.BAD_TYPECODE();
+        } else if (primitiveSize(kind) <= 0) {
+            return;
+        }
+        final int chunk = Math.min(count, SKIP_CHUNK);
+        boolean[] booleans = null;
+        char[] chars = null;
+        byte[] octets = null;
+        short[] shorts = null;
+        int[] longs = null;
+        float[] floats = null;
+        long[] longlongs = null;
+        double[] doubles = null;
+        switch (kind) {
+        case org.omg.CORBA.TCKind._tk_boolean:
+            booleans = new boolean[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_char:
+        case org.omg.CORBA.TCKind._tk_wchar:
+            chars = new char[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_octet:
+            octets = new byte[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_short:
+        case org.omg.CORBA.TCKind._tk_ushort:
+            shorts = new short[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_long:
+        case org.omg.CORBA.TCKind._tk_ulong:
+        case org.omg.CORBA.TCKind._tk_enum:
+            longs = new int[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_float:
+            floats = new float[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_longlong:
+        case org.omg.CORBA.TCKind._tk_ulonglong:
+            longlongs = new long[chunk];
+            break;
+        case org.omg.CORBA.TCKind._tk_double:
+            doubles = new double[chunk];
+            break;
+        default:
+            return;
+        }
+        for (int remaining = count; remaining > 0; remaining -= chunk) {
+            final int length = Math.min(remaining, chunk);
+            switch (kind) {
+            case org.omg.CORBA.TCKind._tk_boolean:
+                in.read_boolean_array(booleans, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_char:
+                in.read_char_array(chars, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_wchar:
+                in.read_wchar_array(chars, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_octet:
+                in.read_octet_array(octets, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_short:
+            case org.omg.CORBA.TCKind._tk_ushort:
+                in.read_short_array(shorts, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_long:
+            case org.omg.CORBA.TCKind._tk_ulong:
+            case org.omg.CORBA.TCKind._tk_enum:
+                in.read_long_array(longs, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_float:
+                in.read_float_array(floats, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_longlong:
+            case org.omg.CORBA.TCKind._tk_ulonglong:
+                in.read_longlong_array(longlongs, 0, length);
+                break;
+            case org.omg.CORBA.TCKind._tk_double:
+                in.read_double_array(doubles, 0, length);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Compares two BurstSRIs, including their keywords, for equality.
+     */
+    public static boolean compareSRI (final BURSTIO.BurstSRI sri1, final BURSTIO.BurstSRI sri2)
+    {
+        if (sri1 == sri2) {
+            return true;
+        } else if (sri1 == null || sri2 == null) {
+            return false;
+        }
+        if (sri1.hversion != sri2.hversion || sri1.xdelta != sri2.xdelta || sri1.mode != sri2.mode
+            || sri1.flags != sri2.flags || sri1.tau != sri2.tau || sri1.theta != sri2.theta
+            || sri1.gain != sri2.gain || sri1.uwlength != sri2.uwlength || sri1.bursttype != sri2.bursttype
+            || sri1.burstLength != sri2.burstLength || sri1.CHAN_RF != sri2.CHAN_RF
+            || sri1.baudestimate != sri2.baudestimate || sri1.carrieroffset != sri2.carrieroffset
+            || sri1.SNR != sri2.SNR || sri1.baudrate != sri2.baudrate) {
+            return false;
+        }
+        if (!equals(sri1.streamID, sri2.streamID) || !equals(sri1.id, sri2.id)
+            || !equals(sri1.modulation, sri2.modulation) || !equals(sri1.fec, sri2.fec)
+            || !equals(sri1.fecrate, sri2.fecrate) || !equals(sri1.randomizer, sri2.randomizer)
+            || !equals(sri1.overhead, sri2.overhead)) {
+            return false;
+        }
+        if (!compareTime(sri1.expectedStartOfBurstTime, sri2.expectedStartOfBurstTime)) {
+            return false;
+        }
+        if (sri1.keywords == null || sri2.keywords == null) {
+            return sri1.keywords == sri2.keywords;
+        } else if (sri1.keywords.length != sri2.keywords.length) {
+            return false;
+        }
+        for (int index = 0; index < sri1.keywords.length; ++index) {
+            final CF.DataType keyword1 = sri1.keywords[index];
+            final CF.DataType keyword2 = sri2.keywords[index];
+            if (!keyword1.id.equals(keyword2.id)) {
+                return false;
+            }
+            if (!keyword1.value.type().equivalent(keyword2.value.type())) {
+                return false;
+            }
+            if (!AnyComparator.compare(keyword1.value, keyword2.value, AnyComparator.Operator.EQ)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean compareTime (final BULKIO.PrecisionUTCTime time1, final BULKIO.PrecisionUTCTime time2)
+    {
+        if (time1 == null || time2 == null) {
+            return time1 == time2;
+        }
+        return (time1.tcmode == time2.tcmode) && (time1.tcstatus == time2.tcstatus) && (time1.toff == time2.toff)
+            && (time1.twsec == time2.twsec) && (time1.tfsec == time2.tfsec);
+    }
+
+    private static boolean equals (final String value1, final String value2)
+    {
+        return (value1 == null) ? (value2 == null) : value1.equals(value2);
+    }
+
+        public static Logger getChildLogger(final Logger parent, final String name)
+    {
+        return Logger.getLogger(parent.getName() + "." + name);
+    }
+
+    public static void addKeyword (List<CF.DataType> keywords, final String name, final int value)
+    {
+        keywords.add(new CF.DataType(name, AnyUtils.toAny(value, "long")));
+    }
+
+    public static void addKeyword (List<CF.DataType> keywords, final String name, final double value)
+    {
+        keywords.add(new CF.DataType(name, AnyUtils.toAny(value, "double")));
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import burstio.Utils;
+
+/**
+ * Statistics over a sliding window of the most recent pushBursts calls.
+ * <p>
+ * Each call is stored in a set of parallel primitive ring buffers, so that
+ * recording does not allocate. Subclasses may keep extra per-call values in
+ * additional columns, set at the slot returned by <code>addSample</code>.
+ */
+abstract class AbstractStatistics {
+
+    public static final int DEFAULT_WINDOW_SIZE = 10;
+
+    private static final double[] PERCENTILES = { 0.50, 0.95, 0.99 };
+    private static final String[] PERCENTILE_NAMES = { "P50", "P95", "P99" };
+
+    private final String name_;
+    private final int bitsPerElement_;
+
+    private int windowSize_ = 0;
+    private int count_ = 0;
+    private int next_ = 0;
+    private long[] times_;
+    private int[] bursts_;
+    private int[] elements_;
+    private float[] queueDepths_;
+    private double[] delays_;
+    private double[][] columns_;
+    // Working storage for computing percentiles
+    private double[] sorted_;
+
+    public AbstractStatistics (final String name, int bitsPerElement) {
+        this(name, bitsPerElement, 0);
+    }
+
+    protected AbstractStatistics (final String name, int bitsPerElement, int extraColumns) {
+        this.name_ = name;
+        this.bitsPerElement_ = bitsPerElement;
+        this.columns_ = new double[extraColumns][];
+        this.resize(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Gets the number of calls over which statistics are computed.
+     */
+    public int getWindowSize ()
+    {
+        return this.windowSize_;
+    }
+
+    /**
+     * Sets the number of calls over which statistics are computed. The most
+     * recent calls are kept.
+     */
+    public void setWindowSize (int calls)
+    {
+        if (calls < 1) {
+            throw new IllegalArgumentException("window size must be positive");
+        }
+        if (calls != this.windowSize_) {
+            this.resize(calls);
+        }
+    }
+
+    public BULKIO.PortStatistics retrieve ()
+    {
+        final long now = System.nanoTime();
+
+        long total_bursts = 0;
+        long total_elements = 0;
+        double total_queue_depth = 0.0;
+        double total_delay = 0.0;
+        for (int index = 0; index < this.count_; ++index) {
+            final int slot = this.slot(index);
+            total_bursts += this.bursts_[slot];
+            total_elements += this.elements_[slot];
+            total_queue_depth += this.queueDepths_[slot];
+            total_delay += this.delays_[slot];
+        }
+
+        final int total_calls = this.count_;
+        float elements_per_second = 0.0f;
+        float calls_per_second = 0.0f;
+        float average_queue_depth = 0.0f;
+        float time_since_last_call = 0.0f;
+        double bursts_per_second = 0.0;
+        double bursts_per_push = 0.0;
+        double elements_per_burst = 0.0;
+        double average_latency = 0.0;
+        if (total_calls > 0) {
+            final double elapsed = (now - this.times_[this.slot(0)]) * 1e-9;
+            if (elapsed > 0.0) {
+                elements_per_second = (float)(total_elements / elapsed);
+                calls_per_second = (float)(total_calls / elapsed);
+                bursts_per_second = total_bursts / elapsed;
+            }
+            average_queue_depth = (float)(total_queue_depth / total_calls);
+            time_since_last_call = (float)((now - this.times_[this.slot(total_calls - 1)]) * 1e-9);
+            bursts_per_push = total_bursts / (double)total_calls;
+            if (total_bursts > 0) {
+                elements_per_burst = total_elements / (double)total_bursts;
+            }
+            average_latency = total_delay / total_calls;
+        }
+
+        List<CF.DataType> keywords = new ArrayList<CF.DataType>();
+        Utils.addKeyword(keywords, "BURSTS_PER_SECOND", bursts_per_second);
+        Utils.addKeyword(keywords, "BURSTS_PER_PUSH", bursts_per_push);
+        Utils.addKeyword(keywords, "ELEMENTS_PER_BURST", elements_per_burst);
+        Utils.addKeyword(keywords, "AVERAGE_LATENCY", average_latency);
+
+        for (int index = 0; index < total_calls; ++index) {
+            this.sorted_[index] = this.delays_[this.slot(index)];
+        }
+        this.addPercentiles(keywords, "LATENCY_");
+        for (int index = 0; index < total_calls; ++index) {
+            this.sorted_[index] = this.queueDepths_[this.slot(index)];
+        }
+        this.addPercentiles(keywords, "QUEUE_DEPTH_");
+        for (int index = 0; index < total_calls; ++index) {
+            this.sorted_[index] = this.bursts_[this.slot(index)];
+        }
+        this.addPercentiles(keywords, "BURSTS_PER_PUSH_");
+
+        this.addKeywords(keywords);
+        CF.DataType[] stat_keywords = keywords.toArray(new CF.DataType[keywords.size()]);
+
+        return new BULKIO.PortStatistics(this.name_,
+                                         elements_per_second,
+                                         elements_per_second * this.bitsPerElement_,
+                                         calls_per_second,
+                                         new String[0],
+                                         average_queue_depth,
+                                         time_since_last_call,
+                                         stat_keywords);
+    }
+
+    /**
+     * Records a call, replacing the oldest one if the window is full.
+     *
+     * @return the slot for the call's extra column values, which are
+     *         initially zero
+     */
+    protected int addSample (int bursts, int elements, float queueDepth, double delay)
+    {
+        final int slot = this.next_;
+        this.times_[slot] = System.nanoTime();
+        this.bursts_[slot] = bursts;
+        this.elements_[slot] = elements;
+        this.queueDepths_[slot] = queueDepth;
+        this.delays_[slot] = delay;
+        for (double[] column : this.columns_) {
+            column[slot] = 0.0;
+        }
+        this.next_ = (slot + 1) % this.windowSize_;
+        if (this.count_ < this.windowSize_) {
+            this.count_++;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the number of calls in the window.
+     */
+    protected int getSampleCount ()
+    {
+        return this.count_;
+    }
+
+    /**
+     * Returns the slot of a call in the window, where 0 is the oldest.
+     */
+    protected int slot (int index)
+    {
+        return (this.next_ - this.count_ + index + this.windowSize_) % this.windowSize_;
+    }
+
+    protected double[] getColumn (int column)
+    {
+        return this.columns_[column];
+    }
+
+    /**
+     * Returns the sum of an extra column over the window.
+     */
+    protected double sumColumn (int column)
+    {
+        final double[] values = this.columns_[column];
+        double total = 0.0;
+        for (int index = 0; index < this.count_; ++index) {
+            total += values[this.slot(index)];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total number of bursts over the window.
+     */
+    protected long getTotalBursts ()
+    {
+        long total = 0;
+        for (int index = 0; index < this.count_; ++index) {
+            total += this.bursts_[this.slot(index)];
+        }
+        return total;
+    }
+
+    protected void addKeywords (List<CF.DataType> keywords)
+    {
+    }
+
+    // Adds keywords for the percentiles of the first count_ values in
+    // sorted_, which is sorted in place
+    private void addPercentiles (List<CF.DataType> keywords, String prefix)
+    {
+        final int count = this.count_;
+        Arrays.sort(this.sorted_, 0, count);
+        for (int index = 0; index < PERCENTILES.length; ++index) {
+            double value = 0.0;
+            if (count > 0) {
+                final int rank = (int)Math.ceil(PERCENTILES[index] * count);
+                value = this.sorted_[Math.max(rank, 1) - 1];
+            }
+            Utils.addKeyword(keywords, prefix + PERCENTILE_NAMES[index], value);
+        }
+    }
+
+    private void resize (int size)
+    {
+        final long[] times = new long[size];
+        final int[] bursts = new int[size];
+        final int[] elements = new int[size];
+        final float[] queue_depths = new float[size];
+        final double[] delays = new double[size];
+        final double[][] columns = new double[this.columns_.length][size];
+
+        // Keep the most recent calls, oldest first
+        final int count = Math.min(this.count_, size);
+        final int first = this.count_ - count;
+        for (int index = 0; index < count; ++index) {
+            final int slot = this.slot(first + index);
+            times[index] = this.times_[slot];
+            bursts[index] = this.bursts_[slot];
+            elements[index] = this.elements_[slot];
+            queue_depths[index] = this.queueDepths_[slot];
+            delays[index] = this.delays_[slot];
+            for (int column = 0; column < columns.length; ++column) {
+                columns[column][index] = this.columns_[column][slot];
+            }
+        }
+
+        this.times_ = times;
+        this.bursts_ = bursts;
+        this.elements_ = elements;
+        this.queueDepths_ = queue_depths;
+        this.delays_ = delays;
+        this.columns_ = columns;
+        this.sorted_ = new double[size];
+        this.windowSize_ = size;
+        this.count_ = count;
+        this.next_ = count % size;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio.stats;
+
+import java.util.List;
+
+import bulkio.LatencyStatistics;
+import burstio.Utils;
+
+public class ReceiverStatistics extends AbstractStatistics {
+
+    // Extra per-call values
+    private static final int FLUSHES = 0;
+    private static final int DROPPED = 1;
+
+    public ReceiverStatistics (final String name, int bitsPerElement)
+    {
+        super(name, bitsPerElement, 2);
+    }
+
+    public void record (int bursts, int elements, float queueDepth, double delay)
+    {
+        this.addSample(bursts, elements, queueDepth, delay);
+    }
+
+    public LatencyStatistics getLatencyStatistics ()
+    {
+        return this.latency_;
+    }
+
+    public void flushOccurred (int bursts)
+    {
+        final int count = this.getSampleCount();
+        if (count > 0) {
+            final int last = this.slot(count - 1);
+            this.getColumn(FLUSHES)[last]++;
+            this.getColumn(DROPPED)[last] += bursts;
+        }
+
+        this.flushCount_++;
+        this.burstsDropped_ += bursts;
+    }
+
+    protected void addKeywords (List<CF.DataType> keywords)
+    {
+        final long total_bursts = this.getTotalBursts();
+        double dropped_ratio = 0.0;
+        if (total_bursts > 0) {
+            dropped_ratio = this.sumColumn(DROPPED) / total_bursts;
+        }
+        Utils.addKeyword(keywords, "QUEUE_FLUSHES", (int)this.sumColumn(FLUSHES));
+        Utils.addKeyword(keywords, "DROPPED_RATIO", dropped_ratio);
+        if (this.flushCount_ > 0) {
+            Utils.addKeyword(keywords, "FLUSH_COUNT", this.flushCount_);
+            Utils.addKeyword(keywords, "BURSTS_DROPPED", this.burstsDropped_);
+        }
+        this.latency_.addKeywords(keywords);
+    }
+
+    private int flushCount_ = 0;
+    private int burstsDropped_ = 0;
+    private final LatencyStatistics latency_ = new LatencyStatistics();
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file
+ * distributed with this source distribution.
+ *
+ * This file is part of REDHAWK burstioInterfaces.
+ *
+ * REDHAWK burstioInterfaces is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * REDHAWK burstioInterfaces is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package burstio.stats;
+
+import java.util.List;
+
+import burstio.Priority;
+import burstio.Utils;
+
+public class SenderStatistics extends AbstractStatistics {
+
+    // Extra per-call values
+    private static final int SEND_TIME = 0;
+
+    public SenderStatistics (final String name, int bitsPerElement)
+    {
+        super(name, bitsPerElement, 1);
+    }
+
+    public void record (int bursts, int elements, float queueDepth, double delay)
+    {
+        this.record(bursts, elements, queueDepth, delay, 0.0);
+    }
+
+    /**
+     * Records a pushBursts call, including the time spent in the remote call
+     * itself (sendTime), in seconds.
+     */
+    public void record (int bursts, int elements, float queueDepth, double delay, double sendTime)
+    {
+        final int slot = this.addSample(bursts, elements, queueDepth, delay);
+        this.getColumn(SEND_TIME)[slot] = sendTime;
+    }
+
+    /**
+     * Updates the number of pushBursts calls waiting to be sent.
+     */
+    public void setBacklog (int calls)
+    {
+        this.backlog_ = calls;
+        this.maxBacklog_ = Math.max(this.maxBacklog_, calls);
+    }
+
+    /**
+     * Records bursts that were discarded without being sent.
+     */
+    public void dropped (int bursts)
+    {
+        this.dropped(bursts, Priority.NORMAL);
+    }
+
+    /**
+     * Records bursts of the given priority that were discarded without being
+     * sent.
+     */
+    public void dropped (int bursts, Priority priority)
+    {
+        this.burstsDropped_ += bursts;
+        this.priorityDropped_[priority.ordinal()] += bursts;
+    }
+
+    protected void addKeywords (List<CF.DataType> keywords)
+    {
+        final int count = this.getSampleCount();
+        double average_send_time = 0.0;
+        if (count > 0) {
+            average_send_time = this.sumColumn(SEND_TIME) / count;
+        }
+        Utils.addKeyword(keywords, "AVERAGE_SEND_TIME", average_send_time);
+        Utils.addKeyword(keywords, "BACKLOG", this.backlog_);
+        Utils.addKeyword(keywords, "MAX_BACKLOG", this.maxBacklog_);
+        if (this.burstsDropped_ > 0) {
+            Utils.addKeyword(keywords, "BURSTS_DROPPED", this.burstsDropped_);
+            for (Priority priority : Priority.values()) {
+                final int dropped = this.priorityDropped_[priority.ordinal()];
+                if (dropped > 0) {
+                    Utils.addKeyword(keywords, priority + "_BURSTS_DROPPED", dropped);
+                }
+            }
+        }
+    }
+
+    private int backlog_ = 0;
+    private int maxBacklog_ = 0;
+    private int burstsDropped_ = 0;
+    private final int[] priorityDropped_ = new int[Priority.values().length];
+}
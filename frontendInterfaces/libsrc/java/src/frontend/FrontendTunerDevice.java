@@ -74,29 +74,12 @@ public abstract class FrontendTunerDevice<TunerStatusStructType extends frontend
      */
     public boolean validateRequestVsSRI(final frontend.FETypes.frontend_tuner_allocation_struct request, final BULKIO.StreamSRI upstream_sri, boolean output_mode) throws FRONTEND.BadParameterException {
         // get center frequency and bandwidth from SRI keywords
-        double upstream_cf = 0.0;
-        double upstream_bw = 0.0;
-        boolean found_cf = false;
-        boolean found_bw = false;
-        int key_size = upstream_sri.keywords.length;
-        for (int i = 0; i < key_size; i++) {
-            if (!upstream_sri.keywords[i].id.equals("CHAN_RF")) {
-                Double val = (Double) AnyUtils.convertAny(upstream_sri.keywords[i].value);
-                if (val != null){ 
-                    found_cf = true;
-                    upstream_cf = val.doubleValue();
-                }
-            } else if (!upstream_sri.keywords[i].id.equals("FRONTEND::BANDWIDTH")) {
-                Double val = (Double) AnyUtils.convertAny(upstream_sri.keywords[i].value);
-                if (val != null){ 
-                    found_bw = true;
-                    upstream_bw = val.doubleValue();
-                }
-            }
-        }
-        if(!found_cf || !found_bw){
+        final bulkio.sri.Keywords keywords = bulkio.sri.Keywords.of(upstream_sri);
+        if (!keywords.isNumeric("CHAN_RF") || !keywords.isNumeric("FRONTEND::BANDWIDTH")) {
             throw new FRONTEND.BadParameterException("CANNOT VERIFY REQUEST -- SRI missing required keywords");
         }
+        final double upstream_cf = keywords.getDouble("CHAN_RF", 0.0);
+        final double upstream_bw = keywords.getDouble("FRONTEND::BANDWIDTH", 0.0);
 
         // check bandwidth
         double min_upstream_freq = upstream_cf-(upstream_bw/2);
@@ -39,8 +39,9 @@ loader = CodegenLoader(__package__,
 
 class BaseComponentGenerator(JavaCodeGenerator):
     # Need to keep use_jni, auto_start and queued_ports to handle legacy options
-    def parseopts (self, java_package='',use_jni=True, auto_start=True,queued_ports=False):
+    def parseopts (self, java_package='',use_jni=True, auto_start=True,queued_ports=False,primitive_sequences=False):
         self.package = java_package
+        self.primitive_sequences = utils.parseBoolean(primitive_sequences)
 
     def loader(self, component):
         return loader
@@ -49,7 +50,7 @@ class BaseComponentGenerator(JavaCodeGenerator):
         return BaseComponentMapper(self.package)
 
     def propertyMapper(self):
-        return JavaPropertyMapper()
+        return JavaPropertyMapper(primitive_sequences=self.primitive_sequences)
 
     def portMapper(self):
         return JavaPortMapper()
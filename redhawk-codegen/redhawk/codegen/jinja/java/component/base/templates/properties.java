@@ -41,7 +41,7 @@ public static class ${prop.javatype} extends StructDef {
 /*{%     if field is simple %}*/
 ${field.javatype} ${field.javaname}
 /*{%     elif field is simplesequence %}*/
-List<${field.javatype}> ${field.javaname}
+${field.valuetype} ${field.javaname}
 /*{%     endif %}*/
 /*{%   endfor %}*/
 /*{% endfilter -%}*/
@@ -56,10 +56,10 @@ List<${field.javatype}> ${field.javaname}
      * @generated
      */
 /*{% for field in prop.fields if not field.inherited %}*/
-    public void set_${field.javaname}(/*{% if field is simple %}*/${field.javatype} ${field.javaname}/*{% elif field is simplesequence %}*/List<${field.javatype}> ${field.javaname}/*{% endif%}*/) {
+    public void set_${field.javaname}(/*{% if field is simple %}*/${field.javatype} ${field.javaname}/*{% elif field is simplesequence %}*/${field.valuetype} ${field.javaname}/*{% endif%}*/) {
         this.${field.javaname}.setValue(${field.javaname});
     }
-    public /*{% if field is simple %}*/${field.javatype}/*{% elif field is simplesequence %}*/List<${field.javatype}>/*{% endif%}*/ get_${field.javaname}() {
+    public /*{% if field is simple %}*/${field.javatype}/*{% elif field is simplesequence %}*/${field.valuetype}/*{% endif%}*/ get_${field.javaname}() {
         return this.${field.javaname}.getValue();
     }
 /*{% endfor %}*/
@@ -97,11 +97,19 @@ public final ${prop.javaclass}Property ${prop.javaname} =
 /*{% endmacro %}*/
 
 /*{% macro simplesequence(prop) %}*/
+/*{% if prop.isPrimitiveArray %}*/
+public final ${prop.javaclass}ArrayProperty ${prop.javaname} =
+    new ${prop.javaclass}ArrayProperty(
+        "${prop.identifier}", //id
+        ${java.stringLiteral(prop.name) if prop.name else java.NULL}, //name
+        new ${prop.valuetype} {${prop.javavalues|join(',')}}, //default value
+/*{% else %}*/
 public final ${prop.javaclass}SequenceProperty ${prop.javaname} =
     new ${prop.javaclass}SequenceProperty(
         "${prop.identifier}", //id
         ${java.stringLiteral(prop.name) if prop.name else java.NULL}, //name
         ${prop.javaclass}SequenceProperty.asList(${prop.javavalues|join(',')}), //default value
+/*{% endif %}*/
         Mode.${prop.mode|upper}, //mode
         Action.${prop.action|upper}, //action
 /*{% if prop.isOptional %}*/
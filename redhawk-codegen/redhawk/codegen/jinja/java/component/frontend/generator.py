@@ -60,7 +60,7 @@ class FrontendComponentGenerator(PullComponentGenerator):
         return FrontendComponentMapper(self.package)
 
     def propertyMapper(self):
-        return FrontendPropertyMapper()
+        return FrontendPropertyMapper(primitive_sequences=self.primitive_sequences)
 
     def portFactory(self):
         return FEIPortFactory()
@@ -59,7 +59,24 @@ _propertyClass = {
     CorbaTypes.OBJREF:    'Objref'
 }
 
+# CORBA types that can be stored as primitive arrays
+_arrayTypes = (
+    CorbaTypes.OCTET,
+    CorbaTypes.SHORT,
+    CorbaTypes.USHORT,
+    CorbaTypes.LONG,
+    CorbaTypes.ULONG,
+    CorbaTypes.LONGLONG,
+    CorbaTypes.ULONGLONG,
+    CorbaTypes.FLOAT,
+    CorbaTypes.DOUBLE
+)
+
 class JavaPropertyMapper(PropertyMapper):
+    def __init__(self, primitive_sequences=False):
+        super(JavaPropertyMapper, self).__init__()
+        self.primitive_sequences = primitive_sequences
+
     def mapProperty(self, prop):
         javaprop = {}
         if prop.hasName():
@@ -115,6 +132,15 @@ class JavaPropertyMapper(PropertyMapper):
                                            complex = prop.isComplex()))
 	javaprop['javavalues'] = values
         javaprop['isOptional'] = prop.isOptional()
+        if self.primitive_sequences and not prop.isComplex() and prop.type() in _arrayTypes:
+            # Store the value as a primitive array (e.g., float[]) to avoid
+            # boxing every element
+            javaprop['isPrimitiveArray'] = True
+            javaprop['javatype'] = javatype
+            javaprop['valuetype'] = javatype + '[]'
+        else:
+            javaprop['isPrimitiveArray'] = False
+            javaprop['valuetype'] = 'List<%s>' % javaprop['javatype']
         return javaprop
 
     def mapStructProperty(self, prop, fields):
@@ -141,7 +167,10 @@ class JavaPropertyMapper(PropertyMapper):
                     vals = []
                     for val in itemvalue:
                         vals.append(java.literal(val, field['javatype']))
-                    addval = field['javaclass']+'SequenceProperty.asList('+','.join(vals)+')'
+                    if field.get('isPrimitiveArray', False):
+                        addval = 'new '+field['valuetype']+' {'+','.join(vals)+'}'
+                    else:
+                        addval = field['javaclass']+'SequenceProperty.asList('+','.join(vals)+')'
                     newval.append(addval)
                 else:
                     newval.append(java.literal(itemvalue, field['javatype']))
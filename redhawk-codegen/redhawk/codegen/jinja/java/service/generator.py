@@ -39,9 +39,10 @@ loader = CodegenLoader(__package__,
                         'base': 'redhawk.codegen.jinja.java.component.base'})
 
 class ServiceGenerator(JavaCodeGenerator):
-    def parseopts (self, java_package='', use_jni=True):
+    def parseopts (self, java_package='', use_jni=True, primitive_sequences=False):
         self.package = java_package
         self.usejni = utils.parseBoolean(use_jni)
+        self.primitive_sequences = utils.parseBoolean(primitive_sequences)
 
     def loader(self, service):
         return loader
@@ -50,7 +51,7 @@ class ServiceGenerator(JavaCodeGenerator):
         return ServiceMapper(self.package)
 
     def propertyMapper(self):
-        return JavaPropertyMapper()
+        return JavaPropertyMapper(primitive_sequences=self.primitive_sequences)
 
     def portMapper(self):
         return JavaPortMapper()
@@ -0,0 +1,323 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.omg.CORBA.ORB;
+import org.omg.PortableServer.POA;
+
+import org.ossie.logging.logging;
+
+/**
+ * Runs many resources in one JVM, sharing a single ORB, root POA and logging
+ * configuration, instead of starting a JVM per component.
+ * <p>
+ * Each resource is created and registered just as start_component would,
+ * from its own execparams, and can be released independently; the host
+ * shuts down the ORB once every resource it launched has been released.
+ * Resources whose classes are given with their own classpath are loaded in
+ * a separate class loader that looks in that classpath before the host's,
+ * so that components with conflicting library classes can share a host.
+ * The framework, CORBA interface, bulkio, burstio, logging and Java
+ * platform classes are shared with the host, and always come from its
+ * class loader.
+ * <p>
+ * Usage:
+ * <pre>
+ *   java org.ossie.component.ComponentHost [host options] \
+ *       -- [-cp CLASSPATH] CLASS [execparams] \
+ *       [-- [-cp CLASSPATH] CLASS [execparams] ...]
+ * </pre>
+ * Host options are passed to the ORB; LOGGING_CONFIG_URI and DEBUG_LEVEL
+ * pairs among them configure logging for the whole host.
+ */
+public class ComponentHost {
+
+    /**
+     * Separates the host options and each component in the command line.
+     */
+    public static final String SEPARATOR = "--";
+
+    private static final Logger logger = Logger.getLogger(ComponentHost.class.getName());
+
+    /**
+     * Creates a host, initializing the shared ORB.
+     *
+     * @param args   ORB and host options
+     * @param props  ORB properties
+     */
+    public ComponentHost (final String[] args, final Properties props)
+    {
+        this.orb = org.ossie.corba.utils.Init(args, props);
+        this.poa = org.ossie.corba.utils.RootPOA();
+
+        final Map<String,String> options = Resource.parseArgs(args);
+        String logcfg_uri = "";
+        if (options.containsKey("LOGGING_CONFIG_URI")) {
+            logcfg_uri = options.get("LOGGING_CONFIG_URI");
+        }
+        int debugLevel = -1;
+        if (options.containsKey("DEBUG_LEVEL")) {
+            debugLevel = Integer.parseInt(options.get("DEBUG_LEVEL"));
+        }
+        logging.Configure(logcfg_uri, debugLevel);
+    }
+
+    public ORB getOrb ()
+    {
+        return this.orb;
+    }
+
+    /**
+     * Creates and registers a resource of a class visible to the host.
+     *
+     * @param clazz  the resource class
+     * @param args   the resource's execparams
+     * @return the new resource
+     */
+    public Resource launch (final Class<? extends Resource> clazz, final String[] args) throws Exception
+    {
+        final Thread thread = Thread.currentThread();
+        final ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(clazz.getClassLoader());
+        final Resource resource;
+        try {
+            resource = Resource.createResource(clazz, args, this.orb, this.poa, false);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+        synchronized (this) {
+            this.resources.add(resource);
+            this.notifyAll();
+        }
+        logger.debug("Launched " + clazz.getName() + " (" + this.getResourceCount() + " resources)");
+        return resource;
+    }
+
+    /**
+     * Creates and registers a resource, loading its class in its own class
+     * loader if a classpath is given. Classes other than those shared with
+     * the host are loaded from that classpath in preference to the host's.
+     *
+     * @param className  fully-qualified name of the resource class
+     * @param classpath  the resource's classpath entries, or null to load it
+     *                   from the host's class loader
+     * @param args       the resource's execparams
+     * @return the new resource
+     */
+    public Resource launch (final String className, final URL[] classpath, final String[] args) throws Exception
+    {
+        ClassLoader loader = this.getClass().getClassLoader();
+        if (classpath != null && classpath.length > 0) {
+            loader = new ComponentClassLoader(classpath, loader);
+        }
+        final Class<? extends Resource> clazz = Class.forName(className, true, loader).asSubclass(Resource.class);
+        return this.launch(clazz, args);
+    }
+
+    /**
+     * @return the number of launched resources that have not been released
+     */
+    public synchronized int getResourceCount ()
+    {
+        return this.resources.size();
+    }
+
+    /**
+     * Runs the ORB until all launched resources have been released, then
+     * shuts it down.
+     */
+    public void run ()
+    {
+        final Thread shutdownWatcher = new Thread(new Runnable() {
+                public void run() {
+                    ComponentHost.this.waitReleased();
+                    Resource.shutdownORB(ComponentHost.this.orb);
+                }
+            });
+        shutdownWatcher.start();
+
+        this.orb.run();
+
+        try {
+            shutdownWatcher.join();
+        } catch (InterruptedException e) {
+            // PASS
+        }
+        this.orb.destroy();
+        omnijni.ORB.shutdown();
+    }
+
+    // Waits for each resource in turn; resources launched in the meantime
+    // are picked up on the next pass
+    private void waitReleased ()
+    {
+        while (true) {
+            final Resource next;
+            synchronized (this) {
+                if (this.resources.isEmpty()) {
+                    return;
+                }
+                next = this.resources.get(0);
+            }
+            next.waitDisposed();
+            synchronized (this) {
+                this.resources.remove(next);
+            }
+            logger.debug("Resource released (" + this.getResourceCount() + " remaining)");
+        }
+    }
+
+    /**
+     * Child-first class loader for a resource's own classpath. Classes that
+     * the resource shares with the host (and the ORB) must be loaded only
+     * once, so those are always delegated to the parent.
+     */
+    private static class ComponentClassLoader extends URLClassLoader {
+
+        private static final String[] SHARED_PREFIXES = {
+            "java.", "javax.", "sun.", "org.omg.", "org.w3c.", "org.xml.",
+            "org.ossie.", "omnijni.", "org.apache.log4j.",
+            "CF.", "ExtendedCF.", "StandardEvent.", "ExtendedEvent.",
+            "bulkio.", "BULKIO.", "burstio.", "BURSTIO.", "frontend.", "FRONTEND."
+        };
+
+        ComponentClassLoader (final URL[] classpath, final ClassLoader parent)
+        {
+            super(classpath, parent);
+        }
+
+        private static boolean isShared (final String name)
+        {
+            for (String prefix : SHARED_PREFIXES) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass (final String name, boolean resolve) throws ClassNotFoundException
+        {
+            if (isShared(name)) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> clazz = this.findLoadedClass(name);
+            if (clazz == null) {
+                try {
+                    clazz = this.findClass(name);
+                } catch (final ClassNotFoundException ex) {
+                    // Not in the resource's classpath; try the host's
+                    clazz = super.loadClass(name, false);
+                }
+            }
+            if (resolve) {
+                this.resolveClass(clazz);
+            }
+            return clazz;
+        }
+
+        @Override
+        public URL getResource (final String name)
+        {
+            if (!isShared(name.replace('/', '.'))) {
+                final URL url = this.findResource(name);
+                if (url != null) {
+                    return url;
+                }
+            }
+            return super.getResource(name);
+        }
+    }
+
+    private static URL[] parseClasspath (final String classpath) throws MalformedURLException
+    {
+        final List<URL> urls = new ArrayList<URL>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (entry.length() > 0) {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    public static void main (final String[] args) throws Exception
+    {
+        // Split the command line into the host options and each component
+        final List<List<String>> sections = new ArrayList<List<String>>();
+        List<String> current = new ArrayList<String>();
+        sections.add(current);
+        for (String arg : args) {
+            if (SEPARATOR.equals(arg)) {
+                current = new ArrayList<String>();
+                sections.add(current);
+            } else {
+                current.add(arg);
+            }
+        }
+        if (sections.size() < 2) {
+            System.out.println("usage: " + ComponentHost.class.getName() + " [host options] -- [-cp CLASSPATH] CLASS [execparams] [-- ...]");
+            System.exit(-1);
+        }
+
+        final List<String> options = sections.get(0);
+        final ComponentHost host = new ComponentHost(options.toArray(new String[options.size()]), new Properties());
+        for (List<String> section : sections.subList(1, sections.size())) {
+            if (section.isEmpty()) {
+                continue;
+            }
+            URL[] classpath = null;
+            int index = 0;
+            if (("-cp".equals(section.get(0)) || "-classpath".equals(section.get(0))) && section.size() > 2) {
+                classpath = parseClasspath(section.get(1));
+                index = 2;
+            }
+            final String className = section.get(index);
+            final List<String> execparams = section.subList(index + 1, section.size());
+            try {
+                host.launch(className, classpath, execparams.toArray(new String[execparams.size()]));
+            } catch (final Exception ex) {
+                logger.error("Unable to launch " + className + ": " + ex);
+            }
+        }
+
+        if (host.getResourceCount() == 0) {
+            logger.error("No resources launched");
+            System.exit(-1);
+        }
+        host.run();
+        logger.debug("Goodbye!");
+    }
+
+    private final ORB orb;
+    private final POA poa;
+    private final List<Resource> resources = new ArrayList<Resource>();
+}
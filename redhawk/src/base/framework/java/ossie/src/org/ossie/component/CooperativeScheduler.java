@@ -0,0 +1,435 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the service functions of many threaded components on a fixed pool of
+ * worker threads, instead of each component having its own processing
+ * thread.
+ * <p>
+ * Components are scheduled cooperatively, one process() call at a time:
+ * <ul>
+ * <li>NORMAL puts the component at the back of the run queue.</li>
+ * <li>NOOP parks it until one of its ports signals data, or until its
+ * thread delay expires.</li>
+ * <li>FINISH removes it until it is started again.</li>
+ * </ul>
+ * Components that have been signaled by their ports run ahead of components
+ * that are merely busy, but busy components are still given a turn
+ * regularly so that they cannot be starved. The CPU time used by each
+ * component's service function is tracked in its {@link Task}.
+ * <p>
+ * Service functions run on a shared thread, so they should return promptly
+ * rather than block waiting for data.
+ */
+public class CooperativeScheduler {
+
+    /**
+     * System property giving the number of workers in the default scheduler
+     */
+    public static final String WORKERS_PROPERTY = "ossie.scheduler.workers";
+
+    // How many signaled components may run in a row while busy components
+    // are waiting
+    private static final int READY_BURST = 4;
+
+    private static final Logger logger = Logger.getLogger(CooperativeScheduler.class.getName());
+
+    private static CooperativeScheduler defaultScheduler = null;
+
+    /**
+     * Gets the scheduler shared by the JVM, creating it if necessary. The
+     * number of workers defaults to the number of processors.
+     */
+    public static synchronized CooperativeScheduler getDefault ()
+    {
+        if (defaultScheduler == null) {
+            final int workers = Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+            defaultScheduler = new CooperativeScheduler("ossie-scheduler", Math.max(workers, 1));
+        }
+        return defaultScheduler;
+    }
+
+    private enum State {
+        STOPPED,
+        QUEUED,
+        RUNNING,
+        WAITING,
+        FINISHED
+    }
+
+    /**
+     * A component registered with the scheduler.
+     */
+    public static final class Task {
+        Task (ThreadedComponent component, String name)
+        {
+            this.component = component;
+            this.name = name;
+        }
+
+        public String getName ()
+        {
+            return this.name;
+        }
+
+        /**
+         * @return the total CPU time used by the service function, in
+         *         seconds (elapsed time if the JVM cannot measure per-thread
+         *         CPU time)
+         */
+        public double getCpuTime ()
+        {
+            return this.cpuTime * 1e-9;
+        }
+
+        /**
+         * @return the number of times the service function has been called
+         */
+        public long getRunCount ()
+        {
+            return this.runCount;
+        }
+
+        private final ThreadedComponent component;
+        private final String name;
+        private State state = State.STOPPED;
+        private boolean signaled = false;
+        private long deadline = 0;
+        private volatile long cpuTime = 0;
+        private volatile long runCount = 0;
+    }
+
+    private static final Comparator<Task> DEADLINE_ORDER = new Comparator<Task>() {
+        public int compare (Task first, Task second)
+        {
+            final long difference = first.deadline - second.deadline;
+            return (difference < 0) ? -1 : ((difference == 0) ? 0 : 1);
+        }
+    };
+
+    /**
+     * Creates a scheduler and starts its workers.
+     *
+     * @param name     prefix for the worker thread names
+     * @param workers  number of worker threads
+     */
+    public CooperativeScheduler (String name, int workers)
+    {
+        if (workers < 1) {
+            throw new IllegalArgumentException("worker count must be positive");
+        }
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.cpuBean = bean.isCurrentThreadCpuTimeSupported() ? bean : null;
+        this.workers = new Thread[workers];
+        for (int index = 0; index < workers; ++index) {
+            this.workers[index] = new Thread(new Runnable() {
+                public void run ()
+                {
+                    CooperativeScheduler.this.work();
+                }
+            }, name + "-" + index);
+            this.workers[index].setDaemon(true);
+            this.workers[index].start();
+        }
+    }
+
+    public int getWorkerCount ()
+    {
+        return this.workers.length;
+    }
+
+    /**
+     * Adds a component to the scheduler. It does not run until started.
+     */
+    public synchronized Task register (ThreadedComponent component, String name)
+    {
+        final Task task = new Task(component, name);
+        this.tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Removes a component from the scheduler, stopping it first.
+     */
+    public void unregister (Task task)
+    {
+        this.stop(task);
+        synchronized (this) {
+            this.tasks.remove(task);
+        }
+    }
+
+    /**
+     * @return the registered tasks
+     */
+    public synchronized List<Task> getTasks ()
+    {
+        return Collections.unmodifiableList(new ArrayList<Task>(this.tasks));
+    }
+
+    /**
+     * Queues a task to run, if it is not already running.
+     */
+    public synchronized void start (Task task)
+    {
+        if (task.state == State.STOPPED || task.state == State.FINISHED) {
+            task.signaled = false;
+            this.enqueue(task, this.ready);
+        } else if (task.state == State.RUNNING) {
+            // Stop was called but the last call has not returned yet
+            task.signaled = true;
+        }
+        this.stopping.remove(task);
+    }
+
+    /**
+     * Stops a task, waiting up to a second for its current call to the
+     * service function to return.
+     */
+    public synchronized void stop (Task task)
+    {
+        switch (task.state) {
+        case QUEUED:
+            if (!this.ready.remove(task)) {
+                this.runnable.remove(task);
+            }
+            task.state = State.STOPPED;
+            break;
+        case WAITING:
+            this.timers.remove(task);
+            task.state = State.STOPPED;
+            break;
+        case RUNNING:
+            if (!this.stopping.contains(task)) {
+                this.stopping.add(task);
+            }
+            if (this.isWorker(Thread.currentThread())) {
+                // Called from a service function; it cannot wait for itself
+                // (or another task) to return
+                break;
+            }
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            long remaining = deadline - System.nanoTime();
+            while (task.state == State.RUNNING && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            if (task.state == State.RUNNING) {
+                logger.warn("Service function for " + task.name + " did not return within 1 second of stop");
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Signals that data has arrived for a task, running it as soon as
+     * possible if it is waiting.
+     */
+    public synchronized void signal (Task task)
+    {
+        if (task.state == State.WAITING) {
+            this.timers.remove(task);
+            this.enqueue(task, this.ready);
+        } else if (task.state == State.RUNNING) {
+            task.signaled = true;
+        }
+    }
+
+    /**
+     * Stops the workers. Registered tasks are not run again.
+     */
+    public void shutdown ()
+    {
+        synchronized (this) {
+            this.running = false;
+            this.notifyAll();
+        }
+        for (Thread worker : this.workers) {
+            try {
+                worker.join();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void enqueue (Task task, ArrayDeque<Task> queue)
+    {
+        task.state = State.QUEUED;
+        queue.addLast(task);
+        this.wakeWorker();
+    }
+
+    private void wakeWorker ()
+    {
+        // Threads in stop() also wait on this monitor, so if there are any,
+        // a single notify might not reach a worker
+        if (this.stopping.isEmpty()) {
+            this.notify();
+        } else {
+            this.notifyAll();
+        }
+    }
+
+    private boolean isWorker (Thread thread)
+    {
+        for (Thread worker : this.workers) {
+            if (worker == thread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void work ()
+    {
+        while (true) {
+            final Task task = this.next();
+            if (task == null) {
+                return;
+            }
+
+            final long start = this.now();
+            int state = ThreadedComponent.FINISH;
+            try {
+                state = task.component.process();
+            } catch (final RuntimeException ex) {
+                logger.error("Service function for " + task.name + " failed", ex);
+            }
+            task.cpuTime += this.now() - start;
+            task.runCount++;
+
+            this.complete(task, state);
+        }
+    }
+
+    // CPU time of the current thread, or elapsed time if not available
+    private long now ()
+    {
+        if (this.cpuBean != null) {
+            return this.cpuBean.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    // Waits for the next task to run, or returns null once shut down
+    private synchronized Task next ()
+    {
+        while (this.running) {
+            this.expireTimers();
+
+            Task task = null;
+            if (!this.ready.isEmpty() && (this.readyCount < READY_BURST || this.runnable.isEmpty())) {
+                task = this.ready.pollFirst();
+                this.readyCount++;
+            } else if (!this.runnable.isEmpty()) {
+                task = this.runnable.pollFirst();
+                this.readyCount = 0;
+            }
+            if (task != null) {
+                task.state = State.RUNNING;
+                task.signaled = false;
+                return task;
+            }
+
+            try {
+                final Task timer = this.timers.peek();
+                if (timer == null) {
+                    this.wait();
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(this, timer.deadline - System.nanoTime());
+                }
+            } catch (final InterruptedException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void expireTimers ()
+    {
+        final long now = System.nanoTime();
+        Task task;
+        while ((task = this.timers.peek()) != null && (task.deadline - now) <= 0) {
+            this.timers.poll();
+            this.enqueue(task, this.runnable);
+        }
+    }
+
+    private synchronized void complete (Task task, int state)
+    {
+        if (this.stopping.remove(task)) {
+            task.state = State.STOPPED;
+            this.notifyAll();
+            return;
+        }
+
+        if (state == ThreadedComponent.FINISH) {
+            task.state = State.FINISHED;
+        } else if (task.signaled) {
+            this.enqueue(task, this.ready);
+        } else if (state == ThreadedComponent.NOOP) {
+            final long delay = (long)(task.component.getThreadDelay() * 1e9);
+            if (delay <= 0) {
+                this.enqueue(task, this.runnable);
+            } else {
+                task.state = State.WAITING;
+                task.deadline = System.nanoTime() + delay;
+                this.timers.add(task);
+                // A worker may need to wait for an earlier deadline
+                this.wakeWorker();
+            }
+        } else {
+            this.enqueue(task, this.runnable);
+        }
+    }
+
+    private final Thread[] workers;
+    private final ThreadMXBean cpuBean;
+    private final List<Task> tasks = new ArrayList<Task>();
+    private final ArrayDeque<Task> ready = new ArrayDeque<Task>();
+    private final ArrayDeque<Task> runnable = new ArrayDeque<Task>();
+    private final PriorityQueue<Task> timers = new PriorityQueue<Task>(16, DEADLINE_ORDER);
+    private final List<Task> stopping = new ArrayList<Task>();
+    private int readyCount = 0;
+    private boolean running = true;
+}
@@ -0,0 +1,35 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+/**
+ * Interface for ports that can signal the arrival of data, so that a
+ * component's processing thread can wait for data instead of polling.
+ * <p>
+ * Ports that implement this interface are automatically connected to the
+ * processing thread when they are added to a ThreadedResource or
+ * ThreadedDevice.
+ */
+public interface DataNotifier {
+    void addDataListener (DataListener listener);
+
+    void removeDataListener (DataListener listener);
+}
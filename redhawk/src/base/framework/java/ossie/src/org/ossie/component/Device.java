@@ -42,6 +42,7 @@ import org.omg.PortableServer.Servant;
 import org.omg.PortableServer.POAManagerPackage.AdapterInactive;
 import org.omg.PortableServer.POAPackage.ServantNotActive;
 import org.omg.PortableServer.POAPackage.WrongPolicy;
+import org.ossie.properties.AnyComparator;
 import org.ossie.properties.AnyUtils;
 import org.ossie.properties.IProperty;
 import org.ossie.logging.logging;
@@ -691,43 +692,18 @@ public abstract class Device extends Resource implements DeviceOperations {
     // returns SECOND_BIGGER is the second argument is bigger
     // and BOTH_EQUAL if they are equal
     public AnyComparisonType compareAnys (Any first, Any second) {
-        TypeCode tc1 = first.type ();
-
-        switch (tc1.kind().value()) {
-        case TCKind._tk_ulong: {
-            long frst, scnd;
-            frst = (Long) AnyUtils.convertAny(first);
-            scnd = (Long) AnyUtils.convertAny(second);
-            if (frst > scnd) {
-                return AnyComparisonType.FIRST_BIGGER;
-            } else if (frst == scnd) {
-                return AnyComparisonType.BOTH_EQUAL;
-            } else {
-                return AnyComparisonType.SECOND_BIGGER;
-            }
-        }
-
-        case TCKind._tk_long: {
-            int frst, scnd;
-            frst = (Integer) AnyUtils.convertAny(first);
-            scnd = (Integer) AnyUtils.convertAny(second);
-            if (frst > scnd) {
-                return AnyComparisonType.FIRST_BIGGER;
-            } else if (frst == scnd) {
-                return AnyComparisonType.BOTH_EQUAL;
-            } else {
-                return AnyComparisonType.SECOND_BIGGER;
-            }
-        }
-
+        switch (first.type().kind().value()) {
+        case TCKind._tk_ulong:
+        case TCKind._tk_long:
         case TCKind._tk_short: {
-            short frst, scnd;
-            frst = (Short) AnyUtils.convertAny(first);
-            scnd = (Short) AnyUtils.convertAny(second);
-
-            if (frst > scnd) {
+            if (first.type().kind() != second.type().kind()) {
+                throw new ClassCastException("Cannot compare " + first.type().kind().value()
+                                             + " with " + second.type().kind().value());
+            }
+            final int order = AnyComparator.order(first, second);
+            if (order > 0) {
                 return AnyComparisonType.FIRST_BIGGER;
-            } else if (frst == scnd) {
+            } else if (order == 0) {
                 return AnyComparisonType.BOTH_EQUAL;
             } else {
                 return AnyComparisonType.SECOND_BIGGER;
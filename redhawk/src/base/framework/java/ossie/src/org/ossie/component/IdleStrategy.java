@@ -0,0 +1,108 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+/**
+ * Determines what a threaded component's processing thread does when its
+ * service function returns NOOP.
+ * <p>
+ * The strategies trade CPU usage for latency: SPIN reacts fastest but keeps
+ * a core busy, while SLEEP uses no CPU but may add up to the thread delay
+ * when there is no port to signal the arrival of data. The thread delay is
+ * the longest time any strategy will wait.
+ */
+public enum IdleStrategy {
+    /**
+     * Waits for data to arrive on an input port, up to the thread delay.
+     * This is the default.
+     */
+    SLEEP {
+        void idle (ProcessThread thread, int count) throws InterruptedException
+        {
+            thread.awaitData(thread.getDelayNanos());
+        }
+    },
+
+    /**
+     * Calls the service function again immediately.
+     */
+    SPIN {
+        void idle (ProcessThread thread, int count)
+        {
+        }
+    },
+
+    /**
+     * Yields the processor to other threads before calling the service
+     * function again.
+     */
+    YIELD {
+        void idle (ProcessThread thread, int count)
+        {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Spins for a number of iterations, then yields.
+     */
+    SPIN_YIELD {
+        void idle (ProcessThread thread, int count)
+        {
+            if (count > SPIN_LIMIT) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spins, then yields, then waits for data for progressively longer
+     * periods, doubling up to the thread delay.
+     */
+    BACKOFF {
+        void idle (ProcessThread thread, int count) throws InterruptedException
+        {
+            if (count <= SPIN_LIMIT) {
+                return;
+            } else if (count <= SPIN_LIMIT + YIELD_LIMIT) {
+                Thread.yield();
+                return;
+            }
+            final int shift = Math.min(count - SPIN_LIMIT - YIELD_LIMIT - 1, 30);
+            final long timeout = Math.min(MIN_BACKOFF << shift, thread.getDelayNanos());
+            thread.awaitData(timeout);
+        }
+    };
+
+    // Consecutive NOOPs to spin for before yielding
+    private static final int SPIN_LIMIT = 100;
+
+    // Consecutive NOOPs to yield for before waiting, with BACKOFF
+    private static final int YIELD_LIMIT = 100;
+
+    // Shortest wait with BACKOFF, in nanoseconds
+    private static final long MIN_BACKOFF = 10000;
+
+    /**
+     * @param count  number of consecutive NOOPs, starting at 1
+     */
+    abstract void idle (ProcessThread thread, int count) throws InterruptedException;
+}
@@ -20,7 +20,7 @@
 
 package org.ossie.component;
 
-class ProcessThread implements Runnable {
+class ProcessThread implements Runnable, DataListener {
 
     public ProcessThread (ThreadedComponent target)
     {
@@ -29,20 +29,80 @@ class ProcessThread implements Runnable {
 
     public void run ()
     {
+        // Busy and idle time are accumulated from the last call to run();
+        // time spent in a service function that returns NOOP counts as idle
+        this.busyTime = 0;
+        this.idleTime = 0;
+        long mark = System.nanoTime();
+        int noops = 0;
         while (this.isRunning()) {
+            // Clear the signal before processing, so that data that arrives
+            // while the service function is running is not missed
+            this.signaled = false;
             int state = this.target.process();
+            long now = System.nanoTime();
             if (state == ThreadedComponent.FINISH) {
                 return;
             } else if (state == ThreadedComponent.NOOP) {
                 try {
-                    Thread.sleep(this.delay);
+                    this.strategy.idle(this, ++noops);
                 } catch (final InterruptedException ex) {
                     return;
                 }
+                final long end = System.nanoTime();
+                this.idleTime += end - mark;
+                mark = end;
+            } else {
+                noops = 0;
+                this.busyTime += now - mark;
+                mark = now;
             }
         }
     }
 
+    /**
+     * Wakes the thread if it is waiting after a NOOP. Called by ports when
+     * data arrives.
+     */
+    public void dataArrived ()
+    {
+        this.signaled = true;
+        // Only take the lock if the thread is (or is about to be) waiting;
+        // because both flags are volatile, either the waiting thread sees
+        // the signal or this thread sees that it is waiting
+        if (this.waiting) {
+            synchronized (this) {
+                this.notify();
+            }
+        }
+    }
+
+    /**
+     * @return true if the thread is waiting for data after a NOOP
+     */
+    boolean isWaiting ()
+    {
+        return this.waiting;
+    }
+
+    // Waits up to the given time for data to arrive, returning early if any
+    // port has signaled since the last call to the service function
+    synchronized void awaitData (long nanos) throws InterruptedException
+    {
+        if (nanos <= 0) {
+            Thread.yield();
+            return;
+        }
+        this.waiting = true;
+        try {
+            if (!this.signaled && this.running) {
+                this.wait(nanos / 1000000, (int)(nanos % 1000000));
+            }
+        } finally {
+            this.waiting = false;
+        }
+    }
+
     public void start ()
     {
         this.running = true;
@@ -51,6 +111,7 @@ class ProcessThread implements Runnable {
     public synchronized void stop ()
     {
         this.running = false;
+        this.notify();
     }
 
     public synchronized boolean isRunning ()
@@ -68,7 +129,44 @@ class ProcessThread implements Runnable {
         this.delay = (long)(delay*1000);
     }
 
+    long getDelayNanos ()
+    {
+        return this.delay * 1000000;
+    }
+
+    public IdleStrategy getIdleStrategy ()
+    {
+        return this.strategy;
+    }
+
+    public void setIdleStrategy (IdleStrategy strategy)
+    {
+        if (strategy == null) {
+            throw new NullPointerException("strategy");
+        }
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return fraction of time, from 0 to 1, that the thread has spent idle
+     *         since it started
+     */
+    public float getIdleFraction ()
+    {
+        final long idle = this.idleTime;
+        final long total = idle + this.busyTime;
+        if (total == 0) {
+            return 0.0f;
+        }
+        return idle / (float)total;
+    }
+
     private ThreadedComponent target;
     private boolean running = true;
     private long delay = 125;
+    private volatile boolean signaled = false;
+    private volatile boolean waiting = false;
+    private volatile IdleStrategy strategy = IdleStrategy.SLEEP;
+    private volatile long busyTime = 0;
+    private volatile long idleTime = 0;
 }
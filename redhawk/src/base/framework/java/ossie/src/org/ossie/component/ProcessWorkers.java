@@ -0,0 +1,333 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The processing threads of a threaded component.
+ * <p>
+ * By default there is a single thread, which calls the component's
+ * process() method. With more than one worker, each worker calls the
+ * component's partitioned service function with its own index. The first
+ * worker runs on the thread that calls run(); the others are started and
+ * joined by it, so run() returns once every worker has finished. FINISH
+ * from any worker ends processing for the component: the other workers are
+ * stopped once their current call returns. When a port receives data, one
+ * worker is woken, preferably one that is waiting.
+ * <p>
+ * Alternatively, a single-worker component may be run by a shared
+ * CooperativeScheduler, in which case run() returns immediately and
+ * start() and stop() add and remove the component from the scheduler's run
+ * queue.
+ */
+final class ProcessWorkers implements DataListener {
+
+    /**
+     * Partitioned service function, called by each worker with its index.
+     */
+    interface WorkerFunction {
+        int process (int workerIndex);
+    }
+
+    public ProcessWorkers (ThreadedComponent component, WorkerFunction function)
+    {
+        this.function = function;
+        this.component = component;
+        this.main = new ProcessThread(component);
+        this.threads = new ProcessThread[] { this.main };
+    }
+
+    public void run ()
+    {
+        if (this.task != null) {
+            // The scheduler's workers call the service function
+            return;
+        }
+        final ProcessThread[] workers;
+        synchronized (this) {
+            workers = this.threads;
+            this.active = true;
+        }
+        try {
+            if (workers.length == 1) {
+                workers[0].run();
+            } else {
+                this.runWorkers(workers);
+            }
+        } finally {
+            synchronized (this) {
+                this.active = false;
+            }
+        }
+    }
+
+    private void runWorkers (final ProcessThread[] workers)
+    {
+        final String name = Thread.currentThread().getName();
+        final Thread[] helpers = new Thread[workers.length - 1];
+        for (int index = 1; index < workers.length; ++index) {
+            final int worker = index;
+            helpers[index-1] = new Thread(new Runnable() {
+                public void run ()
+                {
+                    runWorker(workers, worker);
+                }
+            }, name + "-worker-" + index);
+            helpers[index-1].setDaemon(true);
+            helpers[index-1].start();
+        }
+
+        runWorker(workers, 0);
+
+        // Wait for the other workers to finish; if this thread is
+        // interrupted (e.g., by Resource.stop()), pass it on
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (final InterruptedException ex) {
+                for (Thread other : helpers) {
+                    other.interrupt();
+                }
+                return;
+            }
+        }
+    }
+
+    // Once any worker returns, whether it finished or failed, stops the
+    // others so that the join in runWorkers() completes
+    private static void runWorker (ProcessThread[] workers, int index)
+    {
+        try {
+            workers[index].run();
+        } finally {
+            for (ProcessThread worker : workers) {
+                worker.stop();
+            }
+        }
+    }
+
+    public synchronized void start ()
+    {
+        if (this.task != null) {
+            this.scheduler.start(this.task);
+            return;
+        }
+        for (ProcessThread thread : this.threads) {
+            thread.start();
+        }
+    }
+
+    public void stop ()
+    {
+        final CooperativeScheduler.Task scheduled;
+        synchronized (this) {
+            scheduled = this.task;
+            for (ProcessThread thread : this.threads) {
+                thread.stop();
+            }
+        }
+        // Waits for the current call to return, so do not hold the lock
+        if (scheduled != null) {
+            this.scheduler.stop(scheduled);
+        }
+    }
+
+    public CooperativeScheduler getScheduler ()
+    {
+        return this.scheduler;
+    }
+
+    public CooperativeScheduler.Task getTask ()
+    {
+        return this.task;
+    }
+
+    /**
+     * Moves processing to a shared scheduler, or back to a dedicated thread
+     * if the scheduler is null.
+     */
+    public synchronized void setScheduler (CooperativeScheduler scheduler, String name)
+    {
+        if (this.active) {
+            throw new IllegalStateException("cannot change scheduler while processing");
+        }
+        if (scheduler != null && this.threads.length > 1) {
+            throw new IllegalStateException("cannot use a scheduler with multiple workers");
+        }
+        if (this.task != null) {
+            this.scheduler.unregister(this.task);
+            this.task = null;
+        }
+        this.scheduler = scheduler;
+        if (scheduler != null) {
+            this.task = scheduler.register(this.component, name);
+        }
+    }
+
+    public int getCount ()
+    {
+        return this.threads.length;
+    }
+
+    public synchronized void setCount (int count)
+    {
+        if (count < 1) {
+            throw new IllegalArgumentException("worker count must be positive");
+        }
+        if (this.active) {
+            throw new IllegalStateException("cannot change worker count while processing");
+        }
+        if (count > 1 && this.task != null) {
+            throw new IllegalStateException("cannot use multiple workers with a scheduler");
+        }
+        if (count == this.threads.length) {
+            return;
+        }
+        final ProcessThread[] workers = new ProcessThread[count];
+        if (count == 1) {
+            workers[0] = this.main;
+        } else {
+            for (int index = 0; index < count; ++index) {
+                workers[index] = new ProcessThread(new Worker(index));
+                workers[index].setDelay(this.main.getDelay());
+                workers[index].setIdleStrategy(this.main.getIdleStrategy());
+            }
+        }
+        this.threads = workers;
+    }
+
+    /**
+     * @return the index of the worker responsible for the given stream
+     */
+    public int getWorkerForStream (String streamID)
+    {
+        return StreamSharder.shard(streamID, this.threads.length);
+    }
+
+    /**
+     * Wakes a single worker, if it is waiting for data.
+     */
+    public void wake (int workerIndex)
+    {
+        final ProcessThread[] workers = this.threads;
+        if (workerIndex < workers.length) {
+            workers[workerIndex].dataArrived();
+        }
+    }
+
+    public void dataArrived ()
+    {
+        final CooperativeScheduler.Task scheduled = this.task;
+        if (scheduled != null) {
+            this.scheduler.signal(scheduled);
+            return;
+        }
+        final ProcessThread[] workers = this.threads;
+        if (workers.length == 1) {
+            workers[0].dataArrived();
+            return;
+        }
+        // Wake a single worker rather than have them all race for the same
+        // data; a StreamSharder wakes the stream's owner itself
+        final int first = (this.nextWake.getAndIncrement() & Integer.MAX_VALUE) % workers.length;
+        for (int offset = 0; offset < workers.length; ++offset) {
+            final ProcessThread worker = workers[(first + offset) % workers.length];
+            if (worker.isWaiting()) {
+                worker.dataArrived();
+                return;
+            }
+        }
+        workers[first].dataArrived();
+    }
+
+    public float getDelay ()
+    {
+        return this.main.getDelay();
+    }
+
+    public synchronized void setDelay (float delay)
+    {
+        this.main.setDelay(delay);
+        for (ProcessThread thread : this.threads) {
+            thread.setDelay(delay);
+        }
+    }
+
+    public IdleStrategy getIdleStrategy ()
+    {
+        return this.main.getIdleStrategy();
+    }
+
+    public synchronized void setIdleStrategy (IdleStrategy strategy)
+    {
+        this.main.setIdleStrategy(strategy);
+        for (ProcessThread thread : this.threads) {
+            thread.setIdleStrategy(strategy);
+        }
+    }
+
+    /**
+     * @return the average fraction of time the workers have been idle
+     */
+    public float getIdleFraction ()
+    {
+        final ProcessThread[] workers = this.threads;
+        float total = 0.0f;
+        for (ProcessThread thread : workers) {
+            total += thread.getIdleFraction();
+        }
+        return total / workers.length;
+    }
+
+    private class Worker implements ThreadedComponent {
+        Worker (int index)
+        {
+            this.index = index;
+        }
+
+        public int process ()
+        {
+            return ProcessWorkers.this.function.process(this.index);
+        }
+
+        public float getThreadDelay ()
+        {
+            return ProcessWorkers.this.getDelay();
+        }
+
+        public void setThreadDelay (float delay)
+        {
+            ProcessWorkers.this.setDelay(delay);
+        }
+
+        private final int index;
+    }
+
+    private final WorkerFunction function;
+    private final ThreadedComponent component;
+    private final ProcessThread main;
+    private volatile CooperativeScheduler scheduler = null;
+    private volatile CooperativeScheduler.Task task = null;
+    private volatile ProcessThread[] threads;
+    private boolean active = false;
+    private final AtomicInteger nextWake = new AtomicInteger();
+}
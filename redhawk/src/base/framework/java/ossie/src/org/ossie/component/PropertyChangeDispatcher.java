@@ -0,0 +1,301 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.log4j.Logger;
+
+import org.ossie.properties.IProperty;
+
+import CF.DataType;
+
+/**
+ * Schedules and delivers property change reports for a resource.
+ * <p>
+ * Registrations are kept in a timer wheel, so that each pass only visits
+ * the registrations whose report interval has expired. Changed values are
+ * snapshotted under the resource's configure lock, so that a report never
+ * holds part of a configure batch, and queued per listener;
+ * each listener has at most one delivery in progress, on the executor, and
+ * changes that arrive while it is busy are coalesced so that only the
+ * latest value of each property is sent. A slow or unreachable listener
+ * therefore only delays its own reports.
+ * <p>
+ * The executor is created with the first registration. If shared threads
+ * are enabled it is the shared carrier pool; otherwise each dispatcher
+ * has its own pool, whose threads exit when idle.
+ */
+class PropertyChangeDispatcher {
+
+    // Timer wheel resolution, in milliseconds, and number of slots
+    static final long TICK_MS = 10;
+    static final int WHEEL_SIZE = 256;
+
+    private static final Logger logger = Logger.getLogger(PropertyChangeDispatcher.class.getName());
+
+    /**
+     * Scheduling and delivery state for one registration.
+     */
+    private class Entry implements Runnable {
+        Entry (PropertyChangeRec rec)
+        {
+            this.rec = rec;
+        }
+
+        // Delivers queued changes until the queue is empty
+        public void run ()
+        {
+            while (true) {
+                final DataType[] changes;
+                synchronized (this) {
+                    if (this.pending.isEmpty() || this.cancelled) {
+                        this.pending.clear();
+                        this.delivering = false;
+                        return;
+                    }
+                    changes = this.pending.values().toArray(new DataType[this.pending.size()]);
+                    this.pending.clear();
+                }
+                logger.debug("Notify PropertyChangeListener ...size/reg :" + changes.length + "/" + this.rec.regId);
+                int status;
+                try {
+                    status = this.rec.pcl.notify(this.rec, changes);
+                } catch (final RuntimeException ex) {
+                    status = -1;
+                }
+                if (status != 0) {
+                    logger.error("Publishing changes to PropertyChangeListener FAILED, reg_id:" + this.rec.regId);
+                }
+            }
+        }
+
+        final PropertyChangeRec rec;
+        long deadline;
+        boolean cancelled = false;
+
+        // Pending changes by property id, guarded by this entry
+        final Map<String, DataType> pending = new LinkedHashMap<String, DataType>();
+        boolean delivering = false;
+    }
+
+    PropertyChangeDispatcher (Hashtable<String, IProperty> propSet, Object configureLock)
+    {
+        this.propSet = propSet;
+        this.configureLock = configureLock;
+        for (int slot = 0; slot < WHEEL_SIZE; ++slot) {
+            this.wheel.add(new ArrayList<Entry>());
+        }
+        this.origin = System.nanoTime();
+        this.currentTick = 0;
+    }
+
+    /**
+     * Adds a registration, with its first report due after its interval.
+     */
+    synchronized void add (PropertyChangeRec rec)
+    {
+        if (this.executor == null) {
+            if (SharedThreads.isEnabled()) {
+                this.executor = SharedThreads.getCarrierPool();
+                this.ownsExecutor = false;
+            } else {
+                this.executor = Executors.newCachedThreadPool(new SharedThreads.DaemonFactory("ossie-propchange-"));
+                this.ownsExecutor = true;
+            }
+        }
+        final Entry entry = new Entry(rec);
+        this.entries.put(rec.regId, entry);
+        this.schedule(entry, currentTick() + ticks(rec.reportInterval));
+    }
+
+    /**
+     * Removes a registration, discarding any undelivered changes.
+     */
+    void remove (String regId)
+    {
+        final Entry entry;
+        synchronized (this) {
+            entry = this.entries.remove(regId);
+            if (entry == null) {
+                return;
+            }
+            this.wheel.get(slot(entry.deadline)).remove(entry);
+        }
+        synchronized (entry) {
+            entry.cancelled = true;
+        }
+    }
+
+    /**
+     * Shuts down this dispatcher's own executor, if it has one. A later
+     * registration creates a new executor.
+     */
+    synchronized void shutdown ()
+    {
+        if (this.ownsExecutor) {
+            this.executor.shutdown();
+        }
+        this.executor = null;
+        this.ownsExecutor = false;
+    }
+
+    /**
+     * Reports changes for every registration whose interval has expired
+     * and re-arms them.
+     *
+     * @return the time until the next report is due, in milliseconds
+     */
+    long dispatch ()
+    {
+        final List<Entry> due = new ArrayList<Entry>();
+        final long now = currentTick();
+        synchronized (this) {
+            // Visit every slot passed since the last call, but at most one
+            // full turn of the wheel
+            final long first = Math.max(this.currentTick + 1, now - WHEEL_SIZE + 1);
+            for (long tick = first; tick <= now; ++tick) {
+                final List<Entry> slot = this.wheel.get(slot(tick));
+                for (int index = slot.size() - 1; index >= 0; --index) {
+                    final Entry entry = slot.get(index);
+                    if (entry.deadline <= now) {
+                        slot.remove(index);
+                        due.add(entry);
+                    }
+                }
+            }
+            this.currentTick = now;
+            for (Entry entry : due) {
+                this.schedule(entry, now + ticks(entry.rec.reportInterval));
+            }
+        }
+
+        for (Entry entry : due) {
+            this.report(entry);
+        }
+
+        return this.nextDeadline(now) * TICK_MS;
+    }
+
+    // Snapshots the changed properties of a registration and queues them
+    // for delivery
+    private void report (Entry entry)
+    {
+        final List<DataType> changes = new ArrayList<DataType>();
+        synchronized (this.configureLock) {
+            for (Map.Entry<String, PCL_Callback> iter : entry.rec.props.entrySet()) {
+                // Clear the change flag before reading the value, so that a
+                // change made in between is reported next time
+                if (iter.getValue().takeChanged()) {
+                    final IProperty prop = this.propSet.get(iter.getKey());
+                    if (prop != null) {
+                        changes.add(new DataType(iter.getKey(), prop.toAny()));
+                    }
+                }
+            }
+        }
+        if (changes.isEmpty() || entry.rec.pcl == null) {
+            return;
+        }
+
+        synchronized (entry) {
+            if (entry.cancelled) {
+                return;
+            }
+            for (DataType change : changes) {
+                // Replace any undelivered value, keeping its position
+                entry.pending.put(change.id, change);
+            }
+            if (entry.delivering) {
+                return;
+            }
+            entry.delivering = true;
+        }
+        final ExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+        }
+        try {
+            if (executor == null) {
+                throw new RejectedExecutionException();
+            }
+            executor.execute(entry);
+        } catch (final RejectedExecutionException ex) {
+            // The dispatcher was shut down; drop the changes
+            synchronized (entry) {
+                entry.pending.clear();
+                entry.delivering = false;
+            }
+        }
+    }
+
+    // Ticks until the next scheduled report, or one full turn of the wheel
+    // if none are due before then
+    private synchronized long nextDeadline (long now)
+    {
+        for (long tick = now + 1; tick < now + WHEEL_SIZE; ++tick) {
+            for (Entry entry : this.wheel.get(slot(tick))) {
+                if (entry.deadline <= tick) {
+                    return tick - now;
+                }
+            }
+        }
+        return WHEEL_SIZE;
+    }
+
+    private void schedule (Entry entry, long deadline)
+    {
+        entry.deadline = deadline;
+        this.wheel.get(slot(deadline)).add(entry);
+    }
+
+    private static int slot (long tick)
+    {
+        return (int) (tick % WHEEL_SIZE);
+    }
+
+    private static long ticks (int intervalMs)
+    {
+        return Math.max(1, (intervalMs + TICK_MS - 1) / TICK_MS);
+    }
+
+    // Ticks since this dispatcher was created
+    private long currentTick ()
+    {
+        return (System.nanoTime() - this.origin) / (TICK_MS * 1000000);
+    }
+
+    private final Hashtable<String, IProperty> propSet;
+    private final Object configureLock;
+    private ExecutorService executor = null;
+    private boolean ownsExecutor = false;
+    private final long origin;
+    private final List<List<Entry>> wheel = new ArrayList<List<Entry>>(WHEEL_SIZE);
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    private long currentTick;
+}
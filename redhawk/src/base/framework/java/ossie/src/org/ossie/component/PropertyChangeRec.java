@@ -53,7 +53,7 @@ import CF.PropertyChangeListenerPackage.PropertyChangeEventHelper;
 
 class PCL_Callback implements PropertyListener<Object> {
 
-    public boolean    isChanged;
+    public volatile boolean    isChanged;
 
     public PCL_Callback() { isChanged=false; };
 
@@ -61,7 +61,16 @@ class PCL_Callback implements PropertyListener<Object> {
 
     public boolean isSet() { return isChanged; };
 
-    public void valueChanged(Object a,Object b ) { 
+    /**
+     * Clears the change indicator, returning whether it was set.
+     */
+    public synchronized boolean takeChanged() {
+        final boolean changed = isChanged;
+        isChanged = false;
+        return changed;
+    };
+
+    public synchronized void valueChanged(Object a,Object b ) { 
         Logger.getLogger("PCL_CALLBACK").trace("....Value Changed....");
         isChanged=true;
     };
@@ -29,12 +29,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.io.FileOutputStream;
 import java.io.File;
 import java.util.UUID;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 
 import org.apache.log4j.BasicConfigurator;
@@ -67,7 +72,9 @@ import org.omg.PortableServer.POAPackage.ServantAlreadyActive;
 import org.omg.PortableServer.POAPackage.ServantNotActive;
 import org.omg.PortableServer.POAPackage.WrongPolicy;
 import org.ossie.events.PropertyEventSupplier;
+import org.ossie.properties.ConfigureListener;
 import org.ossie.properties.IProperty;
+import org.ossie.properties.PropertyChange;
 import org.ossie.properties.PropertyListener;
 import org.ossie.properties.AnyUtils;
 import org.ossie.properties.StructProperty;
@@ -143,6 +150,89 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
             this._processThread.stop();
         }
 
+        /**
+         * Starts monitoring, either on a dedicated thread or, if shared
+         * threads are enabled, as a task on the shared scheduler that
+         * re-schedules itself after each pass.
+         */
+        public synchronized void startMonitoring () {
+            if ( this._monitoring ) {
+                return;
+            }
+            this._monitoring = true;
+            if ( SharedThreads.isEnabled() ) {
+                this._future = SharedThreads.getScheduler().schedule( this._task, 0, TimeUnit.MILLISECONDS );
+            } else {
+                this.start();
+                _propChangeThread = new Thread( this );
+                _propChangeThread.start();
+            }
+        }
+
+        public void stopMonitoring () {
+            synchronized (this) {
+                this._monitoring = false;
+                if ( this._future != null ) {
+                    this._future.cancel( false );
+                    this._future = null;
+                    return;
+                }
+            }
+            this.stop();
+            try {
+                if ( _propChangeThread != null ) {
+                    _propChangeThread.join();
+                }
+            }
+            catch( InterruptedException ex ) {
+            }
+        }
+
+        public synchronized boolean isMonitoring () {
+            return this._monitoring;
+        }
+
+        /**
+         * Runs the next pass immediately instead of waiting out the current
+         * delay.
+         */
+        public void wake () {
+            synchronized (this) {
+                if ( this._future != null ) {
+                    if ( this._future.cancel( false ) ) {
+                        this._future = SharedThreads.getScheduler().schedule( this._task, 0, TimeUnit.MILLISECONDS );
+                    }
+                    return;
+                }
+            }
+            this._processThread.dataArrived();
+        }
+
+        private final Runnable _task = new Runnable() {
+            public void run () {
+                int state = ThreadedComponent.NOOP;
+                try {
+                    state = process();
+                } catch ( RuntimeException ex ) {
+                    logger.error( "Property change monitoring failed", ex );
+                }
+                synchronized (PropertyChangeProcessor.this) {
+                    if ( !_monitoring || state == ThreadedComponent.FINISH ) {
+                        _future = null;
+                        return;
+                    }
+                    long delay = 0;
+                    if ( state == ThreadedComponent.NOOP ) {
+                        delay = (long)(getThreadDelay() * 1000);
+                    }
+                    _future = SharedThreads.getScheduler().schedule( this, delay, TimeUnit.MILLISECONDS );
+                }
+            }
+        };
+
+        private boolean _monitoring = false;
+        private ScheduledFuture<?> _future = null;
+
         public int process () {
             if ( rsc != null ) {
                 return rsc._propertyChangeServiceFunction();
@@ -210,6 +300,11 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
     protected Hashtable< String, PropertyChangeRec >   _propChangeRegistry;
     protected PropertyChangeProcessor                  _propChangeProcessor;
     protected Thread                                   _propChangeThread;
+    private PropertyChangeDispatcher                   _propChangeDispatcher;
+
+    private final List<ConfigureListener> _configureListeners = new CopyOnWriteArrayList<ConfigureListener>();
+    private final Object _configureLock = new Object();
+    private volatile boolean _atomicConfigure = false;
 
     /**
      * Constructor intended to be used by start_component.
@@ -232,6 +327,7 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
 
         this._propChangeRegistry = new Hashtable< String, PropertyChangeRec >();
         this._propChangeProcessor = new PropertyChangeProcessor(this);
+        this._propChangeDispatcher = new PropertyChangeDispatcher(this.propSet, this._configureLock);
     }
     
     public void addProperty(IProperty prop) {
@@ -385,6 +481,7 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
         logger.trace("releaseObject()");
         try {
             this.stopPropertyChangeMonitor();
+            this._propChangeDispatcher.shutdown();
             this.stop();
         } catch (StopError e1) {
             logger.error("Failed to stop during release", e1);
@@ -472,12 +569,9 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
             }
 
             try {
-                // See if the value has changed
-                if (AnyUtils.compareAnys(prop.toAny(), dt.value, "ne")) {
-                    // Update the value on the property, which may trigger a
-                    // callback.
-                    prop.configureNoCallbacks(dt.value);
-                }
+                // Update the value on the property if it has changed,
+                // without triggering callbacks
+                prop.configure(dt.value, false);
                 logger.trace("Construct property: " + prop);
             } catch (Throwable t) {
                 logger.error("Unable to construct property " + dt.id + ": " + t.getMessage());
@@ -549,6 +643,40 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
         return ports.toArray(new PortInfoType[0]);
     }
 
+    /**
+     * Registers a listener to be notified once per configure call with all
+     * of the property values that changed.
+     */
+    public void addConfigureListener(final ConfigureListener listener) {
+        this._configureListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with addConfigureListener.
+     */
+    public void removeConfigureListener(final ConfigureListener listener) {
+        this._configureListeners.remove(listener);
+    }
+
+    /**
+     * Sets whether configure rejects the entire request if any property is
+     * invalid, applying none of it.
+     * <p>
+     * This is off by default: valid properties are still applied and a
+     * PartialConfiguration is reported for the rest. That is the behavior
+     * the CF PropertySet interface describes for PartialConfiguration, and
+     * the one the C++ and Python frameworks implement, so existing
+     * components and their callers keep working unchanged. Components whose
+     * properties must only change together can opt in.
+     */
+    public void setAtomicConfigure(final boolean atomic) {
+        this._atomicConfigure = atomic;
+    }
+
+    public boolean isAtomicConfigure() {
+        return this._atomicConfigure;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -560,38 +688,80 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
             return;
         }
 
+        // Decode, validate and apply under one lock, so that concurrent
+        // configures and queries see each batch as a whole. Listeners and
+        // events run after the lock is released, so that a slow callback
+        // does not hold up queries. If a property appears more than once,
+        // the last value wins, in the position of its last occurrence.
         final ArrayList<DataType> invalidProperties = new ArrayList<DataType>();
-        for (final DataType dt : configProperties) {
-            // Look up the property and ensure it is configurable
-            final IProperty prop = this.propSet.get(dt.id);
-            if ((prop == null) || !prop.isConfigurable()) {
-                invalidProperties.add(dt);
-                continue;
-            }
+        final Map<String, PropertyChange> changes = new LinkedHashMap<String, PropertyChange>();
+        final Map<String, DataType> changedProperties = new HashMap<String, DataType>();
+        synchronized (this._configureLock) {
+            for (final DataType dt : configProperties) {
+                // Look up the property and ensure it is configurable
+                final IProperty prop = this.propSet.get(dt.id);
+                if ((prop == null) || !prop.isConfigurable()) {
+                    invalidProperties.add(dt);
+                    continue;
+                }
 
-            try {
-                Any value_before = prop.toAny();
-                // Update the value on the property, which may trigger a
-                // callback.
-                prop.configure(dt.value);
-                if (AnyUtils.compareAnys(value_before, prop.toAny(), "eq")) {
-                    logger.debug("Value has not changed on configure for property " + dt.id + ". Not triggering callback");
-                } else {
-                    // The property value changed.
-                    // Check to see if this property should issue property change
-                    // events and a port is registered.
-                    if (prop.isEventable() && (this.propertyChangePort != null)) {
-                        this.propertyChangePort.sendPropertyEvent(prop.getId());
+                try {
+                    final PropertyChange change = prop.prepare(dt.value);
+                    changes.remove(dt.id);
+                    if (change == null) {
+                        logger.debug("Value has not changed on configure for property " + dt.id + ". Not triggering callback");
+                    } else {
+                        changes.put(dt.id, change);
+                        changedProperties.put(dt.id, dt);
                     }
+                } catch (Throwable t) {
+                    logger.error("Unable to configure property " + dt.id + ": " + t.getMessage());
+                    invalidProperties.add(dt);
                 }
+            }
+
+            if (this._atomicConfigure && !invalidProperties.isEmpty()) {
+                throw new InvalidConfiguration("Error configuring component", invalidProperties.toArray(new DataType[0]));
+            }
 
-                logger.trace("Configured property: " + prop);
+            // Apply the whole batch before any listener sees it
+            for (final PropertyChange change : changes.values()) {
+                change.apply();
+                logger.trace("Configured property: " + change.getProperty());
+            }
+        }
+
+        // Per-property listeners are notified individually
+        for (final PropertyChange change : changes.values()) {
+            try {
+                change.notifyListeners();
             } catch (Throwable t) {
-                logger.error("Unable to configure property " + dt.id + ": " + t.getMessage());
-                invalidProperties.add(dt);
+                logger.error("Unable to configure property " + change.getId() + ": " + t.getMessage());
+                invalidProperties.add(changedProperties.get(change.getId()));
             }
         }
-        
+
+        if (!changes.isEmpty()) {
+            final PropertyChange[] batch = changes.values().toArray(new PropertyChange[changes.size()]);
+            for (final ConfigureListener listener : this._configureListeners) {
+                try {
+                    listener.propertiesConfigured(batch);
+                } catch (Throwable t) {
+                    logger.error("Configure listener failed: " + t.getMessage());
+                }
+            }
+        }
+
+        // Check to see if any changed property should issue property
+        // change events and a port is registered.
+        if (this.propertyChangePort != null) {
+            for (final PropertyChange change : changes.values()) {
+                if (change.getProperty().isEventable()) {
+                    this.propertyChangePort.sendPropertyEvent(change.getId());
+                }
+            }
+        }
+
         if (invalidProperties.size() == configProperties.length) {
             throw new InvalidConfiguration("Error configuring component", invalidProperties.toArray(new DataType[0]));
         } else if (invalidProperties.size() > 0) {
@@ -604,6 +774,14 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
      */
     public void query(final PropertiesHolder configProperties) throws UnknownProperties {
         logger.trace("query()");
+        // Hold the configure lock so that a query never sees part of a
+        // configure batch
+        synchronized (this._configureLock) {
+            this.queryProperties(configProperties);
+        }
+    }
+
+    private void queryProperties(final PropertiesHolder configProperties) throws UnknownProperties {
         // For queries of zero length, return all id/value pairs in propertySet
         if (configProperties.value.length == 0) {
             final ArrayList<DataType> props = new ArrayList<DataType>(this.propSet.size());
@@ -725,14 +903,16 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
             // Add the registry record to our map
             logger.debug("registerPropertyListener REGISTERING id-s/regid: " + pids.size() + "/" + prec.regId );
             this._propChangeRegistry.put( prec.regId, prec );
+            this._propChangeDispatcher.add( prec );
 	    reg_id = prec.regId;
         
-            // start monitoring thread if not started
-            if ( this._propChangeThread == null )  {
+            // start monitoring thread if not started; otherwise, wake it up
+            // in case the new registration is due before its next pass
+            if ( !this._propChangeProcessor.isMonitoring() )  {
                 logger.debug("registerPropertyListener - First registration ... starting monitoring thread ");
-                this._propChangeProcessor.start();
-                this._propChangeThread = new Thread( this._propChangeProcessor );
-                this._propChangeThread.start();
+                this._propChangeProcessor.startMonitoring();
+            } else {
+                this._propChangeProcessor.wake();
             }
         }
         logger.trace("registerPropertyListener - end");
@@ -760,6 +940,7 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
                 }
 
                 this._propChangeRegistry.remove(reg_id);
+                this._propChangeDispatcher.remove(reg_id);
                 logger.debug("unregisterPropertyListener - UNREGISTER  REG-ID:" + reg_id );
                 if ( this._propChangeRegistry.size() == 0 ) {
                     logger.debug("unregisterPropertyListener - No more registrants... stopping thread ");
@@ -777,14 +958,7 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
     public void stopPropertyChangeMonitor() {
 
         if ( _propChangeProcessor != null )  {
-            _propChangeProcessor.stop();
-            try {
-                if ( _propChangeThread != null ) {
-                    _propChangeThread.join();
-                }
-            }
-            catch( InterruptedException ex ) {
-            }
+            _propChangeProcessor.stopMonitoring();
          }
     }
 
@@ -793,73 +967,20 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
      * After the requested interval has expired report and changes since the last reporting cycle.
      * Notifications are sent out via EventChannel or implementors of PropertyChangeListern interface
      * is not told to release.
+     * <p>
+     * Changed values are collected under the configure lock, rather than the
+     * resource's lock, and are delivered to each listener asynchronously; see
+     * PropertyChangeDispatcher.
      * 
      * @return NOOP informs calling thread controller to delay before next cycle
      */
     protected int  _propertyChangeServiceFunction() {
 
         logger.trace("_propertyChangeServiceFunction ... start ");
-        long  delay=0;
-        synchronized(this) {
-            // for each registration record
-            for ( PropertyChangeRec prec : _propChangeRegistry.values() ) {
-
-                // get current time stamp.... and duration since last check
-                long now = System.currentTimeMillis();
-                long dur = prec.expiration - now;
-
-                logger.debug( "Resource::_propertyChangeServiceFunction ... reg_id/interval :" + prec.regId + "/" + prec.reportInterval + "  expiration=" + dur );
-                // determine if time has expired
-		if ( dur <= 0 ) {
-
-		    // For queries of length > 0, return all requested pairs in propertySet
-		    final ArrayList<DataType> rpt_props = new ArrayList<DataType>();
-                    // check all registered properties for changes
-		    for (Map.Entry<String, PCL_Callback> iter : prec.props.entrySet() ) {
-
-			String pid = iter.getKey();
-		        PCL_Callback pcb = iter.getValue();
-                        logger.trace("   Check Property/Set " + pid + "/" + pcb.isSet() );
-                        // check if property changed
-			if ( pcb.isSet() == true ) {
-			    final IProperty prop = this.propSet.get(pid);
-			    if (prop != null) {
-				rpt_props.add(new DataType(pid, prop.toAny()));
-			    } 
-			}
-
-                        // reset change indicator for next reporting cycle
-                        pcb.reset();
-		    }
-
-                    // publish changes to listener
-                    if ( rpt_props.size() > 0 && prec.pcl != null )  {
-                        logger.debug("   Notify PropertyChangeListener ...size/reg :" + rpt_props.size() + "/" + prec.regId );
-                        DataType [] rprops = rpt_props.toArray( new DataType[ rpt_props.size() ] );
-                        if ( prec.pcl.notify( prec, rprops ) != 0 ) {
-                            logger.error("Publishing changes to PropertyChangeListener FAILED, reg_id:" +  prec.regId );
-                            // probably should mark for removal... if last one then stop the thread...
-                        }
-                    }
-                        
-                    // reset time indicator 
-                    prec.expiration =  System.currentTimeMillis() + prec.reportInterval;
-                    dur = prec.reportInterval;
-                }
-
-		
-                // find smallest increment of time to wait
-		if ( delay == 0 ) { delay=dur; }
-		logger.trace( "  Test for delay/duration (millisecs) ... :"  + delay + "/" + dur );
-		if ( dur > 0 )  { delay = Math.min( delay, dur ); }
-		logger.trace( "   Minimum  delay (millisecs) ... :" + delay ); 
-
-	    }  // end synchronized
-
-            if ( delay > 0 ) {
-		logger.debug( "....Set monitoring thread delay (millisecs) ... :"  + delay );
-		_propChangeProcessor.setThreadDelay( delay/1000.0f );
-	    }
+        final long delay = this._propChangeDispatcher.dispatch();
+        logger.trace( "   Minimum  delay (millisecs) ... :" + delay ); 
+        if ( delay > 0 ) {
+            _propChangeProcessor.setThreadDelay( delay/1000.0f );
         }
 
         logger.trace("_propertyChangeServiceFunction ... end ");
@@ -1105,6 +1226,55 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
 
         final POA rootpoa  = org.ossie.corba.utils.RootPOA();
 
+        final Resource resource_i = createResource(clazz, args, orb, rootpoa, true);
+
+        // Create a thread that watches for the resource to be deactivated
+        Thread shutdownWatcher = new Thread(new Runnable() {
+                public void run() {
+                    resource_i.waitDisposed();
+                    shutdownORB(orb);
+                }
+            });
+
+        shutdownWatcher.start();
+
+        orb.run();
+
+        logger.trace("Waiting for shutdown watcher to join");
+        try {
+            shutdownWatcher.join();
+        } catch (InterruptedException e) {
+            // PASS
+        }
+
+        // Destroy the ORB, otherwise the JVM shutdown will take an unusually
+        // long time (~300ms).
+        orb.destroy();
+
+        // Shut down native ORB, if it's running
+        omnijni.ORB.shutdown();
+
+        logger.debug("Goodbye!");
+    }
+
+    /**
+     * Creates a resource from its execparams, activates it on the given POA
+     * and registers it with its naming context (or application registrar),
+     * as done by start_component. Used by start_component and by
+     * ComponentHost, which runs many resources on one ORB.
+     *
+     * @param clazz       the resource class
+     * @param args        execparams, as passed on the command line
+     * @param orb         ORB to use
+     * @param poa         POA on which to activate the resource
+     * @param standalone  if true, the resource has the process to itself:
+     *                    usage errors exit the process and logging is
+     *                    configured from the execparams
+     * @return the new resource
+     */
+    static Resource createResource(final Class<? extends Resource> clazz, final String[] args, final ORB orb, final POA poa, final boolean standalone)
+	throws InstantiationException, IllegalAccessException, InvalidObjectReference, NotFound, CannotProceed, org.omg.CosNaming.NamingContextPackage.InvalidName, ServantNotActive, WrongPolicy 
+    {
         Map<String, String> execparams = parseArgs(args);
 
         // Configure log4j from the execparams (or use default settings).
@@ -1169,7 +1339,7 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
             profile = execparams.get("PROFILE_NAME");
         }
 
-        if ((nameContext == null) || (nameBinding == null)) {
+        if (standalone && ((nameContext == null) || (nameBinding == null))) {
             if ((!Arrays.toString(args).contains("-i")) && (!Arrays.toString(args).contains("--interactive"))) {
                 System.out.println("usage: "+clazz+" [options] [execparams]\n");
                 System.out.println("The set of execparams is defined in the .prf for the component");
@@ -1182,10 +1352,13 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
         }
 
 	logging.ComponentCtx ctx = new	logging.ComponentCtx( nameBinding, identifier, dom_path );
-	logging.Configure( logcfg_uri, debugLevel, ctx );
+        if (standalone) {
+            // A shared host configures logging once for all components
+            logging.Configure( logcfg_uri, debugLevel, ctx );
+        }
 
         final Resource resource_i = clazz.newInstance();
-        final CF.Resource resource = resource_i.setup(identifier, nameBinding, profile, orb, rootpoa);
+        final CF.Resource resource = resource_i.setup(identifier, nameBinding, profile, orb, poa);
         String nic = "";
         if (execparams.containsKey("NIC")) {
             nic = execparams.get("NIC");
@@ -1219,33 +1392,7 @@ public abstract class Resource extends Logging implements ResourceOperations, Ru
             System.out.println("The IOR for your component is:\n" + orb.object_to_string(resource));
         }
 
-        // Create a thread that watches for the resource to be deactivated
-        Thread shutdownWatcher = new Thread(new Runnable() {
-                public void run() {
-                    resource_i.waitDisposed();
-                    shutdownORB(orb);
-                }
-            });
-
-        shutdownWatcher.start();
-
-        orb.run();
-
-        logger.trace("Waiting for shutdown watcher to join");
-        try {
-            shutdownWatcher.join();
-        } catch (InterruptedException e) {
-            // PASS
-        }
-
-        // Destroy the ORB, otherwise the JVM shutdown will take an unusually
-        // long time (~300ms).
-        orb.destroy();
-
-        // Shut down native ORB, if it's running
-        omnijni.ORB.shutdown();
-
-        logger.debug("Goodbye!");
+        return resource_i;
     }
 
     protected void waitDisposed() {
@@ -0,0 +1,117 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads shared by all of the components and ports in a JVM.
+ * <p>
+ * When shared threads are enabled, background work that would otherwise
+ * hold a dedicated, mostly idle thread per component or per connection
+ * (property change monitoring, burstio output flushing and delivery) is
+ * instead run as tasks on a small scheduler and a carrier pool that only
+ * holds threads while there is work to do. Shared threads are disabled by
+ * default; they can be enabled by setting the system property
+ * <code>ossie.threads.shared</code> to true, or by calling
+ * {@link #setEnabled(boolean)} before any components are created.
+ */
+public final class SharedThreads {
+
+    public static final String ENABLE_PROPERTY = "ossie.threads.shared";
+    public static final String SCHEDULER_SIZE_PROPERTY = "ossie.threads.shared.scheduler";
+
+    private static final int DEFAULT_SCHEDULER_SIZE = 2;
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLE_PROPERTY);
+    private static ScheduledExecutorService scheduler = null;
+    private static ExecutorService carriers = null;
+
+    private SharedThreads ()
+    {
+    }
+
+    public static boolean isEnabled ()
+    {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables shared threads. This only affects components and
+     * ports created (or monitors started) afterwards.
+     */
+    public static void setEnabled (boolean enable)
+    {
+        enabled = enable;
+    }
+
+    /**
+     * Gets the shared scheduler for timed tasks. Tasks must not block.
+     */
+    public static synchronized ScheduledExecutorService getScheduler ()
+    {
+        if (scheduler == null) {
+            final int size = Integer.getInteger(SCHEDULER_SIZE_PROPERTY, DEFAULT_SCHEDULER_SIZE);
+            scheduler = new ScheduledThreadPoolExecutor(Math.max(size, 1), new DaemonFactory("ossie-scheduler-"));
+        }
+        return scheduler;
+    }
+
+    /**
+     * Gets the shared carrier pool. Threads are created as needed to run
+     * tasks, and exit after being idle for a minute, so the number of
+     * threads follows the amount of concurrent work rather than the number
+     * of components. Tasks may block, but should return once their work is
+     * done rather than waiting for more.
+     */
+    public static synchronized ExecutorService getCarrierPool ()
+    {
+        if (carriers == null) {
+            carriers = Executors.newCachedThreadPool(new DaemonFactory("ossie-carrier-"));
+        }
+        return carriers;
+    }
+
+    /**
+     * Creates named daemon threads.
+     */
+    static class DaemonFactory implements ThreadFactory {
+        DaemonFactory (String prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread (Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, this.prefix + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger(0);
+    }
+}
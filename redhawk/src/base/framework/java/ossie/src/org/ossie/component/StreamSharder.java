@@ -0,0 +1,195 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ossie.component;
+
+import java.util.ArrayDeque;
+
+/**
+ * Distributes items from a shared source (typically an input port) among the
+ * workers of a multi-threaded component, so that all items for a given
+ * stream are handled by the same worker, in order.
+ * <p>
+ * Each worker calls {@link #next(int)} from its service function. Items are
+ * read from the source only while holding the sharder's lock and are placed
+ * on per-worker queues in the order they were read, so a stream is never
+ * reordered. A worker reading from the source stops once it finds an item
+ * for itself, and hands the others to their workers.
+ * <p>
+ * Example, for a bulkio float port:
+ * <pre>
+ *   sharder = createStreamSharder(
+ *       new StreamSharder.Source&lt;InFloatPort.Packet&gt;() {
+ *           public InFloatPort.Packet poll() {
+ *               return dataFloat_in.getPacket(bulkio.Const.NON_BLOCKING);
+ *           }
+ *       },
+ *       new StreamSharder.StreamKey&lt;InFloatPort.Packet&gt;() {
+ *           public String getStreamID(InFloatPort.Packet packet) {
+ *               return packet.streamID;
+ *           }
+ *       });
+ * </pre>
+ */
+public class StreamSharder<T> {
+
+    /**
+     * Non-blocking source of items.
+     */
+    public interface Source<T> {
+        /**
+         * @return the next item, or null if none is available
+         */
+        T poll ();
+    }
+
+    /**
+     * Gets the stream ID of an item.
+     */
+    public interface StreamKey<T> {
+        String getStreamID (T item);
+    }
+
+    /**
+     * Default number of items that may be queued for each worker before the
+     * sharder stops reading from the source.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Creates a sharder for the given number of workers.
+     */
+    public StreamSharder (int workers, Source<T> source, StreamKey<T> key)
+    {
+        this(workers, source, key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    StreamSharder (int workers, Source<T> source, StreamKey<T> key, ProcessWorkers waker)
+    {
+        if (workers < 1) {
+            throw new IllegalArgumentException("worker count must be positive");
+        }
+        this.source = source;
+        this.key = key;
+        this.waker = waker;
+        this.queues = new ArrayDeque[workers];
+        for (int index = 0; index < workers; ++index) {
+            this.queues[index] = new ArrayDeque<T>();
+        }
+    }
+
+    /**
+     * @return the index of the worker, out of the given number of workers,
+     *         responsible for a stream
+     */
+    public static int shard (String streamID, int workers)
+    {
+        return (streamID.hashCode() & Integer.MAX_VALUE) % workers;
+    }
+
+    public int getWorkerCount ()
+    {
+        return this.queues.length;
+    }
+
+    public synchronized int getQueueCapacity ()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * Sets how many items may be queued for a single worker. Once a worker
+     * has this many items waiting, no more items are read from the source
+     * until it catches up.
+     */
+    public synchronized void setQueueCapacity (int capacity)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the next item for a worker.
+     *
+     * @param workerIndex  index of the calling worker
+     * @return the next item for one of the worker's streams, or null if none
+     *         is available
+     */
+    public synchronized T next (int workerIndex)
+    {
+        final ArrayDeque<T> queue = this.queues[workerIndex];
+        T item = queue.poll();
+        if (item != null) {
+            return item;
+        }
+
+        // An item that could not be queued last time must be placed before
+        // anything else is read, to preserve ordering
+        if (this.held != null) {
+            if (!this.route(this.held, this.heldWorker)) {
+                return null;
+            }
+            this.held = null;
+            item = queue.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+
+        while ((item = this.source.poll()) != null) {
+            final int target = shard(this.key.getStreamID(item), this.queues.length);
+            if (target == workerIndex) {
+                // The worker's own queue is empty, so nothing can precede it
+                return item;
+            } else if (!this.route(item, target)) {
+                this.held = item;
+                this.heldWorker = target;
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // Queues an item for another worker and wakes it, unless its queue is
+    // full
+    private boolean route (T item, int target)
+    {
+        final ArrayDeque<T> queue = this.queues[target];
+        if (queue.size() >= this.capacity) {
+            return false;
+        }
+        queue.add(item);
+        if (this.waker != null) {
+            this.waker.wake(target);
+        }
+        return true;
+    }
+
+    private final Source<T> source;
+    private final StreamKey<T> key;
+    private final ProcessWorkers waker;
+    private final ArrayDeque<T>[] queues;
+    private int capacity = DEFAULT_QUEUE_CAPACITY;
+    private T held = null;
+    private int heldWorker = 0;
+}
@@ -26,26 +26,52 @@ public abstract class ThreadedResource extends Resource implements ThreadedCompo
     {
         super();
 
-        this._processThread = new ProcessThread(this);
+        this._processWorkers = new ProcessWorkers(this, new ProcessWorkers.WorkerFunction() {
+            public int process (int workerIndex)
+            {
+                return serviceFunction(workerIndex);
+            }
+        });
     }
 
     public void run ()
     {
-        this._processThread.run();
+        this._processWorkers.run();
     }
 
     public void start () throws CF.ResourcePackage.StartError
     {
-        this._processThread.start();
+        this._processWorkers.start();
         super.start();
     }
 
     public void stop () throws CF.ResourcePackage.StopError
     {
-        this._processThread.stop();
+        this._processWorkers.stop();
         super.stop();
     }
 
+    /**
+     * Adds a port, connecting it to the processing thread if it can signal
+     * the arrival of data. A service function that returns NOOP then waits
+     * only until data arrives on such a port, up to the thread delay.
+     */
+    public void addPort (String name, Object object)
+    {
+        super.addPort(name, object);
+        if (object instanceof DataNotifier) {
+            ((DataNotifier)object).addDataListener(this._processWorkers);
+        }
+    }
+
+    protected void addPort (String name, omnijni.Servant servant)
+    {
+        super.addPort(name, servant);
+        if (servant instanceof DataNotifier) {
+            ((DataNotifier)servant).addDataListener(this._processWorkers);
+        }
+    }
+
     public int process ()
     {
         return this.serviceFunction();
@@ -53,15 +79,135 @@ public abstract class ThreadedResource extends Resource implements ThreadedCompo
 
     public float getThreadDelay ()
     {
-        return this._processThread.getDelay();
+        return this._processWorkers.getDelay();
     }
 
     public void setThreadDelay (float delay)
     {
-        this._processThread.setDelay(delay);
+        this._processWorkers.setDelay(delay);
+    }
+
+    /**
+     * Gets the number of processing threads.
+     */
+    public int getWorkerCount ()
+    {
+        return this._processWorkers.getCount();
+    }
+
+    /**
+     * Sets the number of processing threads. With a single thread (the
+     * default), serviceFunction() is called. With more than one, each thread
+     * calls serviceFunction(int) with its worker index; use
+     * getWorkerForStream() or a StreamSharder to divide streams among the
+     * workers so that each stream is processed in order by one worker.
+     * If any worker returns FINISH, all of the workers stop.
+     * <p>
+     * The worker count cannot be changed while the component is running.
+     *
+     * @throws IllegalStateException if the processing threads are running
+     */
+    public void setWorkerCount (int count)
+    {
+        this._processWorkers.setCount(count);
+    }
+
+    /**
+     * Gets the shared scheduler that runs the service function, or null if
+     * it runs on the component's own processing thread.
+     */
+    public CooperativeScheduler getScheduler ()
+    {
+        return this._processWorkers.getScheduler();
+    }
+
+    /**
+     * Runs the service function on a shared scheduler instead of a
+     * dedicated processing thread, or on a dedicated thread again if the
+     * scheduler is null. Only single-worker components can be scheduled,
+     * and the idle strategy does not apply; a NOOP waits for data or the
+     * thread delay.
+     *
+     * @throws IllegalStateException if the processing thread is running or
+     *         the component has more than one worker
+     */
+    public void setScheduler (CooperativeScheduler scheduler)
+    {
+        this._processWorkers.setScheduler(scheduler, this.getClass().getSimpleName());
+    }
+
+    /**
+     * Gets the component's scheduler task, with its CPU accounting, or null
+     * if it is not scheduled.
+     */
+    public CooperativeScheduler.Task getSchedulerTask ()
+    {
+        return this._processWorkers.getTask();
+    }
+
+    /**
+     * Gets the index of the worker responsible for a stream.
+     */
+    public int getWorkerForStream (String streamID)
+    {
+        return this._processWorkers.getWorkerForStream(streamID);
+    }
+
+    /**
+     * Creates a StreamSharder that divides the items from a source among
+     * this component's workers, waking a worker when items are queued for
+     * it. The worker count must be set before calling this method.
+     */
+    protected <T> StreamSharder<T> createStreamSharder (StreamSharder.Source<T> source, StreamSharder.StreamKey<T> key)
+    {
+        return new StreamSharder<T>(this._processWorkers.getCount(), source, key, this._processWorkers);
+    }
+
+    /**
+     * Gets the strategy used by the processing thread when the service
+     * function returns NOOP.
+     */
+    public IdleStrategy getIdleStrategy ()
+    {
+        return this._processWorkers.getIdleStrategy();
+    }
+
+    /**
+     * Sets the strategy used by the processing thread when the service
+     * function returns NOOP. The default, SLEEP, waits for data up to the
+     * thread delay; SPIN, YIELD and SPIN_YIELD reduce latency at the cost of
+     * CPU, while BACKOFF uses progressively less CPU the longer the
+     * component has no work.
+     */
+    public void setIdleStrategy (IdleStrategy strategy)
+    {
+        this._processWorkers.setIdleStrategy(strategy);
+    }
+
+    /**
+     * Gets the fraction of time, from 0 to 1, that the processing thread has
+     * been idle since it started, averaged over all workers. Time spent in a service function call that
+     * returns NOOP counts as idle.
+     */
+    public float getIdleFraction ()
+    {
+        return this._processWorkers.getIdleFraction();
     }
 
     protected abstract int serviceFunction ();
 
-    private ProcessThread _processThread;
+    /**
+     * Service function for multi-threaded processing, called by each worker
+     * when the worker count is greater than one. The default implementation
+     * calls serviceFunction().
+     *
+     * @param workerIndex  index of the calling worker, from 0 to the worker
+     *                     count minus one
+     */
+    protected int serviceFunction (int workerIndex)
+    {
+        return this.serviceFunction();
+    }
+
+    private ProcessWorkers _processWorkers;
 }
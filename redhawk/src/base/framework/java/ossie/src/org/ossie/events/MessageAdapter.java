@@ -37,8 +37,8 @@ class MessageAdapter<E extends StructDef> implements EventCallback<E> {
     {
         E messageData;
         try {
-            messageData = this.structDef.newInstance();
-        } catch (final Exception ex) {
+            messageData = StructDef.newInstance(this.structDef);
+        } catch (final IllegalArgumentException ex) {
             return;
         }
 
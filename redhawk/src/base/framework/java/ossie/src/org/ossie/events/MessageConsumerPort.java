@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.omg.CORBA.Any;
 import org.omg.CosEventChannelAdmin.*;
@@ -35,6 +36,8 @@ import org.omg.PortableServer.POAPackage.WrongPolicy;
 
 import org.apache.log4j.Logger;
 
+import org.ossie.component.DataListener;
+import org.ossie.component.DataNotifier;
 import org.ossie.component.PortBase;
 import org.ossie.properties.StructDef;
 
@@ -43,10 +46,11 @@ import org.ossie.properties.StructDef;
  * distributed over event channels.
  */
 @SuppressWarnings("deprecation")
-public class MessageConsumerPort extends ExtendedEvent.MessageEventPOA implements PortBase {
+public class MessageConsumerPort extends ExtendedEvent.MessageEventPOA implements PortBase, DataNotifier {
     public Object updatingPortsLock = new Object();
 
     protected HashMap<String, EventCallback> callbacks = new HashMap<String, EventCallback>();
+    protected List<DataListener> dataListeners = new CopyOnWriteArrayList<DataListener>();
     protected boolean active = false;
     protected String name;
 
@@ -175,6 +179,19 @@ public class MessageConsumerPort extends ExtendedEvent.MessageEventPOA implement
         }
     }
 
+    /**
+     * Register a listener to be notified after messages are dispatched.
+     */
+    public void addDataListener(DataListener listener)
+    {
+        this.dataListeners.add(listener);
+    }
+
+    public void removeDataListener(DataListener listener)
+    {
+        this.dataListeners.remove(listener);
+    }
+
     public void connectPort(final org.omg.CORBA.Object connection, final String connectionId) throws CF.PortPackage.InvalidPort, CF.PortPackage.OccupiedPort {
         // Give a specific exception message for nil
         if (connection == null) {
@@ -341,6 +358,12 @@ public class MessageConsumerPort extends ExtendedEvent.MessageEventPOA implement
         for (final CF.DataType message : CF.PropertiesHelper.extract(data)) {
             this.dispatchMessage(message.id, message.value);
         }
+
+        // Callbacks typically hand messages off to the service function, so
+        // wake up any processing thread that is waiting for data
+        for (final DataListener listener : this.dataListeners) {
+            listener.dataArrived();
+        }
     }
 
     private void dispatchMessage(final String messageId, final org.omg.CORBA.Any messageData)
@@ -57,7 +57,7 @@ abstract class AbstractSequenceProperty<T> extends Property<List<T>> {
     }
 
     @Override
-    public Any toAny() {
+    protected Any toAny_() {
         Any any = ORB.init().create_any();
         if (this.value != null) {
             insert(any, this.value);
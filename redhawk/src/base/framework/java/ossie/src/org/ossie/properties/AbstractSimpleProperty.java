@@ -53,6 +53,7 @@ abstract class AbstractSimpleProperty<T> extends Property<T> {
     @Override
     public void fromString(String str) {
         this.value = parseString(str);
+        this.invalidateEncoding();
     }
 
     @Override
@@ -65,7 +66,7 @@ abstract class AbstractSimpleProperty<T> extends Property<T> {
     }
 
     @Override
-    public Any toAny() {
+    protected Any toAny_() {
         Any any = ORB.init().create_any();
         if (this.value != null) {
             insert(any, this.value);
@@ -0,0 +1,597 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ossie.properties;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.omg.CORBA.Any;
+import org.omg.CORBA.AnySeqHelper;
+import org.omg.CORBA.BooleanSeqHelper;
+import org.omg.CORBA.CharSeqHelper;
+import org.omg.CORBA.DoubleSeqHelper;
+import org.omg.CORBA.FloatSeqHelper;
+import org.omg.CORBA.LongLongSeqHelper;
+import org.omg.CORBA.LongSeqHelper;
+import org.omg.CORBA.OctetSeqHelper;
+import org.omg.CORBA.ShortSeqHelper;
+import org.omg.CORBA.StringSeqHelper;
+import org.omg.CORBA.TCKind;
+import org.omg.CORBA.TypeCode;
+import org.omg.CORBA.ULongLongSeqHelper;
+import org.omg.CORBA.ULongSeqHelper;
+import org.omg.CORBA.UShortSeqHelper;
+import org.omg.CORBA.WCharSeqHelper;
+import org.omg.CORBA.WStringSeqHelper;
+import org.omg.CORBA.TypeCodePackage.BadKind;
+
+import CF.DataType;
+import CF.DataTypeHelper;
+import CF.PropertiesHelper;
+import CF.complexBooleanHelper;
+import CF.complexCharHelper;
+import CF.complexDoubleHelper;
+import CF.complexFloatHelper;
+import CF.complexLongHelper;
+import CF.complexLongLongHelper;
+import CF.complexOctetHelper;
+import CF.complexShortHelper;
+import CF.complexULongHelper;
+import CF.complexULongLongHelper;
+import CF.complexUShortHelper;
+
+/**
+ * Compares Any values of a given type with an SCA action.
+ * <p>
+ * The type-specific comparison is looked up once, when the comparator is
+ * created, so that comparing values only has to extract them; simple values
+ * are compared as primitives, numeric sequences as primitive arrays, and
+ * structs and struct sequences member by member. Comparators hold no mutable
+ * state and may be shared between threads.
+ * <p>
+ * The results are the same as {@link AnyUtils#compareAnys(Any,Any,String)},
+ * except that unsigned types are ordered as unsigned values, complex values
+ * are compared by value, and equal sequences satisfy "ge" and "le".
+ */
+public final class AnyComparator {
+
+    /**
+     * SCA comparison actions.
+     */
+    public enum Operator {
+        EQ("eq"),
+        NE("ne"),
+        GT("gt"),
+        LT("lt"),
+        GE("ge"),
+        LE("le");
+
+        public String toString() {
+            return this.action;
+        }
+
+        /**
+         * @return the operator for an SCA action string (e.g. "ge"), or null
+         *         if the action is not recognized
+         */
+        public static Operator get(String action) {
+            for (Operator op : Operator.values()) {
+                if (op.action.equals(action)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+
+        boolean isOrdering() {
+            return (this != EQ) && (this != NE);
+        }
+
+        boolean test(int result) {
+            switch (this) {
+            case EQ:
+                return result == EQUAL;
+            case NE:
+                return (result != EQUAL) && (result != NONE);
+            case GT:
+                return result == GREATER;
+            case LT:
+                return result == LESS;
+            case GE:
+                return (result == GREATER) || (result == EQUAL);
+            case LE:
+                return (result == LESS) || (result == EQUAL);
+            default:
+                return false;
+            }
+        }
+
+        private Operator(String action) {
+            this.action = action;
+        }
+        private final String action;
+    }
+
+    // Comparison results; UNEQUAL values have no ordering, and NONE means the
+    // values cannot be compared at all (every action is false)
+    private static final int LESS = -1;
+    private static final int EQUAL = 0;
+    private static final int GREATER = 1;
+    private static final int UNEQUAL = 2;
+    private static final int NONE = 3;
+
+    /**
+     * Type-specific comparisons. Each strategy assumes that both Anys hold
+     * the type it was selected for.
+     */
+    private enum Strategy {
+        BOOLEAN {
+            int compare(Any a, Any b) {
+                final boolean x = a.extract_boolean();
+                final boolean y = b.extract_boolean();
+                return (x == y) ? EQUAL : (x ? GREATER : LESS);
+            }
+        },
+        CHAR {
+            int compare(Any a, Any b) {
+                return order(a.extract_char() - b.extract_char());
+            }
+        },
+        WCHAR {
+            int compare(Any a, Any b) {
+                return order(a.extract_wchar() - b.extract_wchar());
+            }
+        },
+        OCTET {
+            int compare(Any a, Any b) {
+                return order(a.extract_octet() - b.extract_octet());
+            }
+        },
+        SHORT {
+            int compare(Any a, Any b) {
+                return order(a.extract_short() - b.extract_short());
+            }
+        },
+        USHORT {
+            int compare(Any a, Any b) {
+                return order((a.extract_ushort() & 0xFFFF) - (b.extract_ushort() & 0xFFFF));
+            }
+        },
+        LONG {
+            int compare(Any a, Any b) {
+                return compareLongs(a.extract_long(), b.extract_long());
+            }
+        },
+        ULONG {
+            int compare(Any a, Any b) {
+                return compareLongs(a.extract_ulong() & 0xFFFFFFFFL, b.extract_ulong() & 0xFFFFFFFFL);
+            }
+        },
+        LONGLONG {
+            int compare(Any a, Any b) {
+                return compareLongs(a.extract_longlong(), b.extract_longlong());
+            }
+        },
+        ULONGLONG {
+            int compare(Any a, Any b) {
+                // Flipping the sign bit orders unsigned values as signed
+                return compareLongs(a.extract_ulonglong() ^ Long.MIN_VALUE, b.extract_ulonglong() ^ Long.MIN_VALUE);
+            }
+        },
+        FLOAT {
+            int compare(Any a, Any b) {
+                final float x = a.extract_float();
+                final float y = b.extract_float();
+                if (Float.floatToIntBits(x) == Float.floatToIntBits(y)) {
+                    return EQUAL;
+                }
+                return (x > y) ? GREATER : ((x < y) ? LESS : UNEQUAL);
+            }
+        },
+        DOUBLE {
+            int compare(Any a, Any b) {
+                final double x = a.extract_double();
+                final double y = b.extract_double();
+                if (Double.doubleToLongBits(x) == Double.doubleToLongBits(y)) {
+                    return EQUAL;
+                }
+                return (x > y) ? GREATER : ((x < y) ? LESS : UNEQUAL);
+            }
+        },
+        STRING {
+            int compare(Any a, Any b) {
+                return order(a.extract_string().compareTo(b.extract_string()));
+            }
+        },
+        WSTRING {
+            int compare(Any a, Any b) {
+                return order(a.extract_wstring().compareTo(b.extract_wstring()));
+            }
+        },
+        FIXED {
+            int compare(Any a, Any b) {
+                final BigDecimal x = a.extract_fixed();
+                final BigDecimal y = b.extract_fixed();
+                if (x.equals(y)) {
+                    return EQUAL;
+                }
+                final int result = x.compareTo(y);
+                return (result == 0) ? UNEQUAL : order(result);
+            }
+        },
+        COMPLEX {
+            int compare(Any a, Any b) {
+                return a.equal(b) ? EQUAL : UNEQUAL;
+            }
+        },
+        BOOLEAN_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(BooleanSeqHelper.extract(a), BooleanSeqHelper.extract(b)));
+            }
+        },
+        CHAR_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(CharSeqHelper.extract(a), CharSeqHelper.extract(b)));
+            }
+        },
+        WCHAR_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(WCharSeqHelper.extract(a), WCharSeqHelper.extract(b)));
+            }
+        },
+        OCTET_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(OctetSeqHelper.extract(a), OctetSeqHelper.extract(b)));
+            }
+        },
+        SHORT_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(ShortSeqHelper.extract(a), ShortSeqHelper.extract(b)));
+            }
+        },
+        USHORT_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(UShortSeqHelper.extract(a), UShortSeqHelper.extract(b)));
+            }
+        },
+        LONG_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(LongSeqHelper.extract(a), LongSeqHelper.extract(b)));
+            }
+        },
+        ULONG_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(ULongSeqHelper.extract(a), ULongSeqHelper.extract(b)));
+            }
+        },
+        LONGLONG_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(LongLongSeqHelper.extract(a), LongLongSeqHelper.extract(b)));
+            }
+        },
+        ULONGLONG_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(ULongLongSeqHelper.extract(a), ULongLongSeqHelper.extract(b)));
+            }
+        },
+        FLOAT_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(FloatSeqHelper.extract(a), FloatSeqHelper.extract(b)));
+            }
+        },
+        DOUBLE_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(DoubleSeqHelper.extract(a), DoubleSeqHelper.extract(b)));
+            }
+        },
+        STRING_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(StringSeqHelper.extract(a), StringSeqHelper.extract(b)));
+            }
+        },
+        WSTRING_SEQUENCE {
+            int compare(Any a, Any b) {
+                return equality(Arrays.equals(WStringSeqHelper.extract(a), WStringSeqHelper.extract(b)));
+            }
+        },
+        STRUCT {
+            int compare(Any a, Any b) {
+                final DataType[] membersA = PropertiesHelper.extract(a);
+                final DataType[] membersB = PropertiesHelper.extract(b);
+                if (membersA.length != membersB.length) {
+                    return UNEQUAL;
+                }
+                // Members are matched by id; members of the first struct that
+                // are not in the second are ignored
+                for (DataType memberA : membersA) {
+                    for (DataType memberB : membersB) {
+                        if (memberA.id.equals(memberB.id)) {
+                            if (AnyComparator.compare(memberA.value, memberB.value) != EQUAL) {
+                                return UNEQUAL;
+                            }
+                            break;
+                        }
+                    }
+                }
+                return EQUAL;
+            }
+        },
+        STRUCT_SEQUENCE {
+            int compare(Any a, Any b) {
+                final Any[] itemsA = AnySeqHelper.extract(a);
+                final Any[] itemsB = AnySeqHelper.extract(b);
+                if (itemsA.length != itemsB.length) {
+                    return UNEQUAL;
+                }
+                for (int index = 0; index < itemsA.length; ++index) {
+                    if (AnyComparator.compare(itemsA[index], itemsB[index]) != EQUAL) {
+                        return UNEQUAL;
+                    }
+                }
+                return EQUAL;
+            }
+        },
+        SEQUENCE {
+            int compare(Any a, Any b) {
+                return a.equal(b) ? EQUAL : UNEQUAL;
+            }
+        },
+        UNSUPPORTED {
+            int compare(Any a, Any b) {
+                return NONE;
+            }
+        };
+
+        abstract int compare(Any a, Any b);
+
+        private static int order(int difference) {
+            return (difference > 0) ? GREATER : ((difference < 0) ? LESS : EQUAL);
+        }
+
+        private static int compareLongs(long x, long y) {
+            return (x > y) ? GREATER : ((x < y) ? LESS : EQUAL);
+        }
+
+        private static int equality(boolean same) {
+            return same ? EQUAL : UNEQUAL;
+        }
+    }
+
+    /**
+     * Creates a comparator for values of the given type.
+     */
+    public static AnyComparator get(TypeCode type, Operator op) {
+        if (op == null) {
+            throw new IllegalArgumentException("Invalid comparison operator");
+        }
+        return new AnyComparator(type, op);
+    }
+
+    /**
+     * Compares two Anys, looking up the comparison for their type.
+     */
+    public static boolean compare(Any a, Any b, Operator op) {
+        final TypeCode type = a.type();
+        final Strategy strategy = resolve(type);
+        if (op.isOrdering() && strategy == Strategy.COMPLEX) {
+            throw new IllegalArgumentException("Greater-than/less-than not supported for complex types.");
+        }
+        if (!sameShape(type, b.type())) {
+            return op.test(UNEQUAL);
+        }
+        return op.test(strategy.compare(a, b));
+    }
+
+    /**
+     * Orders two Anys of the same type, decoding each value once.
+     *
+     * @return a negative number, zero or a positive number as the first value
+     *         is less than, equal to or greater than the second
+     * @throws IllegalArgumentException if the Anys hold different types, or
+     *         values that have no ordering
+     */
+    public static int order(Any a, Any b) {
+        final TypeCode type = a.type();
+        if (!sameShape(type, b.type())) {
+            throw new IllegalArgumentException("Cannot order values of different types");
+        }
+        final int result = resolve(type).compare(a, b);
+        if (result == UNEQUAL || result == NONE) {
+            throw new IllegalArgumentException("Values of this type have no ordering");
+        }
+        return result;
+    }
+
+    /**
+     * Compares two Anys holding the type this comparator was created for.
+     * Anys of a different type are compared as if by
+     * {@link #compare(Any,Any,Operator)}.
+     */
+    public boolean test(Any a, Any b) {
+        final TypeCode typeA = a.type();
+        if (typeA != this.type && !sameShape(this.type, typeA)) {
+            return AnyComparator.compare(a, b, this.op);
+        }
+        final TypeCode typeB = b.type();
+        if (typeB != this.type && !sameShape(this.type, typeB)) {
+            return this.op.test(UNEQUAL);
+        }
+        return this.op.test(this.strategy.compare(a, b));
+    }
+
+    public TypeCode getType() {
+        return this.type;
+    }
+
+    public Operator getOperator() {
+        return this.op;
+    }
+
+    // Compares two Anys for equality and ordering
+    private static int compare(Any a, Any b) {
+        if (!sameShape(a.type(), b.type())) {
+            return UNEQUAL;
+        }
+        return resolve(a.type()).compare(a, b);
+    }
+
+    // Whether two types have the same kind, and for aliases, the same
+    // sequence element kind
+    private static boolean sameShape(TypeCode first, TypeCode second) {
+        final TCKind kind = first.kind();
+        if (kind != second.kind()) {
+            return false;
+        } else if (kind != TCKind.tk_alias) {
+            return true;
+        }
+        try {
+            final TypeCode contentA = first.content_type();
+            final TypeCode contentB = second.content_type();
+            if (contentA.kind() != contentB.kind()) {
+                return false;
+            } else if (contentA.kind() != TCKind.tk_sequence) {
+                return true;
+            }
+            return contentA.content_type().kind() == contentB.content_type().kind();
+        } catch (final BadKind ex) {
+            return false;
+        }
+    }
+
+    private static Strategy resolve(TypeCode type) {
+        switch (type.kind().value()) {
+        case TCKind._tk_boolean:
+            return Strategy.BOOLEAN;
+        case TCKind._tk_char:
+            return Strategy.CHAR;
+        case TCKind._tk_wchar:
+            return Strategy.WCHAR;
+        case TCKind._tk_octet:
+            return Strategy.OCTET;
+        case TCKind._tk_short:
+            return Strategy.SHORT;
+        case TCKind._tk_ushort:
+            return Strategy.USHORT;
+        case TCKind._tk_long:
+            return Strategy.LONG;
+        case TCKind._tk_ulong:
+            return Strategy.ULONG;
+        case TCKind._tk_longlong:
+            return Strategy.LONGLONG;
+        case TCKind._tk_ulonglong:
+            return Strategy.ULONGLONG;
+        case TCKind._tk_float:
+            return Strategy.FLOAT;
+        case TCKind._tk_double:
+            return Strategy.DOUBLE;
+        case TCKind._tk_string:
+            return Strategy.STRING;
+        case TCKind._tk_wstring:
+            return Strategy.WSTRING;
+        case TCKind._tk_fixed:
+            return Strategy.FIXED;
+        case TCKind._tk_struct:
+            return isComplex(type) ? Strategy.COMPLEX : Strategy.UNSUPPORTED;
+        case TCKind._tk_alias:
+            try {
+                final TypeCode content = type.content_type();
+                if (content.kind().value() == TCKind._tk_sequence) {
+                    return resolveSequence(content.content_type());
+                }
+            } catch (final BadKind ex) {
+                // Fall through
+            }
+            return Strategy.UNSUPPORTED;
+        default:
+            return Strategy.UNSUPPORTED;
+        }
+    }
+
+    private static Strategy resolveSequence(TypeCode elementType) {
+        switch (elementType.kind().value()) {
+        case TCKind._tk_boolean:
+            return Strategy.BOOLEAN_SEQUENCE;
+        case TCKind._tk_char:
+            return Strategy.CHAR_SEQUENCE;
+        case TCKind._tk_wchar:
+            return Strategy.WCHAR_SEQUENCE;
+        case TCKind._tk_octet:
+            return Strategy.OCTET_SEQUENCE;
+        case TCKind._tk_short:
+            return Strategy.SHORT_SEQUENCE;
+        case TCKind._tk_ushort:
+            return Strategy.USHORT_SEQUENCE;
+        case TCKind._tk_long:
+            return Strategy.LONG_SEQUENCE;
+        case TCKind._tk_ulong:
+            return Strategy.ULONG_SEQUENCE;
+        case TCKind._tk_longlong:
+            return Strategy.LONGLONG_SEQUENCE;
+        case TCKind._tk_ulonglong:
+            return Strategy.ULONGLONG_SEQUENCE;
+        case TCKind._tk_float:
+            return Strategy.FLOAT_SEQUENCE;
+        case TCKind._tk_double:
+            return Strategy.DOUBLE_SEQUENCE;
+        case TCKind._tk_string:
+            return Strategy.STRING_SEQUENCE;
+        case TCKind._tk_wstring:
+            return Strategy.WSTRING_SEQUENCE;
+        case TCKind._tk_any:
+            return Strategy.STRUCT_SEQUENCE;
+        case TCKind._tk_struct:
+            if (DataTypeHelper.type().equivalent(elementType)) {
+                return Strategy.STRUCT;
+            }
+            return Strategy.SEQUENCE;
+        default:
+            return Strategy.SEQUENCE;
+        }
+    }
+
+    private static boolean isComplex(TypeCode type) {
+        return type.equivalent(complexFloatHelper.type()) ||
+            type.equivalent(complexDoubleHelper.type()) ||
+            type.equivalent(complexBooleanHelper.type()) ||
+            type.equivalent(complexCharHelper.type()) ||
+            type.equivalent(complexOctetHelper.type()) ||
+            type.equivalent(complexShortHelper.type()) ||
+            type.equivalent(complexUShortHelper.type()) ||
+            type.equivalent(complexLongHelper.type()) ||
+            type.equivalent(complexLongLongHelper.type()) ||
+            type.equivalent(complexULongHelper.type()) ||
+            type.equivalent(complexULongLongHelper.type());
+    }
+
+    private AnyComparator(TypeCode type, Operator op) {
+        this.type = type;
+        this.op = op;
+        this.strategy = resolve(type);
+        if (op.isOrdering() && this.strategy == Strategy.COMPLEX) {
+            throw new IllegalArgumentException("Greater-than/less-than not supported for complex types.");
+        }
+    }
+
+    private final TypeCode type;
+    private final Operator op;
+    private final Strategy strategy;
+}
@@ -1009,372 +1009,23 @@ public final class AnyUtils {
      * @since 3.0
      */
     public static boolean compareAnys(final Any a, final Any b, final String action) {
-        int kindA = a.type().kind().value();
-        int kindB = b.type().kind().value();
-
-        // If the types don't match, the comparison will always be false, 
-        // unless the action passed in is not equals
-        if (kindA != kindB) {
-            if ("ne".equals(action)) {
-                return true;
-            }
+        final AnyComparator.Operator op = AnyComparator.Operator.get(action);
+        if (op == null) {
             return false;
         }
-
-        boolean result = false;
-        switch (kindA) {
-        case TCKind._tk_boolean:
-            result = AnyUtils.performAction(a.extract_boolean(), b.extract_boolean(), action, a.type());
-            break;
-        case TCKind._tk_char:
-            result = AnyUtils.performAction(a.extract_char(), b.extract_char(), action, a.type());
-            break;
-        case TCKind._tk_wchar:
-            result = AnyUtils.performAction(a.extract_wchar(), b.extract_wchar(), action, a.type());
-            break;
-        case TCKind._tk_octet:
-            result = AnyUtils.performAction(a.extract_octet(), b.extract_octet(), action, a.type());
-            break;
-        case TCKind._tk_ushort:
-            result = AnyUtils.performAction(a.extract_ushort(), b.extract_ushort(), action, a.type());
-            break;
-        case TCKind._tk_short:
-            result = AnyUtils.performAction(a.extract_short(), b.extract_short(), action, a.type());
-            break;
-        case TCKind._tk_float:
-            result = AnyUtils.performAction(a.extract_float(), b.extract_float(), action, a.type());
-            break;
-        case TCKind._tk_double:
-            result = AnyUtils.performAction(a.extract_double(), b.extract_double(), action, a.type());
-            break;
-        case TCKind._tk_ulong:
-            result = AnyUtils.performAction(a.extract_ulong(), b.extract_ulong(), action, a.type());
-            break;
-        case TCKind._tk_long:
-            result = AnyUtils.performAction(a.extract_long(), b.extract_long(), action, a.type());
-            break;
-        case TCKind._tk_ulonglong:
-            result = AnyUtils.performAction(a.extract_ulonglong(), b.extract_ulonglong(), action, a.type());
-            break;
-        case TCKind._tk_longlong:
-            result = AnyUtils.performAction(a.extract_longlong(), b.extract_longlong(), action, a.type());
-            break;
-        case TCKind._tk_string:
-            result = AnyUtils.performAction(a.extract_string(), b.extract_string(), action, a.type());
-            break;
-        case TCKind._tk_wstring:
-            result = AnyUtils.performAction(a.extract_wstring(), b.extract_wstring(), action, a.type());
-            break;
-        case TCKind._tk_fixed:
-            result = AnyUtils.performAction(a.extract_fixed(), b.extract_fixed(), action, a.type());
-            break;
-        case TCKind._tk_objref:
-            result = false;
-            break;
-        case TCKind._tk_alias:
-            try {
-                final TypeCode innerContentTypeA = a.type().content_type();
-                final TypeCode innerContentTypeB = b.type().content_type();
-                
-                // check that both are sequences and that both sequences are the same type
-                if (innerContentTypeA.kind().value() != innerContentTypeB.kind().value() ||
-                        innerContentTypeA.content_type().kind().value() != innerContentTypeB.content_type().kind().value()) {
-                    if ("ne".equals(action)) {
-                        return true;
-                    }
-                    return false;
-                }
-                
-                // Sequences, Structs, and StructSequences will all match this
-                if (innerContentTypeA.kind().value() == TCKind._tk_sequence) {
-                    Object[] tmpA = extractSequence(a, innerContentTypeA.content_type());
-                    Object[] tmpB = extractSequence(b, innerContentTypeB.content_type());
-                    
-                    // Here is the test to determine if we have a struct
-                    if(tmpA.getClass() == CF.DataType[].class) {
-                        CF.DataType[] dtsA = (CF.DataType[])tmpA;
-                        CF.DataType[] dtsB = (CF.DataType[])tmpB;
-                        
-                        // test if the structs have a different number of members
-                        if (dtsA.length != dtsB.length) {
-                            if ("ne".equals(action)) {
-                                return true;
-                            }
-                            return false;
-                        }
-                        
-                        // try to compare each member of the struct using the compareAnys recursively
-                        for (int i = 0; i < dtsA.length; i++) {
-                            for (int j = 0; j < dtsB.length; j++) {
-                                if (dtsA[i].id.equals(dtsB[j].id)) {
-                                    if (compareAnys(dtsA[i].value, dtsB[j].value, action)) {
-                                        if ("ne".equals(action)) {
-                                            return true;
-                                        }
-                                    } else {
-                                        if ("eq".equals(action)) {
-                                            return false;
-                                        }
-                                    }
-                                    break;
-                                }
-                            }
-                        }
-                        if ("eq".equals(action)) {
-                            return true;
-                        }
-                        return false;
-                    }
-                    
-                    // Here is the test to determine if we have a struct sequence
-                    if(tmpA.getClass() == Any[].class) {
-                        Any[] anysA = (Any[])tmpA;
-                        Any[] anysB = (Any[])tmpB;
-                        
-                        // test if the sequences are of different length
-                        if (anysA.length != anysB.length) {
-                            if ("ne".equals(action)) {
-                                return true;
-                            }     
-                            return false;
-                        } else {
-                            // try to compare each struct using the compareAnys recursively
-                            for (int i = 0; i < anysA.length; i++) {
-                                if (compareAnys(anysA[i], anysB[i], action)) {
-                                    if ("ne".equals(action)) {
-                                        return true;
-                                    }
-                                } else {
-                                    if ("eq".equals(action)) {
-                                        return false;
-                                    }
-                                }
-                            }
-                            if ("eq".equals(action)) {
-                                return true;
-                            }
-                            return false;
-                        }
-                    }
-                    
-                    // Here is the comparison for a normal sequence type
-                    if (tmpA.length != tmpB.length) {
-                        if ("ne".equals(action)) {
-                            return true;
-                        } 
-                        return false;
-                    } else {
-                        //compare each value
-                        for (int i = 0; i < tmpA.length; i++) {
-                            if (!tmpA[i].equals(tmpB[i])) {
-                                if ("ne".equals(action)) {
-                                    return true;
-                                } 
-                                return false;
-                            }
-                        }
-                        if ("eq".equals(action)) {
-                            return true;
-                        } 
-                        return false;
-                    }
-                } else {
-                    return false;
-                }
-            } catch (final BadKind e) {
-                return false;
-            }
-            
-        default:
-
-        // Note that performAction may not support gt, lt, ge, le for
-        // complex numbers.  We are relying on perfromAction to check
-        // the validity of the requested action and throw an exception
-        // if appropriate.
-
-        if (a.type().equivalent(complexFloatHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexFloatHelper.extract(a), 
-                CF.complexFloatHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexDoubleHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexDoubleHelper.extract(a), 
-                CF.complexDoubleHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexBooleanHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexBooleanHelper.extract(a), 
-                CF.complexBooleanHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexOctetHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexOctetHelper.extract(a), 
-                CF.complexOctetHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexCharHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexCharHelper.extract(a), 
-                CF.complexCharHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexShortHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexShortHelper.extract(a), 
-                CF.complexShortHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexUShortHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexUShortHelper.extract(a), 
-                CF.complexUShortHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexLongHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexLongHelper.extract(a), 
-                CF.complexLongHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexULongHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexULongHelper.extract(a), 
-                CF.complexULongHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexLongLongHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexLongLongHelper.extract(a), 
-                CF.complexLongLongHelper.extract(b), 
-                action, 
-                a.type());
-        } else if (a.type().equivalent(complexULongLongHelper.type())) {
-            result = AnyUtils.performAction(
-                CF.complexULongLongHelper.extract(a), 
-                CF.complexULongLongHelper.extract(b), 
-                action, 
-                a.type());
-        } else {
-            result = false;
-        }
-        }
-        return result;
+        return AnyComparator.compare(a, b, op);
     }
 
-    private static boolean performAction(final Object val1, 
-                                         final Object val2, 
-                                         final String action, 
-                                         final TypeCode typeCode) {
-        if ( val1 == null && val2 != null) {
-            return false;
-        }
-        if ( val1 != null && val2 == null) {
-            return false;
-        }
-                
-        final boolean eq = val1.equals(val2);
-
-        if ("eq".equals(action)) {
-            return eq;
-        } else if ("ne".equals(action)) {
-            return !eq;
-        }
-
-        boolean gt = false;
-        boolean lt = false;
-        int comp = 0;
-
-        final int typeKind = typeCode.kind().value();
-        switch (typeKind) {
-        case TCKind._tk_boolean:
-            gt = (Boolean) val1 && !(Boolean) val2;
-            lt = !(Boolean) val1 && (Boolean) val2;
-            break;
-        case TCKind._tk_char:
-        case TCKind._tk_wchar:
-            comp = ((Character) val1).compareTo((Character) val2);
-            gt = comp > 0;
-            lt = comp < 0;
-            break;
-        case TCKind._tk_octet:
-            gt = (Byte) val1 > (Byte) val2;
-            lt = (Byte) val1 < (Byte) val2;
-            break;
-        case TCKind._tk_ushort:
-        case TCKind._tk_short:
-            gt = (Short) val1 > (Short) val2;
-            lt = (Short) val1 < (Short) val2;
-            break;
-        case TCKind._tk_float:
-            gt = (Float) val1 > (Float) val2;
-            lt = (Float) val1 < (Float) val2;
-            break;
-        case TCKind._tk_double:
-            gt = (Double) val1 > (Double) val2;
-            lt = (Double) val1 < (Double) val2;
-            break;
-        case TCKind._tk_ulong:
-        case TCKind._tk_long:
-            gt = (Integer) val1 > (Integer) val2;
-            lt = (Integer) val1 < (Integer) val2;
-            break;
-        case TCKind._tk_ulonglong:
-        case TCKind._tk_longlong:
-            gt = (Long) val1 > (Long) val2;
-            lt = (Long) val1 < (Long) val2;
-            break;
-        case TCKind._tk_string:
-        case TCKind._tk_wstring:
-            comp = ((String) val1).compareTo((String) val2);
-            gt = comp > 0;
-            lt = comp < 0;
-            break;
-        case TCKind._tk_fixed:
-            final int compare = ((BigDecimal) val1).compareTo((BigDecimal) val2);
-            gt = compare == 1;
-            lt = compare == -1;
-            break;
-        default:
-            if ("gt".equals(action) || "lt".equals(action) || "ge".equals(action) || "le".equals(action)) {
-                // If the user is attempting to do gt, lt, ge, or le on 
-                // a complex number, throw an exception.
-                //
-                // We could implement greater-than/less-than for complex 
-                // numbers as a comparison between magnitudes, but the 
-                // "or-equal-to" results would be misleading.
-                if (typeCode.equivalent(complexFloatHelper.type()) ||
-                    typeCode.equivalent(complexDoubleHelper.type()) ||
-                    typeCode.equivalent(complexBooleanHelper.type()) ||
-                    typeCode.equivalent(complexCharHelper.type()) ||
-                    typeCode.equivalent(complexOctetHelper.type()) ||
-                    typeCode.equivalent(complexShortHelper.type()) ||
-                    typeCode.equivalent(complexUShortHelper.type()) ||
-                    typeCode.equivalent(complexLongHelper.type()) ||
-                    typeCode.equivalent(complexLongLongHelper.type()) ||
-                    typeCode.equivalent(complexULongHelper.type()) ||
-                    typeCode.equivalent(complexULongLongHelper.type())
-                ) {
-                    throw new IllegalArgumentException("Greater-than/less-than not supported for complex types.");
-                }
-            }
-
-            break;
-        }
-
-        if ("gt".equals(action)) {
-            return gt;
-        } else if ("lt".equals(action)) {
-            return lt;
-        } else if ("ge".equals(action)) {
-            return gt || eq;
-        } else if ("le".equals(action)) {
-            return lt || eq;
-        }
-        return false;
+    /**
+     * This compares two Any objects with the given comparison operator.
+     * @param a the first Any
+     * @param b the second Any
+     * @param op the comparison operator
+     * @return the result of the comparison
+     * @see AnyComparator
+     */
+    public static boolean compareAnys(final Any a, final Any b, final AnyComparator.Operator op) {
+        return AnyComparator.compare(a, b, op);
     }
 
     public static boolean isNull(Any any) {
@@ -33,6 +33,21 @@ public interface IProperty  {
      * @return
      */
     public void configure(Any value);
+
+    /**
+     * Update the value of this property from an Any if it differs from the
+     * current value, optionally triggering callbacks.
+     *
+     * @return true if the value changed
+     */
+    public boolean configure(Any value, boolean callbacks);
+
+    /**
+     * Decode a new value for this property from an Any without applying it.
+     *
+     * @return the pending change, or null if the value would not change
+     */
+    public PropertyChange prepare(Any value);
     
     /**
      * Update the value of this property from an Any without triggering a callback.
@@ -37,6 +37,7 @@ abstract class NumericProperty<T extends Number> extends AbstractSimpleProperty<
 
     public void setValue(Number value) {
         this.value = fromNumber(value);
+        this.invalidateEncoding();
         for (PropertyListener<Object> listener : voidListeners) {
             listener.valueChanged(value, this.value);
         }
@@ -56,11 +57,13 @@ abstract class NumericProperty<T extends Number> extends AbstractSimpleProperty<
             return false;
         }
         this.value = subtract(this.value, capacity);
+        this.invalidateEncoding();
         return true;
     }
 
     public void deallocate(T capacity) {
         this.value = add(this.value, capacity);
+        this.invalidateEncoding();
     }
 
     protected abstract int compare(T lhs, T rhs);
@@ -0,0 +1,79 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ossie.properties;
+
+import org.omg.CORBA.Any;
+import org.omg.CORBA.ORB;
+
+/**
+ * Base class for numeric sequence properties whose value is stored as a
+ * primitive array (e.g. <code>float[]</code>) instead of a List of boxed
+ * values. The value is inserted into and extracted from Anys directly via
+ * the CORBA sequence helpers, so large sequences are never boxed.
+ */
+abstract class PrimitiveArrayProperty<T> extends Property<T> {
+
+    private final String type;
+
+    protected PrimitiveArrayProperty(String id, String name, String type, T value,
+                                     Mode mode,  Action action, Kind[] kinds) {
+        super(id, name, value, mode, action, kinds);
+        this.type = type;
+    }
+
+    protected PrimitiveArrayProperty(String id, String name, String type, T value,
+                                     Mode mode,  Action action, Kind[] kinds, boolean optional) {
+        super(id, name, value, mode, action, kinds, optional);
+        this.type = type;
+    }
+
+    @Override
+    public void fromString(String str) {
+        throw new IllegalArgumentException("Only simple properties can be initialized with strings");
+    }
+
+    @Override
+    protected T fromAny_(Any any) {
+        if (AnyUtils.isNull(any)) {
+            return emptyArray();
+        } else {
+            return extract(any);
+        }
+    }
+
+    @Override
+    protected Any toAny_() {
+        Any any = ORB.init().create_any();
+        if (this.value != null) {
+            insert(any, this.value);
+        }
+        return any;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    protected abstract T emptyArray();
+    protected abstract T extract(Any any);
+    protected abstract void insert(Any any, T value);
+}
@@ -20,10 +20,13 @@
 
 package org.ossie.properties;
 
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.omg.CORBA.Any;
 import org.omg.CORBA.ORB;
@@ -52,6 +55,18 @@ abstract class Property<T extends Object> implements IProperty {
     protected List<PropertyListener<T>> changeListeners = new LinkedList<PropertyListener<T>>();
     protected List<PropertyListener< Object >> voidListeners = new LinkedList<PropertyListener<Object >>();
     protected Allocator<T> allocator = null;
+
+    // Encoded value from the last call to toAny(), reused until the value
+    // is written
+    private volatile Encoding encoding = null;
+
+    // Incremented by every write to the value, so that an encoding made
+    // while the value was being written is not kept
+    private final AtomicInteger writes = new AtomicInteger();
+
+    // Comparison used by prepare() for values that valuesEqual() cannot
+    // compare, looked up once for the property's type
+    private volatile AnyComparator notEqual = null;
     
     protected Property(String id, String name, T value, Mode mode, Action action, Kind[] kinds) {
         super();
@@ -135,28 +150,317 @@ abstract class Property<T extends Object> implements IProperty {
      * Updates the value of the property, triggering any change listeners.
      */
     public void configure(Any any) {
-        boolean trigger_callback = false;
-        if (AnyUtils.compareAnys(this.toAny(), any, "ne")) {
-            trigger_callback = true;
+        configure(any, true);
+    }
+
+    /**
+     * Updates the value of the property if the new value differs from the
+     * current one, optionally triggering any change listeners.
+     * <p>
+     * The new value is decoded once and compared with the current value
+     * directly; only values that cannot be compared that way (such as
+     * complex numbers) are compared by their Any encoding.
+     *
+     * @return true if the value changed
+     */
+    public boolean configure(Any any, boolean callbacks) {
+        final PropertyChange change = prepare(any);
+        if (change == null) {
+            return false;
         }
-        T oldValue = this.value;
-        configureNoCallbacks(any);
-        if (trigger_callback) {
-            for (PropertyListener<T> listener : changeListeners) {
-                listener.valueChanged(oldValue, this.value);
+        change.apply();
+        if (callbacks) {
+            change.notifyListeners();
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a new value for the property from an Any without applying it.
+     * <p>
+     * The returned change records the current and new values; it takes
+     * effect only when applied, which allows a batch of values to be
+     * validated before any of them are set.
+     *
+     * @return the pending change, or null if the value would not change
+     */
+    public PropertyChange prepare(Any any) {
+        final T oldValue = this.value;
+        final T newValue = fromAny_(any);
+        Boolean same = valuesEqual(oldValue, newValue);
+        if (same == null) {
+            final Any current = this.toAny();
+            AnyComparator comparator = this.notEqual;
+            if (comparator == null) {
+                comparator = AnyComparator.get(current.type(), AnyComparator.Operator.NE);
+                this.notEqual = comparator;
             }
+            same = !comparator.test(current, any);
+        }
+        if (same) {
+            return null;
+        }
+        return new PropertyChange(this, oldValue, newValue);
+    }
+
+    @SuppressWarnings("unchecked")
+    void applyValue(Object newValue) {
+        this.value = (T)newValue;
+        this.invalidateEncoding();
+    }
 
-            for (PropertyListener<Object> listener : voidListeners) {
-                listener.valueChanged(oldValue, this.value);
+    @SuppressWarnings("unchecked")
+    void fireValueChanged(Object oldValue, Object newValue) {
+        for (PropertyListener<T> listener : changeListeners) {
+            listener.valueChanged((T)oldValue, (T)newValue);
+        }
+
+        for (PropertyListener<Object> listener : voidListeners) {
+            listener.valueChanged(oldValue, newValue);
+        }
+    }
+
+    /**
+     * Compares two property values without encoding them.
+     *
+     * @return whether the values are equal, or null if they cannot be
+     *         compared directly
+     */
+    static Boolean valuesEqual(Object first, Object second) {
+        if (first == second) {
+            return true;
+        } else if (first == null || second == null) {
+            return false;
+        } else if (first instanceof List && second instanceof List) {
+            final List<?> list1 = (List<?>)first;
+            final List<?> list2 = (List<?>)second;
+            if (list1.size() != list2.size()) {
+                return false;
+            }
+            final Iterator<?> iter = list2.iterator();
+            for (Object element : list1) {
+                final Boolean same = valuesEqual(element, iter.next());
+                if (same == null || !same) {
+                    return same;
+                }
+            }
+            return true;
+        } else if (first.getClass() != second.getClass()) {
+            return null;
+        } else if (IMMUTABLE_TYPES.contains(first.getClass())) {
+            return first.equals(second);
+        } else if (first.getClass().isArray()) {
+            return arraysEqual(first, second);
+        } else if (first instanceof StructDef) {
+            final StructDef struct1 = (StructDef)first;
+            final StructDef struct2 = (StructDef)second;
+            for (IProperty member : struct1.getElementsMap().values()) {
+                final IProperty other = struct2.getElement(member.getId());
+                if (!(member instanceof Property) || !(other instanceof Property)) {
+                    return null;
+                }
+                final Boolean same = valuesEqual(((Property<?>)member).value, ((Property<?>)other).value);
+                if (same == null || !same) {
+                    return same;
+                }
+            }
+            return true;
+        }
+        return null;
+    }
+
+    private static Boolean arraysEqual(Object first, Object second) {
+        if (first instanceof float[]) {
+            return Arrays.equals((float[])first, (float[])second);
+        } else if (first instanceof double[]) {
+            return Arrays.equals((double[])first, (double[])second);
+        } else if (first instanceof byte[]) {
+            return Arrays.equals((byte[])first, (byte[])second);
+        } else if (first instanceof short[]) {
+            return Arrays.equals((short[])first, (short[])second);
+        } else if (first instanceof int[]) {
+            return Arrays.equals((int[])first, (int[])second);
+        } else if (first instanceof long[]) {
+            return Arrays.equals((long[])first, (long[])second);
+        } else if (first instanceof char[]) {
+            return Arrays.equals((char[])first, (char[])second);
+        } else if (first instanceof boolean[]) {
+            return Arrays.equals((boolean[])first, (boolean[])second);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of this property as an Any. The encoding is cached,
+     * and re-used until the value is written, so the returned Any must not be
+     * modified.
+     * <p>
+     * Setting or configuring the value discards the encoding, as does
+     * getValue() for a list or array value, since the caller may modify it
+     * in place; such a value must therefore be modified through a reference
+     * obtained after the last query. Structs, including those in a list, are
+     * checked for changes to their members. Values that could be modified
+     * in place without this being detected, such as complex numbers, are
+     * never cached.
+     */
+    public Any toAny() {
+        final Encoding cached = this.currentEncoding();
+        if (cached != null) {
+            return cached.any;
+        }
+        final int writes = this.writes.get();
+        final T current = this.value;
+        final Object[] before = structEncodings(current);
+        final Any any = this.toAny_();
+        // Only cache if nothing changed while encoding
+        if (before != null && writes == this.writes.get() && current == this.value) {
+            final Object[] after = structEncodings(current);
+            if (sameParts(before, after)) {
+                this.encoding = new Encoding(current, writes, after, any);
             }
         }
+        return any;
+    }
+
+    /**
+     * Encodes the current value as an Any.
+     */
+    protected abstract Any toAny_();
+
+    /**
+     * Discards the cached encoding of the value. Must be called whenever the
+     * value is written.
+     */
+    protected void invalidateEncoding() {
+        this.writes.incrementAndGet();
+        this.encoding = null;
+    }
+
+    /**
+     * @return the cached encoding, if the value has not been written since
+     *         and none of its structs has changed, or null
+     */
+    Encoding currentEncoding() {
+        final Encoding cached = this.encoding;
+        if (cached == null || cached.writes != this.writes.get() || cached.value != this.value) {
+            return null;
+        } else if (cached.parts != NO_STRUCTS && !sameStructs(cached.value, cached.parts)) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * An encoded value, together with what it was encoded from.
+     */
+    static final class Encoding {
+        final Object value;
+        final int writes;
+        final Object[] parts;
+        final Any any;
+
+        Encoding(Object value, Object[] parts, Any any) {
+            this(value, 0, parts, any);
+        }
+
+        Encoding(Object value, int writes, Object[] parts, Any any) {
+            this.value = value;
+            this.writes = writes;
+            this.parts = parts;
+            this.any = any;
+        }
+    }
+
+    private static final Object[] NO_STRUCTS = new Object[0];
+
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+        Boolean.class, Character.class, String.class, Byte.class, Short.class,
+        Integer.class, Long.class, Float.class, Double.class));
+
+    /**
+     * Returns the current encodings of the structs in a value, which can
+     * change without the value being written, or NO_STRUCTS if it has none.
+     * Returns null if the value cannot be cached.
+     */
+    private static Object[] structEncodings(Object value) {
+        if (value == null || IMMUTABLE_TYPES.contains(value.getClass()) || isPrimitiveArray(value)) {
+            return NO_STRUCTS;
+        } else if (value instanceof StructDef) {
+            final Encoding encoding = ((StructDef)value).currentEncoding();
+            if (encoding == null) {
+                return null;
+            }
+            return new Object[] { encoding };
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>)value;
+            Object[] parts = NO_STRUCTS;
+            int ii = 0;
+            for (Object element : list) {
+                if (element instanceof StructDef) {
+                    if (parts == NO_STRUCTS) {
+                        parts = new Object[list.size()];
+                    }
+                    parts[ii] = ((StructDef)element).currentEncoding();
+                    if (parts[ii] == null) {
+                        return null;
+                    }
+                } else if (element != null && !IMMUTABLE_TYPES.contains(element.getClass())) {
+                    return null;
+                }
+                ++ii;
+            }
+            return parts;
+        }
+        return null;
+    }
+
+    // Checks that the structs in a value still have the given encodings,
+    // without copying the value
+    private static boolean sameStructs(Object value, Object[] parts) {
+        if (value instanceof StructDef) {
+            return ((StructDef)value).currentEncoding() == parts[0];
+        }
+        final List<?> list = (List<?>)value;
+        if (list.size() != parts.length) {
+            return false;
+        }
+        int ii = 0;
+        for (Object element : list) {
+            if (!(element instanceof StructDef) || ((StructDef)element).currentEncoding() != parts[ii++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPrimitiveArray(Object value) {
+        return value.getClass().isArray() && value.getClass().getComponentType().isPrimitive();
+    }
+
+    static boolean sameParts(Object[] first, Object[] second) {
+        if (first == second) {
+            return true;
+        } else if (first == null || second == null || first.length != second.length) {
+            return false;
+        }
+        for (int ii = 0; ii < first.length; ++ii) {
+            if (first[ii] != second[ii]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * Gets the current value of the property.
      */
     public T getValue() {
-        return this.value;
+        // The caller may modify a list or array in place
+        final T current = this.value;
+        if (current instanceof List || (current != null && current.getClass().isArray())) {
+            this.invalidateEncoding();
+        }
+        return current;
     }
     
     /**
@@ -165,6 +469,7 @@ abstract class Property<T extends Object> implements IProperty {
     public void setValue(T value) {
         T tmpValue = this.value;
         this.value = value;
+        this.invalidateEncoding();
         for (PropertyListener<Object> listener : voidListeners) {
             listener.valueChanged(value, tmpValue);
         }
@@ -251,6 +556,7 @@ abstract class Property<T extends Object> implements IProperty {
 
     public void fromAny(Any any) {
         this.value = fromAny_(any);
+        this.invalidateEncoding();
     }
     protected abstract T fromAny_(Any any);
 
@@ -330,12 +636,12 @@ abstract class Property<T extends Object> implements IProperty {
     public boolean isSet() {
         boolean retval = false;
         if (this.optional == true) {
-            if (this.getValue() instanceof List) {
-                if (!((List)this.getValue()).isEmpty()) {
+            if (this.value instanceof List) {
+                if (!((List)this.value).isEmpty()) {
                     retval = true;
                 }
             } else {
-                if (this.getValue() != null) {
+                if (this.value != null) {
                     retval = true;
                 }
             }
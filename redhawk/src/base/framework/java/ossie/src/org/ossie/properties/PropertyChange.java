@@ -0,0 +1,75 @@
+/*
+ * This file is protected by Copyright. Please refer to the COPYRIGHT file 
+ * distributed with this source distribution.
+ * 
+ * This file is part of REDHAWK core.
+ * 
+ * REDHAWK core is free software: you can redistribute it and/or modify it 
+ * under the terms of the GNU Lesser General Public License as published by the 
+ * Free Software Foundation, either version 3 of the License, or (at your 
+ * option) any later version.
+ * 
+ * REDHAWK core is distributed in the hope that it will be useful, but WITHOUT 
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or 
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License 
+ * for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License 
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ossie.properties;
+
+/**
+ * A pending change to a property's value, as returned by
+ * {@link IProperty#prepare(org.omg.CORBA.Any)}.
+ * <p>
+ * Preparing a change only decodes and validates the new value; the property
+ * is not modified until the change is applied. Once applied, the change also
+ * serves as the record of the old and new values delivered to listeners.
+ */
+public final class PropertyChange {
+    private final Property<?> property;
+    private final Object oldValue;
+    private final Object newValue;
+
+    PropertyChange(Property<?> property, Object oldValue, Object newValue) {
+        this.property = property;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public String getId() {
+        return this.property.getId();
+    }
+
+    public IProperty getProperty() {
+        return this.property;
+    }
+
+    /**
+     * Returns the value the property had when the change was prepared.
+     */
+    public Object getOldValue() {
+        return this.oldValue;
+    }
+
+    public Object getNewValue() {
+        return this.newValue;
+    }
+
+    /**
+     * Sets the property to the new value, without notifying listeners.
+     */
+    public void apply() {
+        this.property.applyValue(this.newValue);
+    }
+
+    /**
+     * Notifies the property's change listeners of this change.
+     */
+    public void notifyListeners() {
+        this.property.fireValueChanged(this.oldValue, this.newValue);
+    }
+}
@@ -44,7 +44,7 @@ public class SimpleProperty<T extends Object> extends LegacyProperty<T> {
         this.corbaType = AnyUtils.convertToTypeCode(type);
     }
 
-    public Any toAny() {
+    protected Any toAny_() {
         return AnyUtils.toAny(value, corbaType);
     }
 
@@ -172,7 +172,7 @@ public class SimpleProperty<T extends Object> extends LegacyProperty<T> {
             throw new IllegalArgumentException("Non-numeric value type");
         }
         
-        if (AnyUtils.compareAnys(deviceCapacity, this.getOrigCap(), "gt")) {
+        if (AnyComparator.compare(deviceCapacity, this.getOrigCap(), AnyComparator.Operator.GT)) {
             throw new ArithmeticException("New capacity would exceed original bound");
         }
 
@@ -180,7 +180,7 @@ public class SimpleProperty<T extends Object> extends LegacyProperty<T> {
     }
 
     public boolean isFull() {
-        return AnyUtils.compareAnys(this.toAny(), this.getOrigCap(), "ge");
+        return AnyComparator.compare(this.toAny(), this.getOrigCap(), AnyComparator.Operator.GE);
     }
 
     @Override
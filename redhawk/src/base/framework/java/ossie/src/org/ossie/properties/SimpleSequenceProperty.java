@@ -49,7 +49,7 @@ public class SimpleSequenceProperty< T extends Object > extends LegacyProperty<
         this.corbaType = AnyUtils.convertToTypeCode(this.type);
     }
 
-    public Any toAny() {
+    protected Any toAny_() {
         Any retval;
         if (this.value == null) {
             retval = ORB.init().create_any();
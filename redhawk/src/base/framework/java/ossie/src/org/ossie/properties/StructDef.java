@@ -20,11 +20,16 @@
 
 package org.ossie.properties;
 
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.omg.CORBA.Any;
 import org.omg.CORBA.ORB;
@@ -35,6 +40,10 @@ import CF.PropertiesHelper;
 public abstract class StructDef {
     private Map<String, IProperty> elements;
 
+    // Encoded value from the last call to toAny(), reused until a member
+    // changes
+    private volatile Property.Encoding encoding;
+
     public StructDef() {
 
     }
@@ -48,20 +57,14 @@ public abstract class StructDef {
     }
 
     private void initFields() {
-        final List<Field> allFields = StructDef.getAllFields(new ArrayList<Field>(), getClass());
-        for (final Field field : allFields) {
+        for (final Field field : StructDef.getPropertyFields(getClass())) {
             try {
-                if (IProperty.class.isAssignableFrom(field.getType())) {
-                    if (!field.isAccessible()) {
-                        field.setAccessible(true);
-                    }
-                    // Skip uninitialized fields, which can happen with classes derived
-                    // from concrete subclasses of StructDef (such as the FRONTEND
-                    // tuner status property)
-                    IProperty property = (IProperty) field.get(this);
-                    if (property != null) {
-                        addElement(property);
-                    }
+                // Skip uninitialized fields, which can happen with classes derived
+                // from concrete subclasses of StructDef (such as the FRONTEND
+                // tuner status property)
+                IProperty property = (IProperty) field.get(this);
+                if (property != null) {
+                    addElement(property);
                 }
             } catch (final IllegalArgumentException e) {
                 e.printStackTrace();
@@ -71,6 +74,74 @@ public abstract class StructDef {
         }
     }
 
+    /**
+     * Reflection metadata for a struct class, computed once per class.
+     */
+    private static class StructClass {
+        final Field[] fields;
+        volatile Constructor<?> constructor;
+
+        StructClass(Field[] fields) {
+            this.fields = fields;
+        }
+    }
+
+    // Per-class metadata; the values are held softly because the fields
+    // refer back to their class, which would otherwise keep the weak key
+    // (and the class loader) reachable
+    private static final Map<Class<?>, SoftReference<StructClass>> structClasses =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<StructClass>>());
+
+    private static StructClass getStructClass(final Class<?> type) {
+        final SoftReference<StructClass> ref = structClasses.get(type);
+        StructClass metadata = (ref == null) ? null : ref.get();
+        if (metadata == null) {
+            final List<Field> fields = new ArrayList<Field>();
+            for (final Field field : StructDef.getAllFields(new ArrayList<Field>(), type)) {
+                if (IProperty.class.isAssignableFrom(field.getType())) {
+                    if (!field.isAccessible()) {
+                        field.setAccessible(true);
+                    }
+                    fields.add(field);
+                }
+            }
+            metadata = new StructClass(fields.toArray(new Field[fields.size()]));
+            structClasses.put(type, new SoftReference<StructClass>(metadata));
+        }
+        return metadata;
+    }
+
+    // Fields of the class hierarchy that hold struct members
+    private static Field[] getPropertyFields(final Class<?> type) {
+        return getStructClass(type).fields;
+    }
+
+    /**
+     * Creates a new instance of a struct class via its no-argument
+     * constructor, which is looked up once per class.
+     *
+     * @throws IllegalArgumentException if the struct cannot be constructed
+     */
+    public static <T extends StructDef> T newInstance(final Class<T> type) {
+        final StructClass metadata = getStructClass(type);
+        try {
+            Constructor<?> constructor = metadata.constructor;
+            if (constructor == null) {
+                constructor = type.getDeclaredConstructor();
+                if (!constructor.isAccessible()) {
+                    constructor.setAccessible(true);
+                }
+                metadata.constructor = constructor;
+            }
+            return type.cast(constructor.newInstance());
+        } catch (final InvocationTargetException ex) {
+            final Throwable cause = ex.getCause();
+            throw new IllegalArgumentException("Unable to construct new struct value: " + cause.getMessage(), cause);
+        } catch (final Exception ex) {
+            throw new IllegalArgumentException("Unable to construct new struct value: " + ex.getMessage(), ex);
+        }
+    }
+
     private static List<Field> getAllFields(final List<Field> fields, final Class< ? > type) {
         for (final Field field : type.getDeclaredFields()) {
             fields.add(field);
@@ -83,6 +154,7 @@ public abstract class StructDef {
 
     protected void addElement(final IProperty element) {
         getElementsMap().put(element.getId(), element);
+        this.encoding = null;
     }
     
     public boolean equals(final Object item) {
@@ -90,12 +162,26 @@ public abstract class StructDef {
             return false;
         }
         StructDef tmp = (StructDef)item;
-        for (final IProperty prop : this.getElements()) {
-            Any tmp_prop = tmp.getElement(prop.getId()).toAny();
-            if (tmp_prop == null) {
+        for (final IProperty prop : this.getElementsMap().values()) {
+            final IProperty other = tmp.getElement(prop.getId());
+            if (other == null) {
                 return false;
             }
-            if (!prop.toAny().equal(tmp_prop)) {
+            // Compare the member values directly when possible, only
+            // encoding them if their type does not allow it
+            if (prop instanceof Property && other instanceof Property) {
+                // Read the values directly, as getValue() would discard a
+                // list member's cached encoding
+                final Boolean same = Property.valuesEqual(((Property<?>)prop).value,
+                                                          ((Property<?>)other).value);
+                if (same != null) {
+                    if (!same) {
+                        return false;
+                    }
+                    continue;
+                }
+            }
+            if (!prop.toAny().equal(other.toAny())) {
                 return false;
             }
         }
@@ -110,7 +196,17 @@ public abstract class StructDef {
         return getElementsMap().get(id);
     }
 
+    /**
+     * Returns the struct as an Any. The encoding is cached, and re-used until
+     * a member changes, so the returned Any must not be modified.
+     */
     public Any toAny() {
+        final Property.Encoding cached = this.currentEncoding();
+        if (cached != null) {
+            return cached.any;
+        }
+        final Object[] before = this.memberEncodings();
+
         Any retVal = ORB.init().create_any();
 
         DataType[] props = new DataType[this.getElementsMap().size()];
@@ -120,9 +216,46 @@ public abstract class StructDef {
         }
         
         PropertiesHelper.insert(retVal, props);
+
+        // Members are encoded (and cached) above, so this is only null the
+        // first time or if a member cannot be cached
+        if (before != null) {
+            final Object[] after = this.memberEncodings();
+            if (Property.sameParts(before, after)) {
+                this.encoding = new Property.Encoding(this, after, retVal);
+            }
+        }
         return retVal;
     }
 
+    /**
+     * @return the cached encoding, if no member has changed since, or null
+     */
+    Property.Encoding currentEncoding() {
+        final Property.Encoding cached = this.encoding;
+        if (cached == null || !Property.sameParts(cached.parts, this.memberEncodings())) {
+            return null;
+        }
+        return cached;
+    }
+
+    // Current encodings of the members, or null if any member is not cached
+    private Object[] memberEncodings() {
+        final Map<String, IProperty> members = this.getElementsMap();
+        final Object[] encodings = new Object[members.size()];
+        int ii = 0;
+        for (IProperty prop : members.values()) {
+            if (!(prop instanceof Property)) {
+                return null;
+            }
+            encodings[ii] = ((Property<?>)prop).currentEncoding();
+            if (encodings[ii++] == null) {
+                return null;
+            }
+        }
+        return encodings;
+    }
+
     public void fromAny(Any any) {
         if (!any.type().equivalent(PropertiesHelper.type())) {
             throw new IllegalArgumentException("Invalid Any type for struct");
@@ -136,6 +269,40 @@ public abstract class StructDef {
         }
     }
 
+    /**
+     * Decodes the struct from an Any only if the Any carries a value for
+     * every member, so that no member is left with a previous value.
+     *
+     * @return true if the struct was updated, false if it was left unchanged
+     */
+    boolean fromCompleteAny(Any any) {
+        if (!any.type().equivalent(PropertiesHelper.type())) {
+            throw new IllegalArgumentException("Invalid Any type for struct");
+        }
+        final DataType[] props = PropertiesHelper.extract(any);
+        for (final String id : this.getElementsMap().keySet()) {
+            if (!StructDef.hasProperty(props, id)) {
+                return false;
+            }
+        }
+        for (final DataType prop : props) {
+            IProperty field = this.getElement(prop.id);
+            if (field != null) {
+                field.fromAny(prop.value);
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasProperty(DataType[] props, String id) {
+        for (final DataType prop : props) {
+            if (prop.id.equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer();
@@ -41,7 +41,7 @@ public class StructProperty<T extends StructDef> extends Property<T> {
         this.structDef = clazz;
     }
     
-    public Any toAny() {
+    protected Any toAny_() {
         if (this.value == null) {
             return ORB.init().create_any();
         } else {
@@ -55,13 +55,7 @@ public class StructProperty<T extends StructDef> extends Property<T> {
     }
     
     protected T fromAny_(Any any) {
-        T tmp;
-        try {
-            tmp = this.structDef.newInstance();
-        } catch (Exception ex) {
-            throw new IllegalArgumentException("Unable to construct new struct value: " + ex.getMessage(), ex);
-        }
-        
+        T tmp = StructDef.newInstance(this.structDef);
         tmp.fromAny(any); 
         return tmp;
     }
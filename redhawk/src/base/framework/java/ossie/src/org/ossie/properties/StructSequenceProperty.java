@@ -63,18 +63,41 @@ public class StructSequenceProperty<T extends StructDef> extends AbstractSequenc
 
     protected List<T> extract(Any any) {
         List<T> structVals = new ArrayList<T>();
+        this.extract(any, structVals);
+        return structVals;
+    }
 
-        for (final Any item : AnySeqHelper.extract(any)) {
-            T itemValue;
-            try {
-                itemValue = this.structClass.newInstance();
-            } catch (Exception ex) {
-                throw new IllegalArgumentException("Unable to construct new struct value: " + ex.getMessage(), ex);
+    /**
+     * Decodes a sequence of structs into an existing list, updating the
+     * struct instances already in the list in place and only constructing
+     * new instances for additional elements. The list is resized to match
+     * the decoded sequence.
+     * <p>
+     * An existing instance is only reused if the decoded struct has a value
+     * for every member; otherwise it is replaced by a new instance, so that
+     * missing members take their default values rather than keeping those
+     * of the previous decode.
+     * <p>
+     * Because existing instances are modified, the list should not be this
+     * property's current value; this is intended for callers that repeatedly
+     * decode sequences into the same scratch list.
+     */
+    public void extract(Any any, List<T> values) {
+        final Any[] items = AnySeqHelper.extract(any);
+        while (values.size() > items.length) {
+            values.remove(values.size() - 1);
+        }
+        for (int ii = 0; ii < items.length; ++ii) {
+            if (ii < values.size() && values.get(ii).fromCompleteAny(items[ii])) {
+                continue;
+            }
+            T itemValue = StructDef.newInstance(this.structClass);
+            itemValue.fromAny(items[ii]);
+            if (ii < values.size()) {
+                values.set(ii, itemValue);
+            } else {
+                values.add(itemValue);
             }
-
-            itemValue.fromAny(item);
-            structVals.add(itemValue);
         }
-        return structVals;
     }
 }